@@ -23,21 +23,66 @@ package com.devicehive.application;
 import com.devicehive.eventbus.FilterRegistry;
 import com.devicehive.eventbus.SubscriberRegistry;
 import com.devicehive.json.GsonFactory;
+import com.devicehive.service.history.HistoryStore;
+import com.devicehive.service.history.NoOpHistoryStore;
+import com.devicehive.service.history.SegmentHistoryStore;
 import com.devicehive.shim.api.server.MessageDispatcher;
 import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import com.devicehive.eventbus.EventBus;
 import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.EnableMBeanExport;
+import org.springframework.jmx.support.RegistrationPolicy;
+
+import java.nio.file.Paths;
 
 @Configuration
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
 public class BackendConfig {
 
+    @Value("${eventbus.publish.coalesce-by-reply-to:false}")
+    private boolean coalesceByReplyTo;
+
+    @Value("${eventbus.fan-out.async:false}")
+    private boolean asyncFanOut;
+
+    @Value("${eventbus.fan-out.threads:0}")
+    private int fanOutThreads;
+
+    @Value("${eventbus.fan-out.queue-size:1024}")
+    private int fanOutQueueSize;
+
+    @Value("${history.cold.enabled:false}")
+    private boolean coldHistoryEnabled;
+
+    @Value("${history.cold.directory:history}")
+    private String coldHistoryDirectory;
+
+    @Value("${history.cold.buckets:64}")
+    private int coldHistoryBuckets;
+
+    @Value("${history.cold.partition-hours:1}")
+    private int coldHistoryPartitionHours;
+
+    @Value("${history.cold.retention-hours:168}")
+    private int coldHistoryRetentionHours;
+
     @Bean
     public Gson gson() {
         return GsonFactory.createGson();
     }
 
+    @Bean(destroyMethod = "close")
+    public HistoryStore historyStore(Gson gson) {
+        if (!coldHistoryEnabled) {
+            return new NoOpHistoryStore();
+        }
+        return new SegmentHistoryStore(Paths.get(coldHistoryDirectory), coldHistoryBuckets,
+                coldHistoryPartitionHours, coldHistoryRetentionHours, gson);
+    }
+
     @Bean
     @DependsOn("hazelcast")
     public FilterRegistry filterRegistry() {
@@ -50,9 +95,14 @@ public class BackendConfig {
         return new SubscriberRegistry();
     }
 
-    @Bean
+    @Bean(destroyMethod = "shutdown")
     @DependsOn("subscriberRegistry")
-    public EventBus eventBus(MessageDispatcher dispatcher, SubscriberRegistry subscriberRegistry) {
-        return new EventBus(dispatcher, subscriberRegistry);
+    public EventBus eventBus(MessageDispatcher dispatcher, SubscriberRegistry subscriberRegistry, Gson gson) {
+        EventBus eventBus = new EventBus(dispatcher, subscriberRegistry, gson, coalesceByReplyTo);
+        if (asyncFanOut) {
+            int lanes = fanOutThreads > 0 ? fanOutThreads : Runtime.getRuntime().availableProcessors();
+            eventBus.startAsyncFanOut(lanes, fanOutQueueSize);
+        }
+        return eventBus;
     }
 }
@@ -27,6 +27,7 @@ import com.devicehive.messages.handler.command.CommandGetSubscriptionRequestHand
 import com.devicehive.messages.handler.command.CommandInsertHandler;
 import com.devicehive.messages.handler.command.CommandSearchHandler;
 import com.devicehive.messages.handler.command.CommandSubscribeRequestHandler;
+import com.devicehive.messages.handler.command.CommandBatchUpdateHandler;
 import com.devicehive.messages.handler.command.CommandUpdateHandler;
 import com.devicehive.messages.handler.command.CommandUpdateSubscribeRequestHandler;
 import com.devicehive.messages.handler.command.CommandsUpdateHandler;
@@ -36,6 +37,7 @@ import com.devicehive.messages.handler.dao.list.ListSubscribeHandler;
 import com.devicehive.messages.handler.dao.list.ListUserHandler;
 import com.devicehive.messages.handler.notification.NotificationSubscribeRequestHandler;
 import com.devicehive.messages.handler.command.CommandUnsubscribeRequestHandler;
+import com.devicehive.messages.handler.notification.NotificationBatchInsertHandler;
 import com.devicehive.messages.handler.notification.NotificationInsertHandler;
 import com.devicehive.messages.handler.notification.NotificationSearchHandler;
 import com.devicehive.messages.handler.notification.NotificationUnsubscribeRequestHandler;
@@ -54,11 +56,13 @@ public class RequestHandlersMapper {
 
     private final NotificationSearchHandler notificationSearchHandler;
     private final NotificationInsertHandler notificationInsertHandler;
+    private final NotificationBatchInsertHandler notificationBatchInsertHandler;
     private final NotificationSubscribeRequestHandler notificationSubscribeRequestHandler;
     private final NotificationUnsubscribeRequestHandler notificationUnsubscribeRequestHandler;
     private final CommandInsertHandler commandInsertHandler;
     private final CommandSearchHandler commandSearchHandler;
     private final CommandUpdateHandler commandUpdateHandler;
+    private final CommandBatchUpdateHandler commandBatchUpdateHandler;
     private final CommandsUpdateHandler commandsUpdateHandler;
     private final CommandSubscribeRequestHandler commandSubscribeRequestHandler;
     private final CommandUnsubscribeRequestHandler commandUnsubscribeRequestHandler;
@@ -79,6 +83,7 @@ public class RequestHandlersMapper {
     public RequestHandlersMapper(CommandUpdateHandler commandUpdateHandler,
                                  NotificationSearchHandler notificationSearchHandler,
                                  NotificationInsertHandler notificationInsertHandler,
+                                 NotificationBatchInsertHandler notificationBatchInsertHandler,
                                  ListUserHandler listUserHandler,
                                  ListDeviceHandler listDeviceHandler,
                                  NotificationSubscribeRequestHandler notificationSubscribeRequestHandler,
@@ -86,6 +91,7 @@ public class RequestHandlersMapper {
                                  NotificationUnsubscribeRequestHandler notificationUnsubscribeRequestHandler,
                                  CommandInsertHandler commandInsertHandler,
                                  CommandSearchHandler commandSearchHandler,
+                                 CommandBatchUpdateHandler commandBatchUpdateHandler,
                                  CommandsUpdateHandler commandsUpdateHandler,
                                  ListNetworkHandler listNetworkHandler,
                                  ListSubscribeHandler listSubscribeHandler,
@@ -98,6 +104,7 @@ public class RequestHandlersMapper {
         this.commandUpdateHandler = commandUpdateHandler;
         this.notificationSearchHandler = notificationSearchHandler;
         this.notificationInsertHandler = notificationInsertHandler;
+        this.notificationBatchInsertHandler = notificationBatchInsertHandler;
         this.listUserHandler = listUserHandler;
         this.listDeviceHandler = listDeviceHandler;
         this.notificationSubscribeRequestHandler = notificationSubscribeRequestHandler;
@@ -105,6 +112,7 @@ public class RequestHandlersMapper {
         this.notificationUnsubscribeRequestHandler = notificationUnsubscribeRequestHandler;
         this.commandInsertHandler = commandInsertHandler;
         this.commandSearchHandler = commandSearchHandler;
+        this.commandBatchUpdateHandler = commandBatchUpdateHandler;
         this.commandsUpdateHandler = commandsUpdateHandler;
         this.listNetworkHandler = listNetworkHandler;
         this.listSubscribeHandler = listSubscribeHandler;
@@ -121,11 +129,13 @@ public class RequestHandlersMapper {
         requestHandlerMap = ImmutableMap.<Action, RequestHandler>builder()
                 .put(Action.NOTIFICATION_SEARCH_REQUEST, notificationSearchHandler)
                 .put(Action.NOTIFICATION_INSERT_REQUEST, notificationInsertHandler)
+                .put(Action.NOTIFICATION_BATCH_INSERT_REQUEST, notificationBatchInsertHandler)
                 .put(Action.NOTIFICATION_SUBSCRIBE_REQUEST, notificationSubscribeRequestHandler)
                 .put(Action.NOTIFICATION_UNSUBSCRIBE_REQUEST, notificationUnsubscribeRequestHandler)
                 .put(Action.COMMAND_INSERT_REQUEST, commandInsertHandler)
                 .put(Action.COMMAND_SEARCH_REQUEST, commandSearchHandler)
                 .put(Action.COMMAND_UPDATE_REQUEST, commandUpdateHandler)
+                .put(Action.COMMAND_BATCH_UPDATE_REQUEST, commandBatchUpdateHandler)
                 .put(Action.COMMANDS_UPDATE_REQUEST, commandsUpdateHandler)
                 .put(Action.COMMAND_SUBSCRIBE_REQUEST, commandSubscribeRequestHandler)
                 .put(Action.COMMAND_UNSUBSCRIBE_REQUEST, commandUnsubscribeRequestHandler)
@@ -23,6 +23,10 @@ package com.devicehive.application.hazelcast;
 import com.devicehive.model.DevicePortableFactory;
 import com.hazelcast.client.HazelcastClient;
 import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.HazelcastInstance;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -31,6 +35,10 @@ import org.springframework.context.annotation.PropertySource;
 
 import java.util.List;
 
+import static com.devicehive.service.HazelcastService.COMMANDS_HISTORY_MAP;
+import static com.devicehive.service.HazelcastService.COMMANDS_MAP;
+import static com.devicehive.service.HazelcastService.NOTIFICATIONS_HISTORY_MAP;
+
 @Configuration
 @PropertySource("classpath:application.properties")
 public class HazelcastConfiguration {
@@ -43,6 +51,14 @@ public class HazelcastConfiguration {
     private List<String> clusterMembers;
     @Value("${hazelcast.client.event.thread.count:5}")
     private String eventThreadCount;
+    @Value("${hazelcast.near-cache.enabled:false}")
+    private boolean nearCacheEnabled;
+    @Value("${hazelcast.near-cache.max-size:10000}")
+    private int nearCacheMaxSize;
+    @Value("${hazelcast.near-cache.ttl-seconds:120}")
+    private int nearCacheTtlSeconds;
+    @Value("${hazelcast.history.near-cache.enabled:true}")
+    private boolean historyNearCacheEnabled;
 
     @Bean
     public HazelcastInstance hazelcast() throws Exception {
@@ -55,7 +71,27 @@ public class HazelcastConfiguration {
         clientConfig.getSerializationConfig()
                 .addPortableFactory(1, new DevicePortableFactory());
         clientConfig.setProperty("hazelcast.client.event.thread.count", eventThreadCount);
+        if (nearCacheEnabled) {
+            // notifications are written far more often than read by id, so caching them only adds invalidations
+            clientConfig.addNearCacheConfig(nearCacheConfig(COMMANDS_MAP));
+        }
+        if (historyNearCacheEnabled) {
+            // polls read whole histories of devices, which are replaced on each append
+            clientConfig.addNearCacheConfig(nearCacheConfig(NOTIFICATIONS_HISTORY_MAP));
+            clientConfig.addNearCacheConfig(nearCacheConfig(COMMANDS_HISTORY_MAP));
+        }
 
         return HazelcastClient.newHazelcastClient(clientConfig);
     }
+
+    /**
+     * Near cache serves repeated reads by key. Entries are invalidated by members when they are updated or removed.
+     */
+    private NearCacheConfig nearCacheConfig(String mapName) {
+        return new NearCacheConfig(mapName)
+                .setInMemoryFormat(InMemoryFormat.OBJECT)
+                .setInvalidateOnChange(true)
+                .setTimeToLiveSeconds(nearCacheTtlSeconds)
+                .setEvictionConfig(new EvictionConfig(nearCacheMaxSize, EvictionConfig.MaxSizePolicy.ENTRY_COUNT, EvictionPolicy.LRU));
+    }
 }
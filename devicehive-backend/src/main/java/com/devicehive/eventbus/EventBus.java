@@ -23,29 +23,75 @@ package com.devicehive.eventbus;
 import com.devicehive.model.eventbus.Subscriber;
 import com.devicehive.model.eventbus.Subscription;
 import com.devicehive.model.eventbus.events.Event;
+import com.devicehive.shim.api.Body;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.MessageDispatcher;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
+import com.google.gson.Gson;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Central class for interaction with devicehive-backend subscription mechanism.
  * Provides basic interfaces and operations for subscription, unsubscription and publishing of events.
  */
+@ManagedResource(objectName = "com.devicehive:type=EventBus")
 public class EventBus {
 
     private final SubscriberRegistry registry;
     private final MessageDispatcher dispatcher;
+    private final Gson gson;
+    private final boolean coalesceByReplyTo;
+    private FanOutStage fanOutStage;
 
     /**
      * Creates new instance of EventBus
      * @param dispatcher - interface, that controls message delivery strategy
      */
     public EventBus(MessageDispatcher dispatcher, SubscriberRegistry registry) {
+        this(dispatcher, registry, null, false);
+    }
+
+    /**
+     * Creates new instance of EventBus
+     * @param dispatcher - interface, that controls message delivery strategy
+     * @param gson - if not null, event is encoded once per publish and the encoded body is shared by all responses
+     * @param coalesceByReplyTo - if true, subscribers with the same reply topic receive a single multicast
+     *                          response per event instead of a separate response each
+     */
+    public EventBus(MessageDispatcher dispatcher, SubscriberRegistry registry, Gson gson, boolean coalesceByReplyTo) {
         this.dispatcher = dispatcher;
         this.registry = registry;
+        this.gson = gson;
+        this.coalesceByReplyTo = coalesceByReplyTo;
+    }
+
+    /**
+     * Switches event bus to asynchronous delivery: {@link EventBus#publish(Event)} hands events over to a dedicated
+     * fan-out stage and returns immediately. Events of the same device are still delivered in publishing order.
+     *
+     * @param lanes - number of delivery threads
+     * @param queueSize - number of events waiting for delivery in each lane
+     */
+    public void startAsyncFanOut(int lanes, int queueSize) {
+        fanOutStage = new FanOutStage(this::deliver, lanes, queueSize);
+    }
+
+    public void shutdown() {
+        if (fanOutStage != null) {
+            fanOutStage.shutdown();
+        }
+    }
+
+    @ManagedAttribute(description = "Events not delivered because the fan-out stage could not queue them")
+    public long getDroppedEvents() {
+        return fanOutStage != null ? fanOutStage.getDroppedEvents() : 0;
     }
 
     public void subscribe(Subscriber subscriber, Subscription subscription) {
@@ -73,16 +119,77 @@ public class EventBus {
     }
 
     public void publish(Event event) {
-        event.getApplicableSubscriptions()
+        if (fanOutStage != null) {
+            fanOutStage.submit(event);
+        } else {
+            deliver(event);
+        }
+    }
+
+    /**
+     * Publishes events of a batch insert, preserving their order per partition key.
+     */
+    public void publishAll(Collection<? extends Event> events) {
+        if (fanOutStage != null) {
+            fanOutStage.submitAll(events);
+        } else {
+            events.forEach(this::deliver);
+        }
+    }
+
+    private void deliver(Event event) {
+        List<Subscriber> subscribers = event.getApplicableSubscriptions()
                 .stream()
                 .flatMap(subscription -> registry.getSubscribers(subscription).stream())
-                .forEach(subscriber -> {
-                    Response response = Response.newBuilder()
-                            .withBody(event)
-                            .withCorrelationId(subscriber.getCorrelationId())
-                            .withLast(false)
-                            .buildSuccess();
-                    dispatcher.send(subscriber.getReplyTo(), response);
-                });
+                .collect(Collectors.toList());
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        if (coalesceByReplyTo) {
+            publishCoalesced(event, subscribers);
+            return;
+        }
+        String encodedBody = encode(event, subscribers.size());
+        subscribers.forEach(subscriber -> {
+            Response response = Response.<Event>newBuilder()
+                    .withEncodedBody(event, encodedBody)
+                    .withCorrelationId(subscriber.getCorrelationId())
+                    .withLast(false)
+                    .buildSuccess();
+            dispatcher.send(subscriber.getReplyTo(), response);
+        });
+    }
+
+    /**
+     * Groups subscribers by reply topic and sends one response per topic, carrying correlation ids of all
+     * subscribers behind it. The receiving RequestResponseMatcher fans it out to each callback locally.
+     */
+    private void publishCoalesced(Event event, List<Subscriber> subscribers) {
+        Map<String, List<String>> correlationIdsByReplyTo = new LinkedHashMap<>();
+        subscribers.forEach(subscriber -> correlationIdsByReplyTo
+                .computeIfAbsent(subscriber.getReplyTo(), replyTo -> new ArrayList<>())
+                .add(subscriber.getCorrelationId()));
+
+        String encodedBody = encode(event, correlationIdsByReplyTo.size());
+        correlationIdsByReplyTo.forEach((replyTo, correlationIds) -> {
+            Response.Builder<Event> builder = Response.<Event>newBuilder()
+                    .withEncodedBody(event, encodedBody)
+                    .withLast(false);
+            if (correlationIds.size() == 1) {
+                builder.withCorrelationId(correlationIds.get(0));
+            } else {
+                builder.withCorrelationIds(correlationIds);
+            }
+            dispatcher.send(replyTo, builder.buildSuccess());
+        });
+    }
+
+    /**
+     * Encodes event body once, if it is going to be sent more than once.
+     * Returns null otherwise, so that the body is serialized along with the response as usual.
+     */
+    private String encode(Event event, int recipients) {
+        return gson != null && recipients > 1 ? gson.toJson(event, Body.class) : null;
     }
 }
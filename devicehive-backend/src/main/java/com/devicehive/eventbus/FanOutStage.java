@@ -0,0 +1,129 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.eventbus.events.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous stage for delivering published events to subscribers, decoupled from request handling threads.
+ * The stage consists of a fixed number of lanes, each with its own delivery thread and bounded queue. Each event
+ * is processed by the lane chosen by its partition key, so events of one device are delivered in publishing order,
+ * while events of different devices are delivered in parallel.
+ * Publishing blocks when the queue of the target lane is full, publishing to other lanes is not affected.
+ * Events that cannot be queued, because the stage is shut down or the publishing thread is interrupted while waiting,
+ * are logged and counted in {@link #getDroppedEvents()}.
+ */
+class FanOutStage {
+    private static final Logger logger = LoggerFactory.getLogger(FanOutStage.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final Consumer<Event> deliverer;
+    private final ThreadPoolExecutor[] lanes;
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    FanOutStage(Consumer<Event> deliverer, int laneCount, int queueSize) {
+        this.deliverer = deliverer;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final String name = "event-fan-out-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                    r -> new Thread(r, name), this::blockUntilQueued);
+        }
+        logger.info("Event bus fan-out stage started. Lanes: {}, queue size: {}", laneCount, queueSize);
+    }
+
+    void submit(Event event) {
+        lanes[lane(event.getPartitionKey(), lanes.length)].execute(new Delivery(event));
+    }
+
+    void submitAll(Collection<? extends Event> events) {
+        events.forEach(this::submit);
+    }
+
+    /**
+     * Stops accepting events and waits until all submitted events are delivered.
+     */
+    void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn("Fan-out lane did not finish in {} seconds, {} events are not delivered",
+                            SHUTDOWN_TIMEOUT_SECONDS, lane.getQueue().size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    static int lane(Object partitionKey, int laneCount) {
+        return Math.floorMod(String.valueOf(partitionKey).hashCode(), laneCount);
+    }
+
+    private void blockUntilQueued(Runnable task, ThreadPoolExecutor lane) {
+        if (lane.isShutdown()) {
+            droppedEvents.incrementAndGet();
+            logger.warn("Fan-out stage is shut down, event {} is not delivered", ((Delivery) task).event);
+            return;
+        }
+        try {
+            lane.getQueue().put(task);
+        } catch (InterruptedException e) {
+            droppedEvents.incrementAndGet();
+            logger.warn("Interrupted while waiting for a full fan-out lane, event {} is not delivered", ((Delivery) task).event);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Delivery implements Runnable {
+        private final Event event;
+
+        Delivery(Event event) {
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            try {
+                deliverer.accept(event);
+            } catch (Exception e) {
+                logger.error("Unable to deliver event {}", event, e);
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ package com.devicehive.eventbus;
 import com.devicehive.auth.HivePrincipal;
 import com.devicehive.model.eventbus.Filter;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ISet;
 import com.hazelcast.core.MultiMap;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,18 +32,42 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.*;
 
 /**
- * Class for handling all subscriber's filters
+ * Class for handling all subscriber's filters.
+ * Filters are indexed by subscription id and by network id (global filters are kept in their own bucket),
+ * so lookups and removals cost O(matches) instead of a scan over all registered filters.
  */
 public class FilterRegistry {
 
-    private MultiMap<Filter, Long> filterSubscriptionsMap;
-    private final String FILTER_SUBSCRIPTION_MAP = "FILTER-SUBSCRIPTION-MAP";
+    /**
+     * Map that holds filter of each subscription. The KEY is subscription id and the VALUE is its filter
+     */
+    private IMap<Long, Filter> subscriptionFilters;
+    private final String SUBSCRIPTION_FILTER_MAP = "SUBSCRIPTION-FILTER-MAP";
+
+    /**
+     * Map of subscriptions, which filters are restricted to particular networks.
+     * The KEY is network id and the VALUE is a set of subscription ids
+     */
+    private MultiMap<Long, Long> networkSubscriptions;
+    private final String NETWORK_SUBSCRIPTIONS_MAP = "NETWORK-SUBSCRIPTIONS-MAP";
+
+    /**
+     * Set of subscription ids, which filters are applicable to all networks
+     */
+    private ISet<Long> globalSubscriptions;
+    private final String GLOBAL_SUBSCRIPTIONS_SET = "GLOBAL-SUBSCRIPTIONS-SET";
 
     @Autowired
     public void getHazelcastMaps(HazelcastInstance hazelcastClient) {
-        filterSubscriptionsMap = hazelcastClient.getMultiMap(FILTER_SUBSCRIPTION_MAP);
+        subscriptionFilters = hazelcastClient.getMap(SUBSCRIPTION_FILTER_MAP);
+        networkSubscriptions = hazelcastClient.getMultiMap(NETWORK_SUBSCRIPTIONS_MAP);
+        globalSubscriptions = hazelcastClient.getSet(GLOBAL_SUBSCRIPTIONS_SET);
     }
 
+    /**
+     * Registers filter of the subscription. If the subscription already has a filter, it is replaced and
+     * the subscription is removed from networks of the previous filter, which the new one may not include.
+     */
     public void register(Filter filter, Long subscriptionId) {
         HivePrincipal principal = filter.getPrincipal();
         if (filter.isGlobal() && principal.areAllDevicesAvailable()) {
@@ -50,29 +76,46 @@ public class FilterRegistry {
                 filter.setNetworkIds(principal.getNetworkIds());
             }
         }
-        filterSubscriptionsMap.put(filter, subscriptionId);
+        Filter previous = subscriptionFilters.put(subscriptionId, filter);
+        if (previous != null) {
+            removeFromIndex(subscriptionId, previous);
+        }
+        if (filter.isGlobal()) {
+            globalSubscriptions.add(subscriptionId);
+        } else if (filter.getNetworkIds() != null) {
+            filter.getNetworkIds().forEach(networkId -> networkSubscriptions.put(networkId, subscriptionId));
+        }
     }
 
     public void unregister(Long subscriptionId) {
-        filterSubscriptionsMap.keySet().forEach(filter -> filterSubscriptionsMap.remove(filter, subscriptionId));
+        Filter filter = subscriptionFilters.remove(subscriptionId);
+        if (filter != null) {
+            removeFromIndex(subscriptionId, filter);
+        }
     }
 
-    public Filter getFilter(Long subscriptionId) {
-        for (Map.Entry<Filter, Long> entry : filterSubscriptionsMap.entrySet()) {
-            if (entry.getValue().equals(subscriptionId)) {
-                return entry.getKey();
-            }
+    private void removeFromIndex(Long subscriptionId, Filter filter) {
+        if (filter.isGlobal()) {
+            globalSubscriptions.remove(subscriptionId);
+        } else if (filter.getNetworkIds() != null) {
+            filter.getNetworkIds().forEach(networkId -> networkSubscriptions.remove(networkId, subscriptionId));
         }
-        return null;
+    }
+
+    public Filter getFilter(Long subscriptionId) {
+        return subscriptionFilters.get(subscriptionId);
     }
 
     public Set<Pair<Long, Filter>> getSubscriptions(Long networkId) {
+        Set<Long> subIds = new HashSet<>(globalSubscriptions);
+        if (networkId != null) {
+            subIds.addAll(networkSubscriptions.get(networkId));
+        }
+
         Set<Pair<Long, Filter>> subs = new HashSet<>();
-        filterSubscriptionsMap.keySet().forEach( filter -> {
-            if (filter.isGlobal() || (filter.getNetworkIds() != null && filter.getNetworkIds().contains(networkId))) {
-                filterSubscriptionsMap.get(filter).forEach(subId -> subs.add(Pair.of(subId, filter)));
-            }
-        });
+        if (!subIds.isEmpty()) {
+            subscriptionFilters.getAll(subIds).forEach((subId, filter) -> subs.add(Pair.of(subId, filter)));
+        }
         return subs;
     }
 }
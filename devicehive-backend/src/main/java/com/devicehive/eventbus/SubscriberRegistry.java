@@ -22,23 +22,30 @@ package com.devicehive.eventbus;
 
 import com.devicehive.model.eventbus.Subscriber;
 import com.devicehive.model.eventbus.Subscription;
+import com.google.common.util.concurrent.Striped;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.MultiMap;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.validation.constraints.NotNull;
 import java.util.Collection;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 
 /**
- * Class for handling all subscribe, unsubscribe and get subscribers tricky logic
+ * Class for handling all subscribe, unsubscribe and get subscribers tricky logic.
+ * Reads are served from the node-local {@link SubscriptionIndex} without locking. Writes are serialized per subscriber
+ * by {@link SubscriberRegistry#locks}, so that subscribe storms of different subscribers do not block each other.
  */
 public class SubscriberRegistry {
 
+    private static final int LOCK_STRIPES = 64;
+
     /**
      * Map for holding subscriptions for particular subscription request id (i.e. subscriber).
      * The KEY in this map is an id of subscriber (subscription request) and the VALUE is a set of subscriptions for this subscriber.
@@ -57,14 +64,26 @@ public class SubscriberRegistry {
     private MultiMap<Subscription, Long> subscriptions;
     private final String SUBSCRIPTIONS_MAP = "SUBSCRIPTIONS-MAP";
 
-    private Map<Long, Subscriber> subscribers;
+    private IMap<Long, Subscriber> subscribers;
     private final String SUBSCRIBERS_MAP = "SUBSCRIBERS-MAP";
 
+    /**
+     * Node-local replica of {@link SubscriberRegistry#subscriptions} and {@link SubscriberRegistry#subscribers} maps.
+     * Used for routing of published events, so that the cluster maps are only accessed on subscribe and unsubscribe.
+     */
+    private final SubscriptionIndex index = new SubscriptionIndex();
+
+    /**
+     * Locks guarding the sequence of cluster map updates for a single subscriber id
+     */
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
     @Autowired
     public void getHazelcastMaps(HazelcastInstance hazelcastClient) {
         subscriberSubscriptions = hazelcastClient.getMultiMap(SUBSCRIBER_SUBSCRIPTIONS_MAP);
         subscriptions = hazelcastClient.getMultiMap(SUBSCRIPTIONS_MAP);
         subscribers = hazelcastClient.getMap(SUBSCRIBERS_MAP);
+        index.bind(subscriptions, subscribers);
     }
 
     /**
@@ -78,10 +97,18 @@ public class SubscriberRegistry {
      * @param subscriber - subscriber
      * @param subscription - subscription to subscribe to
      */
-    synchronized void register(Subscriber subscriber, Subscription subscription) {
-        subscriberSubscriptions.put(subscriber.getId(), subscription);
-        subscriptions.put(subscription, subscriber.getId());
-        subscribers.put(subscriber.getId(), subscriber);
+    void register(Subscriber subscriber, Subscription subscription) {
+        Lock lock = locks.get(subscriber.getId());
+        lock.lock();
+        try {
+            subscriberSubscriptions.put(subscriber.getId(), subscription);
+            subscriptions.put(subscription, subscriber.getId());
+            subscribers.put(subscriber.getId(), subscriber);
+            index.putSubscriber(subscriber);
+            index.add(subscription, subscriber.getId());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -92,27 +119,63 @@ public class SubscriberRegistry {
      *
      * @param subscriber - subscriber
      */
-    synchronized void unregister(Subscriber subscriber) {
+    void unregister(Subscriber subscriber) {
         Long id = subscriber.getId();
-        Optional.ofNullable(subscriberSubscriptions.remove(id))
-                .ifPresent(subs -> subs.forEach(s -> subscriptions.remove(s, id)));
-        subscribers.remove(id);
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            Optional.ofNullable(subscriberSubscriptions.remove(id))
+                    .ifPresent(subs -> subs.forEach(s -> {
+                        subscriptions.remove(s, id);
+                        index.remove(s, id);
+                    }));
+            subscribers.remove(id);
+            index.removeSubscriber(id);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized void unregister(Subscription subscription) {
+    /**
+     * Removes subscription for all of its subscribers. Back references in {@link SubscriberRegistry#subscriberSubscriptions}
+     * are removed under each subscriber's lock and only if the subscriber has not re-registered the same subscription
+     * concurrently, which keeps both maps consistent without a registry-wide lock.
+     *
+     * @param subscription - subscription
+     */
+    void unregister(Subscription subscription) {
         Optional.ofNullable(subscriptions.remove(subscription)).ifPresent(subIds ->
-                subIds.forEach(subId -> subscriberSubscriptions.remove(subId, subscription))
+                subIds.forEach(subId -> {
+                    Lock lock = locks.get(subId);
+                    lock.lock();
+                    try {
+                        if (!subscriptions.containsEntry(subscription, subId)) {
+                            subscriberSubscriptions.remove(subId, subscription);
+                            index.remove(subscription, subId);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                })
         );
     }
 
     /**
+     * Resolves subscribers from the node-local index. Falls back to {@link SubscriberRegistry#subscribers} map
+     * only for subscribers whose entry events have not reached this node yet.
+     *
      * @param subscription - subscription
      * @return - list of subscribers for subscription
      */
-    synchronized Collection<Subscriber> getSubscribers(@NotNull Subscription subscription) {
-        return Optional.ofNullable(subscriptions.get(subscription))
-                .map(subIds -> subIds.stream().map(subscribers::get).collect(Collectors.toList()))
-                .orElse(emptyList());
+    Collection<Subscriber> getSubscribers(@NotNull Subscription subscription) {
+        Collection<Long> subIds = index.getSubscriberIds(subscription);
+        if (subIds.isEmpty()) {
+            return emptyList();
+        }
+        return subIds.stream()
+                .map(subId -> Optional.ofNullable(index.getSubscriber(subId)).orElseGet(() -> subscribers.get(subId)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -120,7 +183,8 @@ public class SubscriberRegistry {
      * @return - subscriber for subscriptionId
      */
     Subscriber getSubscriber(Long subscriptionId) {
-        return this.subscribers.get(subscriptionId);
+        return Optional.ofNullable(index.getSubscriber(subscriptionId))
+                .orElseGet(() -> this.subscribers.get(subscriptionId));
     }
 
     Collection<Subscription> getSubscriptions(@NotNull Subscriber subscriber) {
@@ -129,6 +193,6 @@ public class SubscriberRegistry {
     }
 
     Collection<Subscription> getAllSubscriptions() {
-        return subscriptions.keySet();
+        return index.getAllSubscriptions();
     }
 }
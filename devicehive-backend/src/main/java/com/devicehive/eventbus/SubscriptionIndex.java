@@ -0,0 +1,248 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.eventbus.Subscriber;
+import com.devicehive.model.eventbus.Subscription;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.MapEvent;
+import com.hazelcast.core.MultiMap;
+import com.hazelcast.map.listener.MapListener;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local replica of the subscription maps, used for routing of published events without touching the cluster.
+ * The index is organized as entityId (device id) -> subscription (event type and name) -> set of subscriber ids,
+ * with a separate replica of subscriber objects keyed by subscriber id.
+ *
+ * The index is kept in sync by entry listeners registered on the cluster-wide maps, so changes made by other
+ * backend nodes become visible here as soon as Hazelcast delivers the event. Local changes are applied directly
+ * as well, so that a subscription is visible to publishers on the same node right after registration.
+ * Reads never take a lock, writes are atomic per entity id.
+ *
+ * Entry events arrive asynchronously, so the added event of a local registration may be delivered after the local
+ * removal that followed it. Local removals are therefore remembered for {@link #REMOVED_TTL_SECONDS} and added events
+ * of removed entries are skipped meanwhile, otherwise a subscriber would be routed to after it has unsubscribed.
+ * Subscriber ids are generated per subscription request and never reused, so no genuine addition is skipped.
+ */
+class SubscriptionIndex {
+
+    private static final int REMOVED_TTL_SECONDS = 60;
+
+    private final ConcurrentMap<String, ConcurrentMap<Subscription, Set<Long>>> entitySubscriptions = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    private final Cache<Map.Entry<Subscription, Long>, Boolean> removedSubscriptions = CacheBuilder.newBuilder()
+            .expireAfterWrite(REMOVED_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private final Cache<Long, Boolean> removedSubscribers = CacheBuilder.newBuilder()
+            .expireAfterWrite(REMOVED_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * Registers entry listeners on the cluster maps and loads their current state into the index.
+     * Listeners are added before the initial load so that no concurrent modification is missed.
+     *
+     * @param subscriptions - cluster map of subscription to subscriber ids
+     * @param subscribers - cluster map of subscriber id to subscriber
+     */
+    void bind(MultiMap<Subscription, Long> subscriptions, IMap<Long, Subscriber> subscribers) {
+        subscriptions.addEntryListener(new SubscriptionsListener(), true);
+        subscribers.addEntryListener((MapListener) new SubscribersListener(), true);
+
+        subscribers.entrySet().forEach(entry -> subscriberAdded(entry.getValue()));
+        subscriptions.entrySet().forEach(entry -> subscriptionAdded(entry.getKey(), entry.getValue()));
+    }
+
+    void add(Subscription subscription, Long subscriberId) {
+        addEntry(subscription, subscriberId, false);
+    }
+
+    void remove(Subscription subscription, Long subscriberId) {
+        removeEntry(subscription, subscriberId, true);
+    }
+
+    void putSubscriber(Subscriber subscriber) {
+        subscribers.compute(subscriber.getId(), (id, current) -> {
+            removedSubscribers.invalidate(id);
+            return subscriber;
+        });
+    }
+
+    void removeSubscriber(Long subscriberId) {
+        subscribers.compute(subscriberId, (id, current) -> {
+            removedSubscribers.put(id, Boolean.TRUE);
+            return null;
+        });
+    }
+
+    private void subscriptionAdded(Subscription subscription, Long subscriberId) {
+        addEntry(subscription, subscriberId, true);
+    }
+
+    private void subscriberAdded(Subscriber subscriber) {
+        subscribers.compute(subscriber.getId(), (id, current) ->
+                removedSubscribers.getIfPresent(id) != null ? current : subscriber);
+    }
+
+    /**
+     * Removed markers are read and written inside the compute of the entity, so an added event is either applied
+     * before a concurrent local removal or skipped after it.
+     */
+    private void addEntry(Subscription subscription, Long subscriberId, boolean unlessRemoved) {
+        Map.Entry<Subscription, Long> entry = new SimpleImmutableEntry<>(subscription, subscriberId);
+        entitySubscriptions.compute(subscription.getEntityId(), (entityId, subs) -> {
+            if (unlessRemoved && removedSubscriptions.getIfPresent(entry) != null) {
+                return subs;
+            }
+            removedSubscriptions.invalidate(entry);
+            ConcurrentMap<Subscription, Set<Long>> result = subs != null ? subs : new ConcurrentHashMap<>();
+            result.computeIfAbsent(subscription, s -> ConcurrentHashMap.newKeySet()).add(subscriberId);
+            return result;
+        });
+    }
+
+    private void removeEntry(Subscription subscription, Long subscriberId, boolean remember) {
+        entitySubscriptions.compute(subscription.getEntityId(), (entityId, subs) -> {
+            if (remember) {
+                removedSubscriptions.put(new SimpleImmutableEntry<>(subscription, subscriberId), Boolean.TRUE);
+            }
+            if (subs == null) {
+                return null;
+            }
+            subs.computeIfPresent(subscription, (s, ids) -> {
+                ids.remove(subscriberId);
+                return ids.isEmpty() ? null : ids;
+            });
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    private void removeEntries(Subscription subscription) {
+        entitySubscriptions.computeIfPresent(subscription.getEntityId(), (entityId, subs) -> {
+            subs.remove(subscription);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    /**
+     * @param subscription - subscription
+     * @return - ids of subscribers for subscription, empty set if nobody is subscribed
+     */
+    Set<Long> getSubscriberIds(Subscription subscription) {
+        Map<Subscription, Set<Long>> subs = entitySubscriptions.get(subscription.getEntityId());
+        if (subs == null) {
+            return Collections.emptySet();
+        }
+        Set<Long> ids = subs.get(subscription);
+        return ids != null ? ids : Collections.emptySet();
+    }
+
+    /**
+     * @param subscriberId - subscriber id
+     * @return - local replica of subscriber or null if it is not known to this node yet
+     */
+    Subscriber getSubscriber(Long subscriberId) {
+        return subscribers.get(subscriberId);
+    }
+
+    /**
+     * @param entityId - id of device or command
+     * @return - all subscriptions on events of the given entity
+     */
+    Collection<Subscription> getSubscriptions(String entityId) {
+        Map<Subscription, Set<Long>> subs = entitySubscriptions.get(entityId);
+        return subs != null ? new ArrayList<>(subs.keySet()) : Collections.emptyList();
+    }
+
+    Collection<Subscription> getAllSubscriptions() {
+        List<Subscription> all = new ArrayList<>();
+        entitySubscriptions.values().forEach(subs -> all.addAll(subs.keySet()));
+        return all;
+    }
+
+    private class SubscriptionsListener extends EntryAdapter<Subscription, Long> {
+
+        @Override
+        public void entryAdded(EntryEvent<Subscription, Long> event) {
+            subscriptionAdded(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<Subscription, Long> event) {
+            Long subscriberId = event.getOldValue() != null ? event.getOldValue() : event.getValue();
+            if (subscriberId != null) {
+                removeEntry(event.getKey(), subscriberId, false);
+            } else {
+                removeEntries(event.getKey());
+            }
+        }
+
+        @Override
+        public void mapCleared(MapEvent event) {
+            entitySubscriptions.clear();
+        }
+    }
+
+    private class SubscribersListener extends EntryAdapter<Long, Subscriber> {
+
+        @Override
+        public void entryAdded(EntryEvent<Long, Subscriber> event) {
+            subscriberAdded(event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<Long, Subscriber> event) {
+            subscriberAdded(event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<Long, Subscriber> event) {
+            subscribers.remove(event.getKey());
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<Long, Subscriber> event) {
+            subscribers.remove(event.getKey());
+        }
+
+        @Override
+        public void mapCleared(MapEvent event) {
+            subscribers.clear();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.devicehive.messages.handler.command;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.configuration.Messages;
+import com.devicehive.eventbus.EventBus;
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.eventbus.events.CommandUpdateEvent;
+import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
+import com.devicehive.model.eventbus.events.Event;
+import com.devicehive.model.rpc.CommandBatchUpdateRequest;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.service.HazelcastService;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.server.RequestHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch form of {@link CommandUpdateHandler}, for devices acknowledging many commands at once.
+ */
+@Component
+public class CommandBatchUpdateHandler implements RequestHandler {
+
+    private HazelcastService hazelcastService;
+    private EventBus eventBus;
+
+    @Autowired
+    public void setHazelcastService(HazelcastService hazelcastService) {
+        this.hazelcastService = hazelcastService;
+    }
+
+    @Autowired
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public Response handle(Request request) {
+        final List<DeviceCommand> commands = request.getBody().cast(CommandBatchUpdateRequest.class).getDeviceCommands();
+        if (commands == null || commands.isEmpty()) {
+            return Response.newBuilder()
+                    .withBody(new ErrorResponse(Messages.EMPTY_COMMAND))
+                    .withLast(true)
+                    .buildFailed(HttpStatus.BAD_REQUEST.value());
+        }
+        hazelcastService.storeAll(commands);
+
+        final List<Event> events = new ArrayList<>(commands.size() * 2);
+        commands.forEach(command -> {
+            events.add(new CommandUpdateEvent(command));
+            events.add(new CommandsUpdateEvent(command));
+        });
+        eventBus.publishAll(events);
+
+        return Response.newBuilder().buildSuccess();
+    }
+}
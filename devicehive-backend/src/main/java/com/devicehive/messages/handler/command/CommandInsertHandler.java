@@ -53,8 +53,8 @@ public class CommandInsertHandler implements RequestHandler {
         DeviceCommand deviceCommand = request.getBody().cast(CommandInsertRequest.class).getDeviceCommand();
         CommandEvent commandEvent = new CommandEvent(deviceCommand);
 
-        eventBus.publish(commandEvent);
         hazelcastService.store(deviceCommand);
+        eventBus.publish(commandEvent);
 
         CommandInsertResponse payload = new CommandInsertResponse(deviceCommand);
         return Response.newBuilder()
@@ -70,23 +70,24 @@ public class CommandSubscribeRequestHandler implements RequestHandler {
 
         Subscriber subscriber = new Subscriber(body.getSubscriptionId(), request.getReplyTo(), request.getCorrelationId());
 
+        Set<String> devices = body.getDeviceIds();
         Set<Subscription> subscriptions = new HashSet<>();
         String eventName = body.isReturnUpdated() ? COMMANDS_UPDATE_EVENT.name() : COMMAND_EVENT.name();
         body.getFilter().setEventName(eventName);
-        if (CollectionUtils.isEmpty(body.getFilter().getNames())) {
-            Subscription subscription = new Subscription(eventName, body.getDevice());
-            subscriptions.add(subscription);
-        } else {
-            for (String name : body.getFilter().getNames()) {
-                Subscription subscription = new Subscription(eventName, body.getDevice(), name);
-                subscriptions.add(subscription);
+        for (String device : devices) {
+            if (CollectionUtils.isEmpty(body.getFilter().getNames())) {
+                subscriptions.add(new Subscription(eventName, device));
+            } else {
+                for (String name : body.getFilter().getNames()) {
+                    subscriptions.add(new Subscription(eventName, device, name));
+                }
             }
         }
 
         subscriptions.forEach(subscription -> eventBus.subscribe(subscriber, subscription));
         filterRegistry.register(body.getFilter(), body.getSubscriptionId());
 
-        Collection<DeviceCommand> commands = findCommands(body.getDevice(), body.getFilter().getNames(), body.getTimestamp(), body.isReturnUpdated(), body.getLimit());
+        Collection<DeviceCommand> commands = findCommands(devices, body.getFilter().getNames(), body.getTimestamp(), body.isReturnUpdated(), body.getLimit());
         CommandSubscribeResponse subscribeResponse = new CommandSubscribeResponse(body.getSubscriptionId(), commands);
 
         return Response.newBuilder()
@@ -98,13 +99,15 @@ public class CommandSubscribeRequestHandler implements RequestHandler {
 
     private void validate(CommandSubscribeRequest request) {
         Assert.notNull(request, "Request body is null");
-        Assert.notNull(request.getDevice(), "Device deviceId is null");
+        Assert.notEmpty(request.getDeviceIds(), "Device deviceId is null");
         Assert.notNull(request.getSubscriptionId(), "Subscription id not provided");
     }
 
-    private Collection<DeviceCommand> findCommands(String device, Collection<String> names, Date timestamp, boolean returnUpdated, Integer limit) {
-        return Optional.ofNullable(timestamp)
-                .map(t -> hazelcastService.find(Collections.singleton(device), names, limit, t, null, returnUpdated, null, DeviceCommand.class))
-                .orElse(Collections.emptyList());
+    private Collection<DeviceCommand> findCommands(Set<String> devices, Collection<String> names, Date timestamp, boolean returnUpdated, Integer limit) {
+        if (timestamp == null) {
+            return Collections.emptyList();
+        }
+        // the limit applies per device, as it did when every device was subscribed by a separate request
+        return hazelcastService.findPerDevice(devices, names, limit, timestamp, returnUpdated, DeviceCommand.class);
     }
 }
@@ -23,6 +23,7 @@ package com.devicehive.messages.handler.command;
 import com.devicehive.eventbus.EventBus;
 import com.devicehive.model.DeviceCommand;
 import com.devicehive.model.eventbus.events.CommandUpdateEvent;
+import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
 import com.devicehive.model.rpc.CommandUpdateRequest;
 import com.devicehive.service.HazelcastService;
 import com.devicehive.shim.api.Request;
@@ -31,6 +32,12 @@ import com.devicehive.shim.api.server.RequestHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+
+/**
+ * Stores the updated command once and notifies both subscribers of the command and subscribers
+ * of command updates of its device.
+ */
 @Component
 public class CommandUpdateHandler implements RequestHandler {
 
@@ -52,7 +59,7 @@ public class CommandUpdateHandler implements RequestHandler {
         final DeviceCommand command = request.getBody().cast(CommandUpdateRequest.class).getDeviceCommand();
         hazelcastService.store(command);
 
-        eventBus.publish(new CommandUpdateEvent(command));
+        eventBus.publishAll(Arrays.asList(new CommandUpdateEvent(command), new CommandsUpdateEvent(command)));
 
         return Response.newBuilder().buildSuccess();
     }
@@ -20,40 +20,31 @@ package com.devicehive.messages.handler.command;
  * #L%
  */
 
-import com.devicehive.eventbus.EventBus;
-import com.devicehive.model.DeviceCommand;
-import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
 import com.devicehive.model.rpc.CommandsUpdateRequest;
-import com.devicehive.service.HazelcastService;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+/**
+ * Acknowledges {@link CommandsUpdateRequest} of frontends from earlier releases without storing or publishing anything.
+ * Such a frontend sends a {@link com.devicehive.model.rpc.CommandUpdateRequest} for the same command too, and
+ * {@link CommandUpdateHandler} already stores it and publishes both update events, so handling this request
+ * again would deliver every update twice.
+ *
+ * Legacy, to be removed once no frontend sends {@link com.devicehive.shim.api.Action#COMMANDS_UPDATE_REQUEST}.
+ */
 @Component
 public class CommandsUpdateHandler implements RequestHandler {
 
-    private HazelcastService hazelcastService;
-    private EventBus eventBus;
-
-    @Autowired
-    public void setHazelcastService(HazelcastService hazelcastService) {
-        this.hazelcastService = hazelcastService;
-    }
-
-    @Autowired
-    public void setEventBus(EventBus eventBus) {
-        this.eventBus = eventBus;
-    }
+    private static final Logger logger = LoggerFactory.getLogger(CommandsUpdateHandler.class);
 
     @Override
     public Response handle(Request request) {
-        final DeviceCommand command = request.getBody().cast(CommandsUpdateRequest.class).getDeviceCommand();
-        hazelcastService.store(command);
-
-        eventBus.publish(new CommandsUpdateEvent(command));
-
+        logger.debug("Ignoring deprecated {}, the command is handled by {}",
+                CommandsUpdateRequest.class.getSimpleName(), CommandUpdateHandler.class.getSimpleName());
         return Response.newBuilder().buildSuccess();
     }
 }
@@ -53,8 +53,8 @@ public class NotificationInsertHandler implements RequestHandler {
         DeviceNotification notification = ((NotificationInsertRequest) request.getBody()).getDeviceNotification();
         NotificationEvent notificationEvent = new NotificationEvent(notification);
 
-        eventBus.publish(notificationEvent);
         hazelcastService.store(notification);
+        eventBus.publish(notificationEvent);
 
         NotificationInsertResponse payload = new NotificationInsertResponse(notification);
         return Response.newBuilder()
@@ -24,7 +24,6 @@ import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.rpc.NotificationSearchRequest;
 import com.devicehive.model.rpc.NotificationSearchResponse;
 import com.devicehive.service.HazelcastService;
-import com.devicehive.service.helpers.CommandResponseFilterAndSort;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
@@ -33,15 +32,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
-
-import static com.devicehive.service.helpers.CommandResponseFilterAndSort.buildDeviceNotificationComparator;
-import static com.devicehive.service.helpers.CommandResponseFilterAndSort.getTotal;
-import static com.devicehive.service.helpers.CommandResponseFilterAndSort.orderAndLimit;
 
 @Component
 public class NotificationSearchHandler implements RequestHandler {
@@ -67,25 +59,20 @@ public class NotificationSearchHandler implements RequestHandler {
     }
 
     private NotificationSearchResponse searchMultipleNotifications(NotificationSearchRequest searchRequest) {
-        //TODO [rafa] has response is quite bad, instead we should separate command and reply into two separate collections.
-        final Collection<DeviceNotification> notifications = hazelcastService.find(
+        final List<DeviceNotification> notifications = hazelcastService.find(
                 searchRequest.getDeviceIds(),
                 searchRequest.getNames(),
-                getTotal(searchRequest.getSkip(), searchRequest.getTake()),
+                searchRequest.getSkip(),
+                searchRequest.getTake(),
                 searchRequest.getTimestampStart(),
                 searchRequest.getTimestampEnd(),
                 false,
                 null,
+                searchRequest.getSortField(),
+                searchRequest.getSortOrder(),
                 DeviceNotification.class);
 
-        final Comparator<DeviceNotification> comparator = buildDeviceNotificationComparator(searchRequest.getSortField());
-        String sortOrder = searchRequest.getSortOrder();
-        final Boolean reverse = sortOrder == null ? null : "desc".equalsIgnoreCase(sortOrder);
-
-        final List<DeviceNotification> sortedDeviceNotifications = orderAndLimit(new ArrayList<>(notifications),
-                comparator, reverse, searchRequest.getSkip(), searchRequest.getTake());
-
-        return new NotificationSearchResponse(new ArrayList<>(sortedDeviceNotifications));
+        return new NotificationSearchResponse(new ArrayList<>(notifications));
     }
 
     private NotificationSearchResponse searchSingleNotificationByDeviceAndId(long id, String deviceId) {
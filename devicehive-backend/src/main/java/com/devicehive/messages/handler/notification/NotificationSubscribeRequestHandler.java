@@ -70,21 +70,22 @@ public class NotificationSubscribeRequestHandler implements RequestHandler {
 
         Subscriber subscriber = new Subscriber(body.getSubscriptionId(), request.getReplyTo(), request.getCorrelationId());
 
+        Set<String> devices = body.getDeviceIds();
         Set<Subscription> subscriptions = new HashSet<>();
-        if (CollectionUtils.isEmpty(body.getFilter().getNames())) {
-            Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), body.getDevice());
-            subscriptions.add(subscription);
-        } else {
-            for (String name : body.getFilter().getNames()) {
-                Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), body.getDevice(), name);
-                subscriptions.add(subscription);
+        for (String device : devices) {
+            if (CollectionUtils.isEmpty(body.getFilter().getNames())) {
+                subscriptions.add(new Subscription(Action.NOTIFICATION_EVENT.name(), device));
+            } else {
+                for (String name : body.getFilter().getNames()) {
+                    subscriptions.add(new Subscription(Action.NOTIFICATION_EVENT.name(), device, name));
+                }
             }
         }
 
         subscriptions.forEach(subscription -> eventBus.subscribe(subscriber, subscription));
         filterRegistry.register(body.getFilter(), body.getSubscriptionId());
 
-        Collection<DeviceNotification> notifications = findNotifications(body.getDevice(), body.getFilter().getNames(), body.getTimestamp());
+        Collection<DeviceNotification> notifications = findNotifications(devices, body.getFilter().getNames(), body.getTimestamp());
         NotificationSubscribeResponse subscribeResponse = new NotificationSubscribeResponse(body.getSubscriptionId(), notifications);
 
         return Response.newBuilder()
@@ -96,17 +97,16 @@ public class NotificationSubscribeRequestHandler implements RequestHandler {
 
     private void validate(NotificationSubscribeRequest request) {
         Assert.notNull(request, "Request body is null");
-        Assert.notNull(request.getDevice(), "Device id is null");
+        Assert.notEmpty(request.getDeviceIds(), "Device id is null");
         Assert.notNull(request.getSubscriptionId(), "Subscription id not provided");
     }
 
-    private Collection<DeviceNotification> findNotifications(String device, Collection<String> names, Date timestamp) {
-        Collection<DeviceNotification> notifications = Collections.emptyList();
-        if (timestamp != null) {
-            notifications =
-                    hazelcastService.find(Collections.singleton(device), names, LIMIT, timestamp, null, false, null, DeviceNotification.class);
+    private Collection<DeviceNotification> findNotifications(Set<String> devices, Collection<String> names, Date timestamp) {
+        if (timestamp == null) {
+            return Collections.emptyList();
         }
-        return notifications;
+        // the limit applies per device, as it did when every device was subscribed by a separate request
+        return hazelcastService.findPerDevice(devices, names, LIMIT, timestamp, false, DeviceNotification.class);
     }
 
 }
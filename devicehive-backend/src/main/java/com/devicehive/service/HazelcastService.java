@@ -23,8 +23,18 @@ package com.devicehive.service;
 import com.devicehive.model.DeviceCommand;
 import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastDeviceQuery;
+import com.devicehive.model.HazelcastDeviceTrim;
 import com.devicehive.model.HazelcastEntityComparator;
+import com.devicehive.model.HazelcastEntityKey;
+import com.devicehive.model.history.DeviceHistory;
+import com.devicehive.model.history.DeviceHistoryAppender;
+import com.devicehive.model.history.DeviceHistoryQuery;
 import com.devicehive.service.helpers.HazelcastHelper;
+import com.devicehive.service.helpers.HazelcastRetentionMetrics;
+import com.devicehive.service.history.HistoryStore;
+import com.google.common.cache.CacheBuilder;
+import com.hazelcast.core.ExecutionCallback;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import com.hazelcast.query.PagingPredicate;
@@ -32,11 +42,20 @@ import com.hazelcast.query.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import static com.devicehive.model.enums.SearchableField.DEVICE_ID;
 import static com.devicehive.model.enums.SearchableField.LAST_UPDATED;
 import static com.devicehive.model.enums.SearchableField.TIMESTAMP;
 
@@ -44,38 +63,112 @@ import static com.devicehive.model.enums.SearchableField.TIMESTAMP;
 public class HazelcastService {
     private static final Logger logger = LoggerFactory.getLogger(HazelcastService.class);
 
-    private static final String NOTIFICATIONS_MAP = "NOTIFICATIONS-MAP";
-    private static final String COMMANDS_MAP = "COMMANDS-MAP";
+    public static final String NOTIFICATIONS_MAP = "NOTIFICATIONS-MAP";
+    public static final String COMMANDS_MAP = "COMMANDS-MAP";
+    public static final String NOTIFICATIONS_HISTORY_MAP = "NOTIFICATIONS-HISTORY-MAP";
+    public static final String COMMANDS_HISTORY_MAP = "COMMANDS-HISTORY-MAP";
+    public static final String DEVICE_QUERY_EXECUTOR = "DEVICE-QUERY-EXECUTOR";
+    private static final long TRIM_COUNTER_IDLE_MINUTES = 10;
 
     private final HazelcastInstance hazelcastClient;
 
     private final HazelcastHelper hazelcastHelper;
 
-    private Map<Class, IMap<String, HazelcastEntity>> mapsHolder = new HashMap<>(2);
+    private final HazelcastRetentionMetrics retentionMetrics;
+
+    private final HistoryStore historyStore;
+
+    private Map<Class, IMap<HazelcastEntityKey, HazelcastEntity>> mapsHolder = new HashMap<>(2);
+
+    private Map<Class, Retention> retentionHolder = new HashMap<>(2);
+
+    private Map<Class, IMap<String, DeviceHistory>> historyHolder = new HashMap<>(2);
+
+    /**
+     * Entries stored per device since its last trim. Counters of devices which stopped sending are dropped,
+     * so such a device is trimmed a bit later if it comes back.
+     */
+    private final ConcurrentMap<String, AtomicInteger> storedSinceTrim = CacheBuilder.newBuilder()
+            .expireAfterAccess(TRIM_COUNTER_IDLE_MINUTES, TimeUnit.MINUTES)
+            .<String, AtomicInteger>build()
+            .asMap();
+
+    @Value("${hazelcast.retention.notifications.ttl-seconds:0}")
+    private long notificationsTtlSeconds;
+
+    @Value("${hazelcast.retention.notifications.max-per-device:0}")
+    private int notificationsMaxPerDevice;
+
+    @Value("${hazelcast.retention.commands.ttl-seconds:0}")
+    private long commandsTtlSeconds;
+
+    @Value("${hazelcast.retention.commands.max-per-device:0}")
+    private int commandsMaxPerDevice;
+
+    @Value("${hazelcast.history.enabled:false}")
+    private boolean historyEnabled;
+
+    @Value("${hazelcast.history.capacity:200}")
+    private int historyCapacity;
+
+    @Value("${hazelcast.history.near-cache.enabled:true}")
+    private boolean historyNearCacheEnabled;
 
     @Autowired
-    public HazelcastService(HazelcastInstance hazelcastClient, HazelcastHelper hazelcastHelper) {
+    public HazelcastService(HazelcastInstance hazelcastClient, HazelcastHelper hazelcastHelper,
+                            HazelcastRetentionMetrics retentionMetrics, HistoryStore historyStore) {
         this.hazelcastClient = hazelcastClient;
         this.hazelcastHelper = hazelcastHelper;
+        this.retentionMetrics = retentionMetrics;
+        this.historyStore = historyStore;
     }
 
     @PostConstruct
     protected void init() {
-        final IMap<String, HazelcastEntity> notificationsMap = hazelcastClient.getMap(NOTIFICATIONS_MAP);
+        final IMap<HazelcastEntityKey, HazelcastEntity> notificationsMap = hazelcastClient.getMap(NOTIFICATIONS_MAP);
         notificationsMap.addIndex(TIMESTAMP.getField(), true);
+        notificationsMap.addIndex(DEVICE_ID.getField(), false);
+        notificationsMap.addEntryListener(retentionMetrics, false);
 
-        final IMap<String, HazelcastEntity> commandsMap = hazelcastClient.getMap(COMMANDS_MAP);
+        final IMap<HazelcastEntityKey, HazelcastEntity> commandsMap = hazelcastClient.getMap(COMMANDS_MAP);
         commandsMap.addIndex(TIMESTAMP.getField(), true);
         commandsMap.addIndex(LAST_UPDATED.getField(), true);
+        commandsMap.addIndex(DEVICE_ID.getField(), false);
+        commandsMap.addEntryListener(retentionMetrics, false);
         
         mapsHolder.put(DeviceNotification.class, notificationsMap);
         mapsHolder.put(DeviceCommand.class, commandsMap);
+
+        retentionHolder.put(DeviceNotification.class, new Retention(notificationsTtlSeconds, notificationsMaxPerDevice));
+        retentionHolder.put(DeviceCommand.class, new Retention(commandsTtlSeconds, commandsMaxPerDevice));
+
+        if (historyEnabled) {
+            // histories can't tell expired entries without a time to live known to backends
+            enableHistory(DeviceNotification.class, NOTIFICATIONS_HISTORY_MAP);
+            enableHistory(DeviceCommand.class, COMMANDS_HISTORY_MAP);
+        }
     }
 
 
+    private void enableHistory(Class<? extends HazelcastEntity> entityClass, String mapName) {
+        if (retentionHolder.get(entityClass).ttlSeconds > 0) {
+            historyHolder.put(entityClass, hazelcastClient.getMap(mapName));
+        } else {
+            logger.warn("History of {} is disabled, as its ttl-seconds is not set", entityClass.getSimpleName());
+        }
+    }
+
     public <T extends HazelcastEntity> Optional<T> find(Long id, String deviceId, Class<T> entityClass) {
+        if (id != null && deviceId != null) {
+            final HazelcastEntity entity = mapsHolder.get(entityClass).get(new HazelcastEntityKey(id, deviceId));
+            if (entityClass.isInstance(entity)) {
+                return Optional.of(entityClass.cast(entity));
+            }
+            return historyStore.find(id, Collections.singleton(deviceId), null, null, null, false, null, 1,
+                    new HazelcastEntityComparator(), entityClass).stream().findFirst();
+        }
         final Predicate filters = hazelcastHelper.prepareFilters(id, deviceId, entityClass);
-        return find(filters, 1, entityClass).stream().findFirst();
+        return find(filters, 1, new HazelcastEntityComparator(), entityClass).stream().findFirst();
     }
 
     public <T extends HazelcastEntity> Collection<T> find(Collection<String> deviceIds,
@@ -86,21 +179,304 @@ public class HazelcastService {
                                                           boolean returnUpdated,
                                                           String status,
                                                           Class<T> entityClass) {
+        if (historyHolder.containsKey(entityClass) && timestampSt != null && timestampEnd == null && !returnUpdated
+                && StringUtils.isEmpty(status) && deviceIds != null && !deviceIds.isEmpty()) {
+            return findInHistory(deviceIds, names, take, timestampSt, entityClass);
+        }
+        return find(deviceIds, names, 0, take != null && take > 0 ? take : null, timestampSt, timestampEnd,
+                returnUpdated, status, new HazelcastEntityComparator(), entityClass);
+    }
+
+    /**
+     * Entries of many devices after the timestamp, oldest first, found by one query for all of them.
+     * At most limitPerDevice entries are kept for each device. The query itself returns at most limitPerDevice
+     * times the number of devices, so when some devices have more than the limit, others may get fewer than it.
+     */
+    public <T extends HazelcastEntity> List<T> findPerDevice(Collection<String> deviceIds,
+                                                             Collection<String> names,
+                                                             Integer limitPerDevice,
+                                                             Date timestampSt,
+                                                             boolean returnUpdated,
+                                                             Class<T> entityClass) {
+        final boolean limited = limitPerDevice != null && limitPerDevice > 0;
+        final Integer take = limited ? (int) Math.min((long) limitPerDevice * deviceIds.size(), Integer.MAX_VALUE) : null;
+        final List<T> found = new ArrayList<>(find(deviceIds, names, take, timestampSt, null, returnUpdated, null, entityClass));
+        if (!limited) {
+            return found;
+        }
+        final Map<String, Integer> perDevice = new HashMap<>();
+        found.removeIf(entity -> perDevice.merge(entity.getDeviceId(), 1, Integer::sum) > limitPerDevice);
+        return found;
+    }
+
+    /**
+     * Page of entries sorted by the given field and order.
+     * Members sort their matches and return at most skip + take of them, so the transfer is bounded by the page.
+     */
+    public <T extends HazelcastEntity> List<T> find(Collection<String> deviceIds,
+                                                    Collection<String> names,
+                                                    Integer skip,
+                                                    Integer take,
+                                                    Date timestampSt,
+                                                    Date timestampEnd,
+                                                    boolean returnUpdated,
+                                                    String status,
+                                                    String sortField,
+                                                    String sortOrder,
+                                                    Class<T> entityClass) {
+        return find(deviceIds, names, skip, take, timestampSt, timestampEnd, returnUpdated, status,
+                hazelcastHelper.prepareComparator(sortField, sortOrder, entityClass), entityClass);
+    }
+
+    private <T extends HazelcastEntity> List<T> find(Collection<String> deviceIds,
+                                                     Collection<String> names,
+                                                     Integer skip,
+                                                     Integer take,
+                                                     Date timestampSt,
+                                                     Date timestampEnd,
+                                                     boolean returnUpdated,
+                                                     String status,
+                                                     HazelcastEntityComparator comparator,
+                                                     Class<T> entityClass) {
+        final int offset = skip != null ? skip : 0;
+        if (offset < 0 || (take != null && take <= 0)) {
+            return Collections.emptyList();
+        }
+        final int pageSize = take != null ? offset + take : 0;
         final Predicate filters = hazelcastHelper.prepareFilters(deviceIds,  names, timestampSt, timestampEnd,
                returnUpdated, status, entityClass);
-        return find(filters, take, entityClass);
+        final List<T> found = new ArrayList<>(deviceIds != null && deviceIds.size() == 1
+                ? findInPartition(deviceIds.iterator().next(), filters, pageSize, comparator, entityClass)
+                : find(filters, pageSize, comparator, entityClass));
+        if (pageSize == 0) {
+            // whole result is returned without paging predicate, so it isn't sorted yet
+            found.sort(comparator::compareEntities);
+        }
+        if (historyStore.isEnabled() && !coveredByHazelcast(timestampSt, entityClass)) {
+            mergeColdTier(found, historyStore.find(null, deviceIds, names, timestampSt, timestampEnd, returnUpdated,
+                    status, pageSize, comparator, entityClass), comparator);
+        }
+        if (pageSize > 0 && found.size() > pageSize) {
+            found.subList(pageSize, found.size()).clear();
+        }
+        return offset >= found.size() ? Collections.emptyList() : found.subList(offset, found.size());
+    }
+
+    /**
+     * Entries after the timestamp are all still in hazelcast if it is within time to live, and entries leave
+     * hazelcast only by expiration: there is no per-device limit and members haven't evicted any by size.
+     */
+    private boolean coveredByHazelcast(Date timestampSt, Class<? extends HazelcastEntity> entityClass) {
+        final Retention retention = retentionHolder.get(entityClass);
+        return timestampSt != null && retention.ttlSeconds > 0 && retention.maxPerDevice == 0
+                && timestampSt.getTime() >= System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(retention.ttlSeconds)
+                && !retentionMetrics.isEvictedBySize(mapsHolder.get(entityClass).getName());
+    }
+
+    /**
+     * Adds entries of the cold tier which are not in hazelcast anymore. Entries still in hazelcast are newer versions.
+     */
+    private <T extends HazelcastEntity> void mergeColdTier(List<T> found, List<T> cold,
+                                                           HazelcastEntityComparator comparator) {
+        if (cold.isEmpty()) {
+            return;
+        }
+        final Set<HazelcastEntityKey> keys = new HashSet<>();
+        found.forEach(entity -> keys.add(entity.getHazelcastKey()));
+        cold.stream().filter(entity -> !keys.contains(entity.getHazelcastKey())).forEach(found::add);
+        found.sort(comparator::compareEntities);
+    }
+
+    /**
+     * Runs the query on the member owning the partition of the device, so only that partition is scanned
+     * and only the requested page is sent back. Falls back to cluster-wide query if the member can't run it.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends HazelcastEntity> Collection<T> findInPartition(String deviceId, Predicate filters, int take,
+                                                                      HazelcastEntityComparator comparator,
+                                                                      Class<T> entityClass) {
+        final String mapName = mapsHolder.get(entityClass).getName();
+        try {
+            final Future<List<HazelcastEntity>> future = hazelcastClient.getExecutorService(DEVICE_QUERY_EXECUTOR)
+                    .submitToKeyOwner(new HazelcastDeviceQuery(mapName, deviceId, filters, take, comparator), deviceId);
+            return (Collection<T>) (Collection<?>) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying device " + deviceId, e);
+        } catch (ExecutionException e) {
+            logger.warn("Unable to query partition of device {} in {}, querying all members", deviceId, mapName, e.getCause());
+            return find(filters, take, comparator, entityClass);
+        }
+    }
+
+    /**
+     * Polls newer entries of devices from their histories, each one is read on the member owning the device.
+     * With the near cache of histories enabled, whole histories are read instead and queried on backend, so repeated
+     * polls of hot devices are served from backend memory until members invalidate the history on the next append.
+     * Devices with no history or with a history that doesn't cover the timestamp are queried with predicates.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends HazelcastEntity> Collection<T> findInHistory(Collection<String> deviceIds,
+                                                                    Collection<String> names,
+                                                                    Integer take,
+                                                                    Date timestampSt,
+                                                                    Class<T> entityClass) {
+        final int limit = take != null ? take : 0;
+        final Retention retention = retentionHolder.get(entityClass);
+        final long minTimestamp = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(retention.ttlSeconds);
+        final IMap<String, DeviceHistory> historyMap = historyHolder.get(entityClass);
+        final Map<String, List<HazelcastEntity>> found = new HashMap<>();
+        if (historyNearCacheEnabled) {
+            historyMap.getAll(new HashSet<>(deviceIds)).forEach((deviceId, history) ->
+                    found.put(deviceId, history.find(names, timestampSt.getTime(), minTimestamp, limit)));
+        } else {
+            historyMap.executeOnKeys(new HashSet<>(deviceIds),
+                    new DeviceHistoryQuery(names, timestampSt.getTime(), minTimestamp, limit))
+                    .forEach((deviceId, history) ->
+                            found.put(deviceId, history != null ? ((DeviceHistory) history).getEntries() : null));
+        }
+
+        final List<T> result = new ArrayList<>();
+        final Set<String> uncovered = new HashSet<>();
+        for (String deviceId : deviceIds) {
+            final List<HazelcastEntity> entries = found.get(deviceId);
+            if (entries != null) {
+                entries.forEach(entity -> result.add((T) entity));
+            } else {
+                uncovered.add(deviceId);
+            }
+        }
+        final HazelcastEntityComparator comparator = new HazelcastEntityComparator();
+        if (!uncovered.isEmpty()) {
+            result.addAll(find(uncovered, names, 0, limit > 0 ? limit : null, timestampSt, null, false, null,
+                    comparator, entityClass));
+        }
+
+        // same page as paging predicate would return: oldest entries first
+        result.sort(comparator::compareEntities);
+        return limit > 0 && result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
     }
 
     public <T extends HazelcastEntity> void store(final T hzEntity) {
         logger.debug("Saving entity into hazelcast. [Entity: {}]", hzEntity);
-        mapsHolder.get(hzEntity.getClass()).set(hzEntity.getHazelcastKey(), hzEntity);
+        final IMap<HazelcastEntityKey, HazelcastEntity> map = mapsHolder.get(hzEntity.getClass());
+        final Retention retention = retentionHolder.get(hzEntity.getClass());
+        if (retention.ttlSeconds > 0) {
+            map.set(hzEntity.getHazelcastKey(), hzEntity, retention.ttlSeconds, TimeUnit.SECONDS);
+        } else {
+            // time to live of the map config on members applies
+            map.set(hzEntity.getHazelcastKey(), hzEntity);
+        }
+        if (hzEntity.getDeviceId() != null) {
+            afterStore(map, retention, hzEntity.getDeviceId(), Collections.singletonList(hzEntity));
+        }
+    }
+
+    /**
+     * Stores entities of one type in a single round trip per member instead of one per entity.
+     * With per-entry time to live configured the entities are sent asynchronously and awaited together,
+     * as putAll can't set it.
+     */
+    public <T extends HazelcastEntity> void storeAll(final Collection<T> hzEntities) {
+        if (hzEntities.isEmpty()) {
+            return;
+        }
+        logger.debug("Saving {} entities into hazelcast", hzEntities.size());
+        final Class<?> entityClass = hzEntities.iterator().next().getClass();
+        final IMap<HazelcastEntityKey, HazelcastEntity> map = mapsHolder.get(entityClass);
+        final Retention retention = retentionHolder.get(entityClass);
+        if (retention.ttlSeconds > 0) {
+            final List<Future<Void>> futures = new ArrayList<>(hzEntities.size());
+            hzEntities.forEach(e -> futures.add(map.setAsync(e.getHazelcastKey(), e, retention.ttlSeconds, TimeUnit.SECONDS)));
+            try {
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while saving entities into " + map.getName(), e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unable to save entities into " + map.getName(), e.getCause());
+            }
+        } else {
+            final Map<HazelcastEntityKey, HazelcastEntity> entries = new LinkedHashMap<>();
+            hzEntities.forEach(e -> entries.put(e.getHazelcastKey(), e));
+            map.putAll(entries);
+        }
+        hzEntities.stream()
+                .filter(e -> e.getDeviceId() != null)
+                .collect(Collectors.groupingBy(HazelcastEntity::getDeviceId, LinkedHashMap::new, Collectors.toList()))
+                .forEach((deviceId, entities) -> afterStore(map, retention, deviceId, entities));
+    }
+
+    /**
+     * Applies the per-device limit and appends stored entities of the device to its history.
+     */
+    private void afterStore(IMap<HazelcastEntityKey, HazelcastEntity> map, Retention retention, String deviceId,
+                            List<? extends HazelcastEntity> entities) {
+        if (retention.maxPerDevice > 0) {
+            AtomicInteger stored = storedSinceTrim.computeIfAbsent(map.getName() + "/" + deviceId, k -> new AtomicInteger());
+            if (stored.addAndGet(entities.size()) >= retention.trimInterval()) {
+                stored.set(0);
+                trim(map.getName(), deviceId, retention.maxPerDevice);
+            }
+        }
+        final IMap<String, DeviceHistory> historyMap = historyHolder.get(entities.get(0).getClass());
+        if (historyMap != null) {
+            final int capacity = retention.maxPerDevice > 0
+                    ? Math.min(historyCapacity, retention.maxPerDevice)
+                    : historyCapacity;
+            historyMap.executeOnKey(deviceId, new DeviceHistoryAppender(entities, capacity));
+        }
+    }
+
+    /**
+     * Removes the oldest entries of the device above the limit on the member owning the device partition.
+     * The insert doesn't wait for it. With the cold tier enabled the entries are evicted, so the backend spilling
+     * evicted entries moves them there.
+     */
+    private void trim(String mapName, String deviceId, int maxPerDevice) {
+        hazelcastClient.getExecutorService(DEVICE_QUERY_EXECUTOR).submitToKeyOwner(
+                new HazelcastDeviceTrim(mapName, deviceId, maxPerDevice, historyStore.isEnabled()), deviceId,
+                new ExecutionCallback<Integer>() {
+                    @Override
+                    public void onResponse(Integer trimmed) {
+                        if (trimmed > 0) {
+                            retentionMetrics.trimmed(mapName, trimmed);
+                            logger.debug("Trimmed {} entries of device {} in {}", trimmed, deviceId, mapName);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        logger.warn("Unable to trim entries of device {} in {}", deviceId, mapName, t);
+                    }
+                });
     }
 
     @SuppressWarnings("unchecked")
-    private <T extends HazelcastEntity> Collection<T> find(Predicate predicate, int pageSize, Class<T> tClass) {
+    private <T extends HazelcastEntity> Collection<T> find(Predicate predicate, int pageSize,
+                                                           HazelcastEntityComparator comparator, Class<T> tClass) {
         final Predicate pagingPredicate = (pageSize > 0)
-                ? new PagingPredicate(predicate, new HazelcastEntityComparator(), pageSize)
+                ? new PagingPredicate(predicate, comparator, pageSize)
                 : predicate;
         return (Collection<T>) mapsHolder.get(tClass).values(pagingPredicate);
     }
+
+    private static class Retention {
+        private final long ttlSeconds;
+        private final int maxPerDevice;
+
+        Retention(long ttlSeconds, int maxPerDevice) {
+            this.ttlSeconds = ttlSeconds;
+            this.maxPerDevice = maxPerDevice;
+        }
+
+        /**
+         * Per-device limit is checked every tenth part of it, so a device may briefly exceed it by that much
+         */
+        int trimInterval() {
+            return Math.max(1, maxPerDevice / 10);
+        }
+    }
 }
@@ -23,6 +23,7 @@ package com.devicehive.service.helpers;
 import com.devicehive.model.DeviceCommand;
 import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityComparator;
 import com.devicehive.model.enums.SearchableField;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.Predicates;
@@ -50,6 +51,27 @@ public class HazelcastHelper {
         return prepareFilters(null, deviceIds, names, timestampSt, timestampEnd, returnUpdated, status, entityClass);
     }
 
+    /**
+     * @param sortField - timestamp, notification, command or status, timestamp if not applicable to entity class
+     * @param sortOrder - asc or desc. If not set, entries are sorted in descending order of the sort field,
+     *                  or in ascending order of timestamp if the sort field is not set either
+     */
+    public <T extends HazelcastEntity> HazelcastEntityComparator prepareComparator(String sortField, String sortOrder,
+                                                                                   Class<T> entityClass) {
+        SearchableField field = TIMESTAMP;
+        if (entityClass.equals(DeviceCommand.class)) {
+            if (COMMAND.getField().equalsIgnoreCase(sortField)) {
+                field = COMMAND;
+            } else if (STATUS.getField().equalsIgnoreCase(sortField)) {
+                field = STATUS;
+            }
+        } else if (NOTIFICATION.getField().equalsIgnoreCase(sortField)) {
+            field = NOTIFICATION;
+        }
+        final boolean descending = sortOrder != null ? !"asc".equalsIgnoreCase(sortOrder) : sortField != null;
+        return new HazelcastEntityComparator(field, descending);
+    }
+
     private <T extends HazelcastEntity> Predicate prepareFilters(Long id, Collection<String> deviceIds,
             Collection<String> names, Date timestampSt, Date timestampEnd, boolean returnUpdated, String status,
             Class<T> entityClass) {
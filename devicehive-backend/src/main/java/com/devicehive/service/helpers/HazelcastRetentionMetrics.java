@@ -0,0 +1,106 @@
+package com.devicehive.service.helpers;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityKey;
+import com.devicehive.service.HazelcastService;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts history entries removed from notification and command maps by TTL expiry, by eviction policy
+ * of the members and by per-device trimming. Hazelcast reports an expiry as eviction as well, so evictions
+ * caused by size limits are evicted minus expired. With the cold tier enabled trimmed entries are evicted,
+ * so they are counted as evictions too.
+ */
+@Component
+@ManagedResource(objectName = "com.devicehive:type=HazelcastRetention")
+public class HazelcastRetentionMetrics implements EntryExpiredListener<HazelcastEntityKey, HazelcastEntity>,
+        EntryEvictedListener<HazelcastEntityKey, HazelcastEntity> {
+
+    private final ConcurrentMap<String, AtomicLong> expired = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> evicted = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> trimmed = new ConcurrentHashMap<>();
+
+    @Override
+    public void entryExpired(EntryEvent<HazelcastEntityKey, HazelcastEntity> event) {
+        counter(expired, event.getName()).incrementAndGet();
+    }
+
+    @Override
+    public void entryEvicted(EntryEvent<HazelcastEntityKey, HazelcastEntity> event) {
+        counter(evicted, event.getName()).incrementAndGet();
+    }
+
+    public void trimmed(String mapName, int count) {
+        counter(trimmed, mapName).addAndGet(count);
+    }
+
+    /**
+     * @return - whether members evicted entries of the map by max-size policy since this backend started
+     */
+    public boolean isEvictedBySize(String mapName) {
+        return counter(evicted, mapName).get() > counter(expired, mapName).get();
+    }
+
+    @ManagedAttribute(description = "Notifications removed after their time to live")
+    public long getNotificationsExpired() {
+        return counter(expired, HazelcastService.NOTIFICATIONS_MAP).get();
+    }
+
+    @ManagedAttribute(description = "Notifications evicted by max-size policy")
+    public long getNotificationsEvicted() {
+        return Math.max(0, counter(evicted, HazelcastService.NOTIFICATIONS_MAP).get() - getNotificationsExpired());
+    }
+
+    @ManagedAttribute(description = "Notifications removed over per-device limit")
+    public long getNotificationsTrimmed() {
+        return counter(trimmed, HazelcastService.NOTIFICATIONS_MAP).get();
+    }
+
+    @ManagedAttribute(description = "Commands removed after their time to live")
+    public long getCommandsExpired() {
+        return counter(expired, HazelcastService.COMMANDS_MAP).get();
+    }
+
+    @ManagedAttribute(description = "Commands evicted by max-size policy")
+    public long getCommandsEvicted() {
+        return Math.max(0, counter(evicted, HazelcastService.COMMANDS_MAP).get() - getCommandsExpired());
+    }
+
+    @ManagedAttribute(description = "Commands removed over per-device limit")
+    public long getCommandsTrimmed() {
+        return counter(trimmed, HazelcastService.COMMANDS_MAP).get();
+    }
+
+    private static AtomicLong counter(ConcurrentMap<String, AtomicLong> counters, String mapName) {
+        return counters.computeIfAbsent(mapName, name -> new AtomicLong());
+    }
+}
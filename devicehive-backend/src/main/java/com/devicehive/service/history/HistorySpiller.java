@@ -0,0 +1,108 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityKey;
+import com.devicehive.service.HazelcastService;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ILock;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves entries expired or evicted from hazelcast to the cold tier. Entries over the per-device limit
+ * are evicted by {@link HazelcastService} trimming, so they are moved here as well.
+ *
+ * Every backend receives the entry events, so only the one holding the cluster-wide spill lock appends them.
+ * It is the only writer of the cold tier, which the other backends read from the same shared directory.
+ * Other backends keep trying to take the lock, so that one of them continues if the holder goes away.
+ * An entry spilled twice around such a switch is merged on read.
+ */
+@Component
+public class HistorySpiller implements EntryEvictedListener<HazelcastEntityKey, HazelcastEntity> {
+    private static final Logger logger = LoggerFactory.getLogger(HistorySpiller.class);
+
+    public static final String SPILL_LOCK = "HISTORY-SPILL-LOCK";
+    private static final long LOCK_ATTEMPT_INTERVAL_SECONDS = 10;
+
+    private final HazelcastInstance hazelcastClient;
+    private final HistoryStore historyStore;
+
+    private ScheduledExecutorService lockExecutor;
+
+    @Autowired
+    public HistorySpiller(HazelcastInstance hazelcastClient, HistoryStore historyStore) {
+        this.hazelcastClient = hazelcastClient;
+        this.historyStore = historyStore;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!historyStore.isEnabled()) {
+            return;
+        }
+        lockExecutor = Executors.newSingleThreadScheduledExecutor();
+        lockExecutor.execute(this::tryLock);
+    }
+
+    private void tryLock() {
+        final ILock lock = hazelcastClient.getLock(SPILL_LOCK);
+        if (lock.tryLock()) {
+            // the lock is held until this client disconnects from the cluster
+            hazelcastClient.getMap(HazelcastService.NOTIFICATIONS_MAP).addEntryListener(this, true);
+            hazelcastClient.getMap(HazelcastService.COMMANDS_MAP).addEntryListener(this, true);
+            logger.info("This backend spills history to the cold tier");
+        } else {
+            lockExecutor.schedule(this::tryLock, LOCK_ATTEMPT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void entryEvicted(EntryEvent<HazelcastEntityKey, HazelcastEntity> event) {
+        final HazelcastEntity entity = event.getOldValue() != null ? event.getOldValue() : event.getValue();
+        if (entity == null) {
+            return;
+        }
+        try {
+            historyStore.append(entity);
+        } catch (RuntimeException e) {
+            logger.error("Unable to spill {} to the cold tier", entity, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (lockExecutor != null) {
+            lockExecutor.shutdownNow();
+        }
+    }
+}
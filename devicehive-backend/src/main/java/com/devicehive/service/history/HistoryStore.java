@@ -0,0 +1,53 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityComparator;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Cold tier of notification and command history. Entries leaving hazelcast are appended here,
+ * and {@link com.devicehive.service.HazelcastService} merges them with hazelcast results on search.
+ */
+public interface HistoryStore {
+
+    boolean isEnabled();
+
+    void append(HazelcastEntity entity);
+
+    /**
+     * Same filters as hazelcast queries, null or empty values don't filter.
+     *
+     * @param limit - max number of entries, all if not positive
+     * @param comparator - order of entries the limit applies to
+     * @return - matching entries, the latest stored one for each key
+     */
+    <T extends HazelcastEntity> List<T> find(Long id, Collection<String> deviceIds, Collection<String> names,
+                                             Date timestampSt, Date timestampEnd, boolean returnUpdated,
+                                             String status, int limit, HazelcastEntityComparator comparator,
+                                             Class<T> entityClass);
+
+    void close();
+}
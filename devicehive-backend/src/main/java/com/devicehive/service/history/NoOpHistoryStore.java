@@ -0,0 +1,56 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityComparator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Used when the cold tier is disabled, history is kept in hazelcast only.
+ */
+public class NoOpHistoryStore implements HistoryStore {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void append(HazelcastEntity entity) {
+    }
+
+    @Override
+    public <T extends HazelcastEntity> List<T> find(Long id, Collection<String> deviceIds, Collection<String> names,
+                                                    Date timestampSt, Date timestampEnd, boolean returnUpdated,
+                                                    String status, int limit, HazelcastEntityComparator comparator,
+                                                    Class<T> entityClass) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void close() {
+    }
+}
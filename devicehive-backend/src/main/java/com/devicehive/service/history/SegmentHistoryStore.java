@@ -0,0 +1,519 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityComparator;
+import com.devicehive.model.HazelcastEntityKey;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier kept in append-only segment files in a directory shared by backends. One backend appends,
+ * any backend reads, so readers never rely on state of the writer and skip files removed meanwhile.
+ *
+ * Files are partitioned by time and device bucket: {type}/{partition}/{bucket}.seg, where partition is the number
+ * of the time interval the entry timestamp falls into, and bucket is a hash of device id. Every record is
+ * [length][timestamp][device id][entity json], so records of other devices or out of the time range are skipped
+ * without parsing. Each segment has a sparse index {bucket}.idx, with offset, length and timestamp range of every
+ * block of records, so blocks out of the time range are skipped as well. Segments are read through memory mapping,
+ * in windows ending at record boundaries, as a single mapping can't exceed 2 GB.
+ *
+ * Whole partitions are deleted once they are older than retention.
+ */
+public class SegmentHistoryStore implements HistoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentHistoryStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int BLOCK_RECORDS = 64;
+    private static final int INDEX_ENTRY_SIZE = 4 * Long.BYTES;
+    private static final long SEGMENT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Path directory;
+    private final int buckets;
+    private final long partitionMillis;
+    private final long retentionMillis;
+    private final Gson gson;
+    private final int mappingWindow;
+
+    private final ConcurrentMap<Path, Segment> segments = new ConcurrentHashMap<>();
+
+    public SegmentHistoryStore(Path directory, int buckets, int partitionHours, int retentionHours, Gson gson) {
+        this(directory, buckets, partitionHours, retentionHours, gson, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param mappingWindow - max number of bytes of a segment mapped at once, records must fit into it
+     */
+    SegmentHistoryStore(Path directory, int buckets, int partitionHours, int retentionHours, Gson gson,
+                        int mappingWindow) {
+        this.directory = directory;
+        this.buckets = buckets;
+        this.partitionMillis = TimeUnit.HOURS.toMillis(partitionHours);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        this.gson = gson;
+        this.mappingWindow = mappingWindow;
+        logger.info("Cold history store in {}. Buckets: {}, partition: {}h, retention: {}h",
+                directory.toAbsolutePath(), buckets, partitionHours, retentionHours);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void append(HazelcastEntity entity) {
+        final long timestamp = entity.getTimestamp() != null ? entity.getTimestamp().getTime() : System.currentTimeMillis();
+        final Path typeDirectory = directory.resolve(typeOf(entity.getClass()));
+        final Path file = typeDirectory.resolve(Long.toString(partitionOf(timestamp)))
+                .resolve(bucketOf(entity.getDeviceId()) + SEGMENT_SUFFIX);
+        final ByteBuffer record = encode(entity, timestamp);
+        while (true) {
+            Segment segment = segments.get(file);
+            if (segment == null) {
+                segment = segments.computeIfAbsent(file, Segment::open);
+                removeExpired(typeDirectory);
+            }
+            if (segment.append(record, timestamp)) {
+                return;
+            }
+            // closed by retention meanwhile
+            segments.remove(file, segment);
+        }
+    }
+
+    @Override
+    public <T extends HazelcastEntity> List<T> find(Long id, Collection<String> deviceIds, Collection<String> names,
+                                                    Date timestampSt, Date timestampEnd, boolean returnUpdated,
+                                                    String status, int limit, HazelcastEntityComparator comparator,
+                                                    Class<T> entityClass) {
+        final Path typeDirectory = directory.resolve(typeOf(entityClass));
+        if (!Files.isDirectory(typeDirectory)) {
+            return Collections.emptyList();
+        }
+        // ranges of returnUpdated queries are on last update, which is not earlier than timestamp
+        final long minTimestamp = timestampSt != null && !returnUpdated ? timestampSt.getTime() : Long.MIN_VALUE;
+        final long maxTimestamp = timestampEnd != null ? timestampEnd.getTime() : Long.MAX_VALUE;
+        final List<byte[]> deviceIdBytes = CollectionUtils.isEmpty(deviceIds) ? null : deviceIds.stream()
+                .map(deviceId -> deviceId.getBytes(StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+        final Set<String> files = CollectionUtils.isEmpty(deviceIds) ? null : deviceIds.stream()
+                .map(deviceId -> bucketOf(deviceId) + SEGMENT_SUFFIX)
+                .collect(Collectors.toSet());
+
+        final Map<HazelcastEntityKey, T> found = new LinkedHashMap<>();
+        for (Path file : segmentFiles(typeDirectory, partitionOf(minTimestamp), partitionOf(maxTimestamp), files)) {
+            try {
+                read(file, minTimestamp, maxTimestamp, deviceIdBytes, entityClass).forEach(entity -> {
+                    if (matches(entity, id, names, timestampSt, timestampEnd, returnUpdated, status)) {
+                        found.put(entity.getHazelcastKey(), entity);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                logger.error("Unable to read history segment {}", file, e);
+            }
+        }
+
+        final List<T> result = new ArrayList<>(found.values());
+        result.sort(comparator::compareEntities);
+        return limit > 0 && result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    public void close() {
+        segments.values().forEach(Segment::close);
+        segments.clear();
+    }
+
+    private List<Path> segmentFiles(Path typeDirectory, long fromPartition, long toPartition, Set<String> names) {
+        try (Stream<Path> partitions = Files.list(typeDirectory)) {
+            final List<Path> result = new ArrayList<>();
+            for (Path partition : partitions.collect(Collectors.toList())) {
+                final long number = Long.parseLong(partition.getFileName().toString());
+                if (number < fromPartition || number > toPartition) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(partition)) {
+                    files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                            .filter(file -> names == null || names.contains(file.getFileName().toString()))
+                            .forEach(result::add);
+                } catch (NoSuchFileException e) {
+                    // removed by retention of the writing backend
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads records of the segment in the timestamp range. Indexed blocks out of the range are skipped,
+     * records not covered by the index (the block being written, or left by a crash) are always scanned.
+     */
+    private <T extends HazelcastEntity> List<T> read(Path file, long minTimestamp, long maxTimestamp,
+                                                      List<byte[]> deviceIds, Class<T> entityClass) throws IOException {
+        final List<T> result = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long position = 0;
+            for (long[] block : readIndex(indexOf(file))) {
+                final long offset = block[0];
+                final long end = offset + block[1];
+                if (offset < position || end > size) {
+                    continue;
+                }
+                readRecords(channel, position, offset, minTimestamp, maxTimestamp, deviceIds, entityClass, result);
+                if (block[3] >= minTimestamp && block[2] <= maxTimestamp) {
+                    readRecords(channel, offset, end, minTimestamp, maxTimestamp, deviceIds, entityClass, result);
+                }
+                position = end;
+            }
+            readRecords(channel, position, size, minTimestamp, maxTimestamp, deviceIds, entityClass, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads records between the offsets, mapping a window of the segment at a time. Each window is read up to
+     * the last record it fully contains, and the next one starts there.
+     */
+    private <T extends HazelcastEntity> void readRecords(FileChannel channel, long from, long to,
+                                                         long minTimestamp, long maxTimestamp, List<byte[]> deviceIds,
+                                                         Class<T> entityClass, List<T> result) throws IOException {
+        long position = from;
+        while (position < to) {
+            final long window = Math.min(to - position, mappingWindow);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            final int read = readRecords(buffer, minTimestamp, maxTimestamp, deviceIds, entityClass, result);
+            if (read == 0) {
+                if (position + window < to) {
+                    throw new IOException("Record at " + position + " doesn't fit into mapping window of " + window + " bytes");
+                }
+                // incomplete record at the end of segment
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return - number of bytes of complete records at the beginning of the buffer
+     */
+    private <T extends HazelcastEntity> int readRecords(MappedByteBuffer buffer, long minTimestamp, long maxTimestamp,
+                                                        List<byte[]> deviceIds, Class<T> entityClass, List<T> result) {
+        final int to = buffer.limit();
+        int position = 0;
+        while (position + Integer.BYTES <= to) {
+            final int length = buffer.getInt(position);
+            final int start = position + Integer.BYTES;
+            if (length <= Long.BYTES + Short.BYTES || (long) start + length > to) {
+                // incomplete record at the end of the window
+                break;
+            }
+            position = start + length;
+            final long timestamp = buffer.getLong(start);
+            if (timestamp < minTimestamp || timestamp > maxTimestamp) {
+                continue;
+            }
+            final int deviceIdLength = buffer.getShort(start + Long.BYTES);
+            final int deviceIdStart = start + Long.BYTES + Short.BYTES;
+            if (deviceIds != null && !containsDeviceId(buffer, deviceIdStart, deviceIdLength, deviceIds)) {
+                continue;
+            }
+            final int jsonStart = deviceIdStart + deviceIdLength;
+            final byte[] json = new byte[position - jsonStart];
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position(jsonStart);
+            slice.get(json);
+            result.add(gson.fromJson(new String(json, StandardCharsets.UTF_8), entityClass));
+        }
+        return position;
+    }
+
+    private static boolean containsDeviceId(ByteBuffer buffer, int start, int length, List<byte[]> deviceIds) {
+        for (byte[] deviceId : deviceIds) {
+            if (deviceId.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && buffer.get(start + i) == deviceId[i]) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return - blocks as [offset, length, min timestamp, max timestamp]
+     */
+    private static List<long[]> readIndex(Path index) throws IOException {
+        if (!Files.exists(index)) {
+            return Collections.emptyList();
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(index));
+        final List<long[]> blocks = new ArrayList<>(buffer.remaining() / INDEX_ENTRY_SIZE);
+        while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+            blocks.add(new long[] {buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()});
+        }
+        blocks.sort((b1, b2) -> Long.compare(b1[0], b2[0]));
+        return blocks;
+    }
+
+    private static boolean matches(HazelcastEntity entity, Long id, Collection<String> names, Date timestampSt,
+                                   Date timestampEnd, boolean returnUpdated, String status) {
+        if (id != null && entity.getHazelcastKey().getId() != id) {
+            return false;
+        }
+        String name = null;
+        Date time = entity.getTimestamp();
+        if (entity instanceof DeviceNotification) {
+            name = ((DeviceNotification) entity).getNotification();
+        } else if (entity instanceof DeviceCommand) {
+            final DeviceCommand command = (DeviceCommand) entity;
+            name = command.getCommand();
+            if (returnUpdated) {
+                if (!Boolean.TRUE.equals(command.getIsUpdated())) {
+                    return false;
+                }
+                time = command.getLastUpdated();
+            }
+            if (!StringUtils.isEmpty(status) && !status.equals(command.getStatus())) {
+                return false;
+            }
+        }
+        if (!CollectionUtils.isEmpty(names) && !names.contains(name)) {
+            return false;
+        }
+        if (timestampSt != null && (time == null || time.getTime() <= timestampSt.getTime())) {
+            return false;
+        }
+        return timestampEnd == null || (time != null && time.getTime() < timestampEnd.getTime());
+    }
+
+    private ByteBuffer encode(HazelcastEntity entity, long timestamp) {
+        final byte[] deviceId = String.valueOf(entity.getDeviceId()).getBytes(StandardCharsets.UTF_8);
+        final byte[] json = gson.toJson(entity).getBytes(StandardCharsets.UTF_8);
+        final int length = Long.BYTES + Short.BYTES + deviceId.length + json.length;
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).putLong(timestamp).putShort((short) deviceId.length).put(deviceId).put(json);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Deletes partitions older than retention and closes segments which are not written anymore.
+     */
+    private void removeExpired(Path typeDirectory) {
+        final long now = System.currentTimeMillis();
+        segments.forEach((file, segment) -> {
+            if (segment.lastAppend < now - SEGMENT_IDLE_MILLIS && segments.remove(file, segment)) {
+                segment.close();
+            }
+        });
+        if (retentionMillis <= 0) {
+            return;
+        }
+        final long expired = partitionOf(now - retentionMillis);
+        final Set<Path> removed = new HashSet<>();
+        try (Stream<Path> partitions = Files.list(typeDirectory)) {
+            partitions.filter(partition -> Long.parseLong(partition.getFileName().toString()) < expired)
+                    .forEach(removed::add);
+        } catch (IOException e) {
+            logger.error("Unable to list history partitions in {}", typeDirectory, e);
+        }
+        for (Path partition : removed) {
+            try (Stream<Path> files = Files.list(partition)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+                Files.delete(partition);
+                logger.info("Removed expired history partition {}", partition);
+            } catch (IOException e) {
+                logger.error("Unable to remove history partition {}", partition, e);
+            }
+        }
+    }
+
+    private long partitionOf(long timestamp) {
+        if (timestamp == Long.MIN_VALUE || timestamp == Long.MAX_VALUE) {
+            return timestamp;
+        }
+        return Math.floorDiv(timestamp, partitionMillis);
+    }
+
+    private int bucketOf(String deviceId) {
+        return Math.floorMod(String.valueOf(deviceId).hashCode(), buckets);
+    }
+
+    private static String typeOf(Class<?> entityClass) {
+        return DeviceCommand.class.equals(entityClass) ? "commands" : "notifications";
+    }
+
+    private static Path indexOf(Path segment) {
+        final String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Segment being written. Records are appended to the segment file, and every block of them to the index.
+     */
+    private static class Segment {
+        private final FileChannel data;
+        private final FileChannel index;
+        private boolean closed;
+        private volatile long lastAppend = System.currentTimeMillis();
+
+        private long blockOffset;
+        private int blockRecords;
+        private long blockMin = Long.MAX_VALUE;
+        private long blockMax = Long.MIN_VALUE;
+
+        private Segment(FileChannel data, FileChannel index) throws IOException {
+            this.data = data;
+            this.index = index;
+            this.blockOffset = data.size();
+        }
+
+        static Segment open(Path file) {
+            try {
+                Files.createDirectories(file.getParent());
+                final FileChannel data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.READ);
+                truncateIncompleteRecord(data);
+                final FileChannel index = FileChannel.open(indexOf(file), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE);
+                index.truncate(index.size() - index.size() % INDEX_ENTRY_SIZE);
+                index.position(index.size());
+                return new Segment(data, index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Drops the end of a record left incomplete by a crash, so that new records start at a record boundary.
+         */
+        private static void truncateIncompleteRecord(FileChannel data) throws IOException {
+            final long size = data.size();
+            final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            long position = 0;
+            while (position + Integer.BYTES <= size) {
+                length.clear();
+                data.read(length, position);
+                final long next = position + Integer.BYTES + length.getInt(0);
+                if (length.getInt(0) <= 0 || next > size) {
+                    break;
+                }
+                position = next;
+            }
+            data.truncate(position);
+            data.position(position);
+        }
+
+        synchronized boolean append(ByteBuffer record, long timestamp) {
+            if (closed) {
+                return false;
+            }
+            try {
+                final ByteBuffer buffer = record.duplicate();
+                while (buffer.hasRemaining()) {
+                    data.write(buffer);
+                }
+                lastAppend = System.currentTimeMillis();
+                blockRecords++;
+                blockMin = Math.min(blockMin, timestamp);
+                blockMax = Math.max(blockMax, timestamp);
+                if (blockRecords == BLOCK_RECORDS) {
+                    flushBlock();
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            final long position = data.position();
+            final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            entry.putLong(blockOffset).putLong(position - blockOffset).putLong(blockMin).putLong(blockMax);
+            entry.flip();
+            while (entry.hasRemaining()) {
+                index.write(entry);
+            }
+            blockOffset = position;
+            blockRecords = 0;
+            blockMin = Long.MAX_VALUE;
+            blockMax = Long.MIN_VALUE;
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (blockRecords > 0) {
+                    flushBlock();
+                }
+                data.close();
+                index.close();
+            } catch (IOException e) {
+                logger.error("Unable to close history segment", e);
+            }
+        }
+    }
+}
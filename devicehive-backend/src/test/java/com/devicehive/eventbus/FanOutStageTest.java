@@ -0,0 +1,204 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.eventbus.events.Event;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.devicehive.base.NotificationTestUtils.generateNotification;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutStageTest {
+
+    private static final int LANES = 4;
+
+    @Test
+    public void shouldDeliverEventsOfDeviceInPublishingOrder() throws Exception {
+        Map<String, List<Long>> delivered = new ConcurrentHashMap<>();
+        FanOutStage stage = new FanOutStage(event -> delivered
+                .computeIfAbsent(event.getPartitionKey(), device -> Collections.synchronizedList(new ArrayList<>()))
+                .add(id(event)), LANES, 8);
+
+        int devices = 10;
+        int eventsPerDevice = 200;
+        ExecutorService publishers = Executors.newFixedThreadPool(devices);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int d = 0; d < devices; d++) {
+            String device = "device-" + d;
+            futures.add(publishers.submit(() -> {
+                List<Event> batch = new ArrayList<>();
+                for (long id = 0; id < eventsPerDevice; id++) {
+                    if (id % 2 == 0) {
+                        stage.submit(event(id, device));
+                    } else {
+                        batch.add(event(id, device));
+                        stage.submitAll(batch);
+                        batch.clear();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        publishers.shutdown();
+        stage.shutdown();
+
+        assertEquals(devices, delivered.size());
+        delivered.forEach((device, ids) -> {
+            assertEquals(eventsPerDevice, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(Long.valueOf(i), ids.get(i));
+            }
+        });
+    }
+
+    @Test
+    public void shouldNotBlockOtherLanesBehindSlowLane() throws Exception {
+        String slowDevice = "slow-device";
+        String fastDevice = deviceOnOtherLane(slowDevice);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDelivered = new CountDownLatch(100);
+        FanOutStage stage = new FanOutStage(event -> {
+            if (slowDevice.equals(event.getPartitionKey())) {
+                await(release);
+            } else {
+                fastDelivered.countDown();
+            }
+        }, LANES, 1);
+
+        // one event is being delivered and one is waiting, so the queue of the slow lane is full
+        stage.submit(event(0, slowDevice));
+        stage.submit(event(1, slowDevice));
+        ExecutorService publisher = Executors.newSingleThreadExecutor();
+        Future<?> blocked = publisher.submit(() -> stage.submit(event(2, slowDevice)));
+
+        for (long id = 0; id < 100; id++) {
+            stage.submit(event(id, fastDevice));
+        }
+
+        assertTrue(fastDelivered.await(10, TimeUnit.SECONDS));
+        assertFalse(blocked.isDone());
+
+        release.countDown();
+        blocked.get(10, TimeUnit.SECONDS);
+        publisher.shutdown();
+        stage.shutdown();
+    }
+
+    @Test
+    public void shouldCountEventDroppedByInterruptedPublisher() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger delivered = new AtomicInteger();
+        FanOutStage stage = new FanOutStage(event -> {
+            await(release);
+            delivered.incrementAndGet();
+        }, 1, 1);
+
+        stage.submit(event(0, "device"));
+        stage.submit(event(1, "device"));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread publisher = new Thread(() -> {
+            stage.submit(event(2, "device"));
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted.countDown();
+            }
+        });
+        publisher.start();
+        // the publisher waits for the full lane until it is interrupted
+        while (publisher.getState() != Thread.State.WAITING) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        publisher.interrupt();
+
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(1, stage.getDroppedEvents());
+
+        release.countDown();
+        stage.shutdown();
+        assertEquals(2, delivered.get());
+    }
+
+    @Test
+    public void shouldDeliverQueuedEventsOnShutdown() {
+        AtomicInteger delivered = new AtomicInteger();
+        FanOutStage stage = new FanOutStage(event -> {
+            sleep();
+            delivered.incrementAndGet();
+        }, LANES, 100);
+
+        for (long id = 0; id < 100; id++) {
+            stage.submit(event(id, "device-" + id % 10));
+        }
+        stage.shutdown();
+
+        assertEquals(100, delivered.get());
+    }
+
+    private static String deviceOnOtherLane(String device) {
+        int lane = FanOutStage.lane(device, LANES);
+        for (int i = 0; ; i++) {
+            String candidate = "device-" + i;
+            if (FanOutStage.lane(candidate, LANES) != lane) {
+                return candidate;
+            }
+        }
+    }
+
+    private static Event event(long id, String device) {
+        return new NotificationEvent(generateNotification(id, 1L, device));
+    }
+
+    private static long id(Event event) {
+        return ((NotificationEvent) event).getNotification().getId();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
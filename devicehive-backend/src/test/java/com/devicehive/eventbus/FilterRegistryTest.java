@@ -0,0 +1,107 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.auth.HivePrincipal;
+import com.devicehive.model.DevicePortableFactory;
+import com.devicehive.model.eventbus.Filter;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilterRegistryTest {
+
+    private static HazelcastInstance hazelcast;
+
+    @BeforeClass
+    public static void startHazelcast() {
+        Config config = new Config();
+        config.getGroupConfig().setName("filters-" + UUID.randomUUID());
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        hazelcast = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopHazelcast() {
+        hazelcast.shutdown();
+    }
+
+    @Test
+    public void shouldMoveSubscriptionToNetworksOfNewFilter() {
+        FilterRegistry registry = new FilterRegistry();
+        registry.getHazelcastMaps(hazelcast);
+
+        registry.register(networkFilter(1L), 10L);
+        assertEquals(Collections.singleton(10L), subscriptionIds(registry, 1L));
+
+        registry.register(networkFilter(2L), 10L);
+        assertTrue(subscriptionIds(registry, 1L).isEmpty());
+        assertEquals(Collections.singleton(10L), subscriptionIds(registry, 2L));
+        assertEquals(Collections.singleton(2L), registry.getFilter(10L).getNetworkIds());
+
+        registry.unregister(10L);
+        assertTrue(subscriptionIds(registry, 2L).isEmpty());
+    }
+
+    @Test
+    public void shouldRemoveSubscriptionFromNetworksWhenFilterBecomesGlobal() {
+        FilterRegistry registry = new FilterRegistry();
+        registry.getHazelcastMaps(hazelcast);
+
+        registry.register(networkFilter(3L), 20L);
+        Filter global = new Filter();
+        global.setPrincipal(new HivePrincipal());
+        global.setGlobal(true);
+        registry.register(global, 20L);
+
+        // the global filter still matches network 3, so the network index itself must be clean
+        assertTrue(hazelcast.getMultiMap("NETWORK-SUBSCRIPTIONS-MAP").get(3L).isEmpty());
+        assertEquals(Collections.singleton(20L), subscriptionIds(registry, 3L));
+
+        registry.unregister(20L);
+    }
+
+    private static Filter networkFilter(Long networkId) {
+        Filter filter = new Filter();
+        filter.setPrincipal(new HivePrincipal());
+        filter.setNetworkIds(Collections.singleton(networkId));
+        return filter;
+    }
+
+    private static Set<Long> subscriptionIds(FilterRegistry registry, Long networkId) {
+        return registry.getSubscriptions(networkId).stream()
+                .map(Pair::getKey)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,274 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DevicePortableFactory;
+import com.devicehive.model.eventbus.Subscriber;
+import com.devicehive.model.eventbus.Subscription;
+import com.devicehive.shim.api.Action;
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Concurrent subscribe and unsubscribe of many subscribers sharing the same devices and lock stripes, with readers
+ * routing events of the same devices meanwhile. Each thread owns a disjoint range of subscriber ids, so the expected
+ * state after all threads finish is known exactly.
+ */
+public class SubscriberRegistryConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int SUBSCRIBERS_PER_THREAD = 25;
+    private static final int DEVICES = 4;
+    private static final int READERS = 4;
+
+    private static HazelcastInstance member;
+    private static HazelcastInstance hazelcast;
+
+    /**
+     * Backends use a client, so the registry under test does too: entry events then reach it over the network
+     * and may arrive after the local update they describe.
+     */
+    @BeforeClass
+    public static void startHazelcast() {
+        String group = "concurrency-" + UUID.randomUUID();
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        config.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        member = Hazelcast.newHazelcastInstance(config);
+
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.getGroupConfig().setName(group);
+        clientConfig.getNetworkConfig().addAddress("127.0.0.1:" + member.getCluster().getLocalMember().getAddress().getPort());
+        clientConfig.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        hazelcast = HazelcastClient.newHazelcastClient(clientConfig);
+    }
+
+    @AfterClass
+    public static void stopHazelcast() {
+        hazelcast.shutdown();
+        member.shutdown();
+    }
+
+    @Test
+    public void shouldKeepRegistryConsistentUnderConcurrentRegisterAndUnregister() throws Exception {
+        SubscriberRegistry registry = new SubscriberRegistry();
+        registry.getHazelcastMaps(hazelcast);
+        String prefix = UUID.randomUUID().toString();
+
+        runConcurrently(id -> {
+            registry.register(subscriber(id), subscription(prefix, id));
+            registry.register(subscriber(id), subscription(prefix, id + 1));
+        });
+
+        for (long id = 1; id <= THREADS * SUBSCRIBERS_PER_THREAD; id++) {
+            assertEquals(expectedSubscriptions(prefix, id, id + 1), new HashSet<>(registry.getSubscriptions(subscriber(id))));
+        }
+        for (int device = 0; device < DEVICES; device++) {
+            Subscription subscription = subscription(prefix, device);
+            Set<Long> expected = new HashSet<>();
+            for (long id = 1; id <= THREADS * SUBSCRIBERS_PER_THREAD; id++) {
+                if (subscription(prefix, id).equals(subscription) || subscription(prefix, id + 1).equals(subscription)) {
+                    expected.add(id);
+                }
+            }
+            Set<Long> actual = registry.getSubscribers(subscription).stream()
+                    .map(Subscriber::getId)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, actual);
+        }
+
+        // even subscribers leave while odd subscribers of the same devices and stripes subscribe once more
+        runConcurrently(id -> {
+            if (id % 2 == 0) {
+                registry.unregister(subscriber(id));
+            } else {
+                registry.register(subscriber(id), subscription(prefix, id + 2));
+            }
+        });
+
+        for (long id = 1; id <= THREADS * SUBSCRIBERS_PER_THREAD; id++) {
+            Collection<Subscription> subscriptions = registry.getSubscriptions(subscriber(id));
+            if (id % 2 == 0) {
+                assertTrue(subscriptions.isEmpty());
+            } else {
+                assertEquals(expectedSubscriptions(prefix, id, id + 1, id + 2), new HashSet<>(subscriptions));
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepIndexConsistentUnderConcurrentAddAndRemove() throws Exception {
+        SubscriptionIndex index = new SubscriptionIndex();
+        String prefix = UUID.randomUUID().toString();
+
+        runConcurrently(id -> {
+            index.add(subscription(prefix, id), id);
+            index.add(subscription(prefix, id + 1), id);
+            if (id % 2 == 0) {
+                index.remove(subscription(prefix, id), id);
+                index.remove(subscription(prefix, id + 1), id);
+            }
+        });
+
+        for (int device = 0; device < DEVICES; device++) {
+            Subscription subscription = subscription(prefix, device);
+            Set<Long> expected = new HashSet<>();
+            for (long id = 1; id <= THREADS * SUBSCRIBERS_PER_THREAD; id += 2) {
+                if (subscription(prefix, id).equals(subscription) || subscription(prefix, id + 1).equals(subscription)) {
+                    expected.add(id);
+                }
+            }
+            assertEquals(expected, index.getSubscriberIds(subscription));
+        }
+
+        runConcurrently(id -> {
+            index.remove(subscription(prefix, id), id);
+            index.remove(subscription(prefix, id + 1), id);
+        });
+
+        assertTrue(index.getAllSubscriptions().isEmpty());
+    }
+
+    @Test
+    public void shouldNeverReturnSubscriberAfterItsUnregisterFinished() throws Exception {
+        SubscriberRegistry registry = new SubscriberRegistry();
+        registry.getHazelcastMaps(hazelcast);
+        String prefix = UUID.randomUUID().toString();
+
+        // logical clock: unregisters stamp their completion, readers compare the stamps with the time they started
+        AtomicLong clock = new AtomicLong();
+        ConcurrentMap<Long, Long> unregistered = new ConcurrentHashMap<>();
+        AtomicLong reads = new AtomicLong();
+        AtomicBoolean churning = new AtomicBoolean(true);
+
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            futures.add(readers.submit(() -> {
+                int device = 0;
+                while (churning.get()) {
+                    long start = clock.get();
+                    for (Subscriber subscriber : registry.getSubscribers(subscription(prefix, device++))) {
+                        Long finished = unregistered.get(subscriber.getId());
+                        assertFalse("Subscriber " + subscriber.getId() + " returned after its unregister finished",
+                                finished != null && finished <= start);
+                    }
+                    reads.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        try {
+            runConcurrently(id -> {
+                registry.register(subscriber(id), subscription(prefix, id));
+                registry.unregister(subscriber(id));
+                unregistered.put(id, clock.incrementAndGet());
+            });
+        } finally {
+            churning.set(false);
+            readers.shutdown();
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        assertTrue(reads.get() > 0);
+        // late entry events of the churned subscribers must not bring them back either
+        TimeUnit.MILLISECONDS.sleep(500);
+        for (int device = 0; device < DEVICES; device++) {
+            assertTrue(registry.getSubscribers(subscription(prefix, device)).isEmpty());
+        }
+    }
+
+    /**
+     * Runs the action for every subscriber id, ids are split into disjoint ranges between threads started at once.
+     */
+    private static void runConcurrently(LongConsumer action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long first = t * SUBSCRIBERS_PER_THREAD + 1;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (long id = first; id < first + SUBSCRIBERS_PER_THREAD; id++) {
+                        action.accept(id);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Subscriber subscriber(long id) {
+        return new Subscriber(id, "reply", "correlation-" + id);
+    }
+
+    private static Subscription subscription(String prefix, long device) {
+        return new Subscription(Action.NOTIFICATION_EVENT.name(), prefix + "-" + device % DEVICES);
+    }
+
+    private static Set<Subscription> expectedSubscriptions(String prefix, long... devices) {
+        Set<Subscription> expected = new HashSet<>();
+        for (long device : devices) {
+            expected.add(subscription(prefix, device));
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,151 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DevicePortableFactory;
+import com.devicehive.model.eventbus.Subscriber;
+import com.devicehive.model.eventbus.Subscription;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.shim.api.Action;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.devicehive.base.NotificationTestUtils.generateNotification;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Contention benchmark for {@link SubscriberRegistry}: publisher threads route events while churn threads
+ * subscribe and unsubscribe. Reports publish and churn throughput, fails on any error or leftover subscription.
+ * It runs for a fixed time and asserts nothing about the numbers, so it is run manually when the registry changes;
+ * correctness under the same load is covered by {@link SubscriberRegistryConcurrencyTest}.
+ */
+@Ignore("Benchmark, run manually")
+public class SubscriberRegistryContentionTest {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriberRegistryContentionTest.class);
+
+    private static final int DEVICES = 16;
+    private static final int PUBLISHERS = 4;
+    private static final int CHURNERS = 4;
+    private static final long DURATION_MS = 3000;
+
+    private static HazelcastInstance hazelcast;
+
+    @BeforeClass
+    public static void startHazelcast() {
+        Config config = new Config();
+        config.getGroupConfig().setName("contention-" + UUID.randomUUID());
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        hazelcast = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopHazelcast() {
+        hazelcast.shutdown();
+    }
+
+    @Test
+    public void shouldPublishWhileSubscribersChurn() throws Exception {
+        SubscriberRegistry registry = new SubscriberRegistry();
+        registry.getHazelcastMaps(hazelcast);
+        AtomicLong delivered = new AtomicLong();
+        EventBus eventBus = new EventBus((to, response) -> delivered.incrementAndGet(), registry);
+
+        List<String> devices = new ArrayList<>();
+        for (int i = 0; i < DEVICES; i++) {
+            devices.add(UUID.randomUUID().toString());
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong published = new AtomicLong();
+        AtomicLong churned = new AtomicLong();
+        AtomicLong subscriberIds = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(PUBLISHERS + CHURNERS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < PUBLISHERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                long id = 0;
+                while (running.get()) {
+                    String device = devices.get((int) (id % DEVICES));
+                    eventBus.publish(new NotificationEvent(generateNotification(id++, 1L, device)));
+                    published.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < CHURNERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int n = 0;
+                while (running.get()) {
+                    Subscriber subscriber = new Subscriber(subscriberIds.incrementAndGet(), "reply", UUID.randomUUID().toString());
+                    Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), devices.get(n++ % DEVICES));
+                    eventBus.subscribe(subscriber, subscription);
+                    eventBus.unsubscribe(subscriber);
+                    churned.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        TimeUnit.MILLISECONDS.sleep(DURATION_MS);
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        logger.info("Publish: {} events/s, delivered {} responses. Churn: {} subscribe/unsubscribe pairs/s",
+                published.get() * 1000 / DURATION_MS, delivered.get(), churned.get() * 1000 / DURATION_MS);
+
+        assertTrue(published.get() > 0);
+        assertTrue(churned.get() > 0);
+
+        // entry events of the last unsubscriptions may still be in flight, so give the index time to converge
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!registry.getAllSubscriptions().isEmpty() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertTrue(registry.getAllSubscriptions().isEmpty());
+    }
+}
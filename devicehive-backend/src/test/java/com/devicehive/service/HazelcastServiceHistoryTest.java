@@ -0,0 +1,169 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.DevicePortableFactory;
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.service.helpers.HazelcastHelper;
+import com.devicehive.service.helpers.HazelcastRetentionMetrics;
+import com.devicehive.service.history.NoOpHistoryStore;
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.devicehive.service.HazelcastService.NOTIFICATIONS_HISTORY_MAP;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Polls of a hot device are served by the near cache of histories on the backend client, and still see entries
+ * stored by other backends once members invalidate the cached history.
+ */
+public class HazelcastServiceHistoryTest {
+
+    private static final String DEVICE = "hot-device";
+
+    private static HazelcastInstance member;
+    private static HazelcastInstance client;
+    private static HazelcastService service;
+    private static HazelcastService otherService;
+
+    @BeforeClass
+    public static void startHazelcast() throws Exception {
+        String group = "history-" + UUID.randomUUID();
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        config.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        config.setProperty("hazelcast.map.invalidation.batch.enabled", "false");
+        member = Hazelcast.newHazelcastInstance(config);
+
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.getGroupConfig().setName(group);
+        clientConfig.getNetworkConfig().addAddress("127.0.0.1:" + member.getCluster().getLocalMember().getAddress().getPort());
+        clientConfig.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        clientConfig.addNearCacheConfig(new NearCacheConfig(NOTIFICATIONS_HISTORY_MAP)
+                .setInMemoryFormat(InMemoryFormat.OBJECT)
+                .setInvalidateOnChange(true));
+        client = HazelcastClient.newHazelcastClient(clientConfig);
+
+        service = historyService(client);
+        // another backend storing notifications of the same device
+        otherService = historyService(member);
+    }
+
+    @AfterClass
+    public static void stopHazelcast() {
+        client.shutdown();
+        member.shutdown();
+    }
+
+    @Test
+    public void shouldServeRepeatedPollsFromNearCacheUntilHistoryChanges() throws Exception {
+        final Date since = new Date(System.currentTimeMillis() - 1000);
+        otherService.store(notification(1, since.getTime() + 1));
+        otherService.store(notification(2, since.getTime() + 2));
+
+        assertEquals(Arrays.asList(1L, 2L), awaitPoll(since, 2));
+        // let invalidations of the stored entries arrive, then cache the history again
+        Thread.sleep(200);
+        poll(since);
+        final long hits = nearCacheHits();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Arrays.asList(1L, 2L), ids(poll(since)));
+        }
+        assertEquals(hits + 10, nearCacheHits());
+
+        otherService.store(notification(3, since.getTime() + 3));
+        assertEquals(Arrays.asList(1L, 2L, 3L), awaitPoll(since, 3));
+        assertEquals(Collections.singletonList(3L), ids(poll(new Date(since.getTime() + 2))));
+    }
+
+    /**
+     * Polls until the expected number of entries is found, as the history may be invalidated a bit later
+     */
+    private static List<Long> awaitPoll(Date since, int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        List<Long> found = ids(poll(since));
+        while (found.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            found = ids(poll(since));
+        }
+        return found;
+    }
+
+    private static HazelcastService historyService(HazelcastInstance hazelcast) throws Exception {
+        HazelcastService service = new HazelcastService(hazelcast, new HazelcastHelper(),
+                new HazelcastRetentionMetrics(), new NoOpHistoryStore());
+        setField(service, "notificationsTtlSeconds", 120L);
+        setField(service, "historyEnabled", true);
+        setField(service, "historyCapacity", 200);
+        setField(service, "historyNearCacheEnabled", true);
+        service.init();
+        return service;
+    }
+
+    // configuration properties are injected by spring
+    private static void setField(HazelcastService service, String name, Object value) throws Exception {
+        Field field = HazelcastService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+
+    private static Collection<DeviceNotification> poll(Date since) {
+        return service.find(Collections.singleton(DEVICE), null, null, since, null, false, null, DeviceNotification.class);
+    }
+
+    private static long nearCacheHits() {
+        return client.getMap(NOTIFICATIONS_HISTORY_MAP).getLocalMapStats().getNearCacheStats().getHits();
+    }
+
+    private static DeviceNotification notification(long id, long timestamp) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId(DEVICE);
+        notification.setNotification("temperature");
+        notification.setTimestamp(new Date(timestamp));
+        return notification;
+    }
+
+    private static List<Long> ids(Collection<? extends HazelcastEntity> entities) {
+        return entities.stream().map(entity -> entity.getHazelcastKey().getId()).collect(Collectors.toList());
+    }
+}
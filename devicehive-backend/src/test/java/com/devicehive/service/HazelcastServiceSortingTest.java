@@ -0,0 +1,184 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DevicePortableFactory;
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityComparator;
+import com.devicehive.service.helpers.HazelcastHelper;
+import com.devicehive.service.helpers.HazelcastRetentionMetrics;
+import com.devicehive.service.history.NoOpHistoryStore;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sorted pages of entries spread over partitions of two members. Each member returns its own first page,
+ * so a page is correct only if members and the merge on backend use the same order.
+ */
+public class HazelcastServiceSortingTest {
+
+    private static final String[] STATUSES = {null, "Pending", "Completed", "Failed"};
+    private static final List<String> DEVICES = Arrays.asList("device-0", "device-1", "device-2", "device-3",
+            "device-4", "device-5", "device-6", "device-7");
+
+    private static HazelcastInstance member;
+    private static HazelcastInstance otherMember;
+    private static HazelcastService service;
+    private static List<DeviceCommand> commands;
+
+    @BeforeClass
+    public static void startHazelcast() {
+        String group = "sorting-" + UUID.randomUUID();
+        member = Hazelcast.newHazelcastInstance(config(group));
+        otherMember = Hazelcast.newHazelcastInstance(config(group));
+
+        service = new HazelcastService(member, new HazelcastHelper(), new HazelcastRetentionMetrics(),
+                new NoOpHistoryStore());
+        service.init();
+
+        // few timestamps, names and statuses, so that there are many ties
+        commands = new ArrayList<>();
+        for (long id = 1; id <= 120; id++) {
+            DeviceCommand command = new DeviceCommand();
+            command.setId(id);
+            command.setDeviceId(DEVICES.get((int) (id % DEVICES.size())));
+            command.setCommand("command-" + id % 5);
+            command.setStatus(STATUSES[(int) (id % STATUSES.length)]);
+            command.setTimestamp(new Date(1000 * (id % 7)));
+            commands.add(command);
+        }
+        service.storeAll(commands);
+    }
+
+    @AfterClass
+    public static void stopHazelcast() {
+        otherMember.shutdown();
+        member.shutdown();
+    }
+
+    @Test
+    public void shouldReturnPagesOfAllDevicesInEachOrder() {
+        for (String field : Arrays.asList(null, "timestamp", "command", "status")) {
+            for (String order : Arrays.asList(null, "asc", "desc")) {
+                HazelcastEntityComparator comparator = new HazelcastHelper()
+                        .prepareComparator(field, order, DeviceCommand.class);
+                List<Long> expected = sorted(commands, comparator);
+                for (int[] page : new int[][] {{0, 10}, {10, 10}, {35, 20}, {110, 20}, {120, 5}}) {
+                    assertEquals(field + " " + order + " " + page[0] + "+" + page[1],
+                            page(expected, page[0], page[1]),
+                            ids(service.find(null, null, page[0], page[1], null, null, false, null, field, order,
+                                    DeviceCommand.class)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnPagesOfOneDeviceAndSeveralDevices() {
+        HazelcastEntityComparator comparator = new HazelcastHelper()
+                .prepareComparator("command", "asc", DeviceCommand.class);
+        for (Collection<String> devices : Arrays.asList(Collections.singleton("device-3"), DEVICES.subList(2, 5))) {
+            List<Long> expected = sorted(commands.stream()
+                    .filter(command -> devices.contains(command.getDeviceId()))
+                    .collect(Collectors.toList()), comparator);
+            for (int skip = 0; skip <= expected.size(); skip += 4) {
+                assertEquals(devices + " " + skip, page(expected, skip, 4),
+                        ids(service.find(devices, null, skip, 4, null, null, false, null, "command", "asc",
+                                DeviceCommand.class)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnAllEntriesWithoutTake() {
+        HazelcastEntityComparator comparator = new HazelcastHelper()
+                .prepareComparator("status", "desc", DeviceCommand.class);
+
+        assertEquals(sorted(commands, comparator).subList(100, 120),
+                ids(service.find(null, null, 100, null, null, null, false, null, "status", "desc",
+                        DeviceCommand.class)));
+    }
+
+    @Test
+    public void shouldLimitEntriesOfEachDevice() {
+        List<String> devices = DEVICES.subList(1, 4);
+        List<DeviceCommand> after = commands.stream()
+                .filter(command -> devices.contains(command.getDeviceId()) && command.getTimestamp().getTime() > 0)
+                .collect(Collectors.toList());
+        List<HazelcastEntity> oldest = new ArrayList<>(after);
+        oldest.sort(new HazelcastEntityComparator()::compareEntities);
+
+        // one query returns the oldest limit * devices entries, then each device keeps at most limit of them
+        Map<String, Integer> perDevice = new HashMap<>();
+        List<Long> expected = ids(oldest.subList(0, 4 * devices.size()).stream()
+                .filter(entity -> perDevice.merge(entity.getDeviceId(), 1, Integer::sum) <= 4)
+                .collect(Collectors.toList()));
+
+        List<DeviceCommand> found = service.findPerDevice(devices, null, 4, new Date(0), false, DeviceCommand.class);
+        assertEquals(expected, ids(found));
+        devices.forEach(device ->
+                assertTrue(found.stream().filter(command -> device.equals(command.getDeviceId())).count() <= 4));
+
+        assertEquals(after.size(), service.findPerDevice(devices, null, null, new Date(0), false, DeviceCommand.class).size());
+    }
+
+    private static Config config(String group) {
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        config.getSerializationConfig().addPortableFactory(1, new DevicePortableFactory());
+        return config;
+    }
+
+    private static List<Long> sorted(List<DeviceCommand> entities, HazelcastEntityComparator comparator) {
+        List<HazelcastEntity> sorted = new ArrayList<>(entities);
+        sorted.sort(comparator::compareEntities);
+        return ids(sorted);
+    }
+
+    private static List<Long> page(List<Long> ids, int skip, int take) {
+        return skip >= ids.size() ? Collections.emptyList() : ids.subList(skip, Math.min(ids.size(), skip + take));
+    }
+
+    private static List<Long> ids(Collection<? extends HazelcastEntity> entities) {
+        return entities.stream().map(entity -> entity.getHazelcastKey().getId()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,75 @@
+package com.devicehive.service.helpers;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityComparator;
+import com.devicehive.model.enums.SearchableField;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HazelcastHelperTest {
+
+    private final HazelcastHelper helper = new HazelcastHelper();
+
+    @Test
+    public void shouldSortOldestFirstWithoutSortParameters() {
+        assertComparator(SearchableField.TIMESTAMP, false, null, null, DeviceNotification.class);
+        assertComparator(SearchableField.TIMESTAMP, false, null, null, DeviceCommand.class);
+    }
+
+    @Test
+    public void shouldSortDescendingIfOnlySortFieldIsSet() {
+        assertComparator(SearchableField.TIMESTAMP, true, "timestamp", null, DeviceNotification.class);
+        assertComparator(SearchableField.NOTIFICATION, true, "notification", null, DeviceNotification.class);
+        assertComparator(SearchableField.COMMAND, true, "command", null, DeviceCommand.class);
+        assertComparator(SearchableField.STATUS, true, "status", null, DeviceCommand.class);
+    }
+
+    @Test
+    public void shouldApplySortOrder() {
+        assertComparator(SearchableField.TIMESTAMP, false, "timestamp", "asc", DeviceCommand.class);
+        assertComparator(SearchableField.TIMESTAMP, true, "timestamp", "desc", DeviceCommand.class);
+        assertComparator(SearchableField.NOTIFICATION, false, "Notification", "ASC", DeviceNotification.class);
+        assertComparator(SearchableField.COMMAND, true, "COMMAND", "Desc", DeviceCommand.class);
+        assertComparator(SearchableField.STATUS, false, "status", "asc", DeviceCommand.class);
+        assertComparator(SearchableField.TIMESTAMP, true, null, "desc", DeviceNotification.class);
+        assertComparator(SearchableField.TIMESTAMP, false, null, "asc", DeviceNotification.class);
+    }
+
+    @Test
+    public void shouldSortByTimestampIfFieldDoesNotApply() {
+        assertComparator(SearchableField.TIMESTAMP, true, "command", null, DeviceNotification.class);
+        assertComparator(SearchableField.TIMESTAMP, true, "status", "desc", DeviceNotification.class);
+        assertComparator(SearchableField.TIMESTAMP, false, "notification", "asc", DeviceCommand.class);
+        assertComparator(SearchableField.TIMESTAMP, true, "unknown", null, DeviceCommand.class);
+    }
+
+    private void assertComparator(SearchableField field, boolean descending, String sortField, String sortOrder,
+                                  Class<? extends HazelcastEntity> entityClass) {
+        HazelcastEntityComparator comparator = helper.prepareComparator(sortField, sortOrder, entityClass);
+        assertEquals(field, comparator.getField());
+        assertEquals(descending, comparator.isDescending());
+    }
+}
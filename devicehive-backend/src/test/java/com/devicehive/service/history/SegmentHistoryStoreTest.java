@@ -0,0 +1,206 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntityComparator;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.enums.SearchableField;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static com.devicehive.base.NotificationTestUtils.generateNotification;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentHistoryStoreTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SegmentHistoryStore store;
+    private long start;
+
+    @Before
+    public void setUp() {
+        store = open();
+        start = System.currentTimeMillis() - 10 * HOUR;
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void shouldFindByDeviceAndTimeRangeAcrossPartitions() {
+        // 3 hours of notifications of 2 devices, more than one index block per segment
+        for (long i = 0; i < 600; i++) {
+            store.append(notification(i, i % 2 == 0 ? "d1" : "d2", start + i * 18_000));
+        }
+
+        List<DeviceNotification> found = store.find(null, Collections.singleton("d1"), null,
+                new Date(start + HOUR), new Date(start + 2 * HOUR), false, null, 0,
+                new HazelcastEntityComparator(), DeviceNotification.class);
+
+        // timestamps strictly inside the range, as hazelcast predicates do
+        assertEquals(99, found.size());
+        assertTrue(found.stream().allMatch(n -> "d1".equals(n.getDeviceId())));
+        assertEquals(start + HOUR + 36_000, found.get(0).getTimestamp().getTime());
+        assertEquals(start + 2 * HOUR - 36_000, found.get(found.size() - 1).getTimestamp().getTime());
+    }
+
+    @Test
+    public void shouldApplyOrderAndLimit() {
+        for (long i = 0; i < 100; i++) {
+            store.append(notification(i, "d1", start + i * 1000));
+        }
+
+        List<DeviceNotification> found = store.find(null, Collections.singleton("d1"), null, null, null, false,
+                null, 5, new HazelcastEntityComparator(SearchableField.TIMESTAMP, true), DeviceNotification.class);
+
+        assertEquals(Stream.of(99L, 98L, 97L, 96L, 95L).collect(Collectors.toList()),
+                found.stream().map(DeviceNotification::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldReturnLatestSpillOfCommand() {
+        DeviceCommand command = command(1L, "d1", start);
+        store.append(command);
+        command.setStatus("done");
+        command.setIsUpdated(true);
+        command.setLastUpdated(new Date(start + 1000));
+        store.append(command);
+
+        List<DeviceCommand> found = store.find(1L, Collections.singleton("d1"), null, null, null, false, null, 0,
+                new HazelcastEntityComparator(), DeviceCommand.class);
+        assertEquals(1, found.size());
+        assertEquals("done", found.get(0).getStatus());
+
+        List<DeviceCommand> updated = store.find(null, Collections.singleton("d1"), null, new Date(start), null,
+                true, "done", 0, new HazelcastEntityComparator(), DeviceCommand.class);
+        assertEquals(1, updated.size());
+    }
+
+    @Test
+    public void shouldRecoverIncompleteRecordAfterRestart() throws Exception {
+        for (long i = 0; i < 70; i++) {
+            store.append(notification(i, "d1", start + i));
+        }
+        store.close();
+        Path segment;
+        try (Stream<Path> files = Files.walk(folder.getRoot().toPath())) {
+            segment = files.filter(file -> file.toString().endsWith(".seg")).findFirst().get();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        store = open();
+        store.append(notification(70L, "d1", start + 70));
+
+        List<DeviceNotification> found = store.find(null, Collections.singleton("d1"), null, null, null, false,
+                null, 0, new HazelcastEntityComparator(), DeviceNotification.class);
+        assertEquals(70, found.size());
+        assertEquals(70L, (long) found.get(found.size() - 1).getId());
+    }
+
+    @Test
+    public void shouldReadRecordsAppendedByAnotherBackend() {
+        SegmentHistoryStore reader = open();
+        try {
+            // the writer keeps the last block open, so only some records are indexed
+            for (long i = 0; i < 100; i++) {
+                store.append(notification(i, "d1", start + i * 1000));
+            }
+
+            List<DeviceNotification> found = reader.find(null, Collections.singleton("d1"), null,
+                    new Date(start + 9_000), null, false, null, 0, new HazelcastEntityComparator(),
+                    DeviceNotification.class);
+            assertEquals(90, found.size());
+
+            store.append(notification(100L, "d1", start + 100_000));
+            assertEquals(91, reader.find(null, Collections.singleton("d1"), null, new Date(start + 9_000), null,
+                    false, null, 0, new HazelcastEntityComparator(), DeviceNotification.class).size());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void shouldReadSegmentsMappedInWindows() {
+        // each window holds only a few records, so records of indexed blocks and the tail span many windows
+        SegmentHistoryStore reader = new SegmentHistoryStore(folder.getRoot().toPath(), 4, 1, 0,
+                GsonFactory.createGson(), 1024);
+        try {
+            for (long i = 0; i < 100; i++) {
+                store.append(notification(i, "d1", start + i * 1000));
+            }
+            DeviceNotification large = notification(100L, "d2", start);
+            large.setParameters(new JsonStringWrapper("{\"data\":\"" + String.join("", Collections.nCopies(2000, "x")) + "\"}"));
+            store.append(large);
+
+            // the segment with a record longer than the window is skipped, others are still read
+            List<DeviceNotification> found = reader.find(null, null, null, null, null, false, null, 0,
+                    new HazelcastEntityComparator(), DeviceNotification.class);
+            assertEquals(LongStream.range(0, 100).boxed().collect(Collectors.toList()),
+                    found.stream().map(DeviceNotification::getId).collect(Collectors.toList()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private SegmentHistoryStore open() {
+        return new SegmentHistoryStore(folder.getRoot().toPath(), 4, 1, 0, GsonFactory.createGson());
+    }
+
+    private static DeviceNotification notification(long id, String deviceId, long timestamp) {
+        DeviceNotification notification = generateNotification(id, 1L, deviceId);
+        notification.setTimestamp(new Date(timestamp));
+        return notification;
+    }
+
+    private static DeviceCommand command(long id, String deviceId, long timestamp) {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(id);
+        command.setDeviceId(deviceId);
+        command.setCommand("command");
+        command.setTimestamp(new Date(timestamp));
+        return command;
+    }
+}
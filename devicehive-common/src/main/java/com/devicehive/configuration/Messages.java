@@ -73,6 +73,7 @@ public class Messages {
     public static final String EMPTY_DEVICE_NAME = BidBundle.get("EMPTY_DEVICE_NAME");
     public static final String EMPTY_COMMAND = BidBundle.get("EMPTY_COMMAND");
     public static final String NOTIFICATION_REQUIRED = BidBundle.get("NOTIFICATION_REQUIRED");
+    public static final String NOTIFICATION_BATCH_TOO_LARGE = BidBundle.get("NOTIFICATION_BATCH_TOO_LARGE");
     public static final String NOTIFICATION_ID_REQUIRED = BidBundle.get("NOTIFICATION_ID_REQUIRED");
     public static final String CLIENT_IS_NULL = BidBundle.get("CLIENT_IS_NULL");
     public static final String INVALID_AUTH_CODE = BidBundle.get("INVALID_AUTH_CODE");
@@ -79,6 +79,7 @@ public class GsonFactory {
                 .registerSubtype(CommandUpdateSubscribeResponse.class, Action.COMMAND_UPDATE_SUBSCRIBE_RESPONSE.ordinal())
                 .registerSubtype(CommandUpdateRequest.class, Action.COMMAND_UPDATE_REQUEST.ordinal())
                 .registerSubtype(CommandsUpdateRequest.class, Action.COMMANDS_UPDATE_REQUEST.ordinal())
+                .registerSubtype(CommandBatchUpdateRequest.class, Action.COMMAND_BATCH_UPDATE_REQUEST.ordinal())
                 .registerSubtype(CommandGetSubscriptionRequest.class, Action.COMMAND_GET_SUBSCRIPTION_REQUEST.ordinal())
                 .registerSubtype(CommandGetSubscriptionResponse.class, Action.COMMAND_GET_SUBSCRIPTION_RESPONSE.ordinal())
 
@@ -86,6 +87,8 @@ public class GsonFactory {
                 .registerSubtype(NotificationSearchResponse.class, Action.NOTIFICATION_SEARCH_RESPONSE.ordinal())
                 .registerSubtype(NotificationInsertRequest.class, Action.NOTIFICATION_INSERT_REQUEST.ordinal())
                 .registerSubtype(NotificationInsertResponse.class, Action.NOTIFICATION_INSERT_RESPONSE.ordinal())
+                .registerSubtype(NotificationBatchInsertRequest.class, Action.NOTIFICATION_BATCH_INSERT_REQUEST.ordinal())
+                .registerSubtype(NotificationBatchInsertResponse.class, Action.NOTIFICATION_BATCH_INSERT_RESPONSE.ordinal())
                 .registerSubtype(NotificationSubscribeRequest.class, Action.NOTIFICATION_SUBSCRIBE_REQUEST.ordinal())
                 .registerSubtype(NotificationSubscribeResponse.class, Action.NOTIFICATION_SUBSCRIBE_RESPONSE.ordinal())
                 .registerSubtype(NotificationUnsubscribeRequest.class, Action.NOTIFICATION_UNSUBSCRIBE_REQUEST.ordinal())
@@ -121,6 +124,7 @@ public class GsonFactory {
                 .serializeNulls()
                 .registerTypeAdapterFactory(new OptionalAdapterFactory())
                 .registerTypeAdapterFactory(new JsonStringWrapperAdapterFactory())
+                .registerTypeAdapterFactory(new ResponseAdapterFactory())
                 .registerTypeAdapter(Date.class, new TimestampAdapter())
                 .registerTypeAdapter(UserRole.class, new UserRoleAdapter())
                 .registerTypeAdapter(UserStatus.class, new UserStatusAdapter())
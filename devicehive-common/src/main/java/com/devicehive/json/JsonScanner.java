@@ -0,0 +1,230 @@
+package com.devicehive.json;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Validating scanner for JSON text. It walks the string once without building a tree or allocating,
+ * and accepts strict JSON only (RFC 7159), as produced by Gson writers.
+ */
+public final class JsonScanner {
+
+    private static final int MAX_DEPTH = 512;
+
+    private JsonScanner() {
+    }
+
+    /**
+     * @param json - JSON text
+     * @return - true if the text is a single valid JSON object, optionally surrounded by whitespace
+     */
+    public static boolean isObject(String json) {
+        if (json == null) {
+            return false;
+        }
+        int start = skipWhitespace(json, 0);
+        if (start >= json.length() || json.charAt(start) != '{') {
+            return false;
+        }
+        int end = value(json, start, 0);
+        return end >= 0 && skipWhitespace(json, end) == json.length();
+    }
+
+    /**
+     * @return - position after the value, or -1 if the value is not valid
+     */
+    private static int value(String s, int i, int depth) {
+        i = skipWhitespace(s, i);
+        if (i >= s.length()) {
+            return -1;
+        }
+        switch (s.charAt(i)) {
+            case '{':
+                return depth < MAX_DEPTH ? object(s, i, depth + 1) : -1;
+            case '[':
+                return depth < MAX_DEPTH ? array(s, i, depth + 1) : -1;
+            case '"':
+                return string(s, i);
+            case 't':
+                return literal(s, i, "true");
+            case 'f':
+                return literal(s, i, "false");
+            case 'n':
+                return literal(s, i, "null");
+            default:
+                return number(s, i);
+        }
+    }
+
+    private static int object(String s, int i, int depth) {
+        i = skipWhitespace(s, i + 1);
+        if (i < s.length() && s.charAt(i) == '}') {
+            return i + 1;
+        }
+        while (i >= 0 && i < s.length()) {
+            i = string(s, skipWhitespace(s, i));
+            if (i < 0) {
+                return -1;
+            }
+            i = skipWhitespace(s, i);
+            if (i >= s.length() || s.charAt(i) != ':') {
+                return -1;
+            }
+            i = value(s, i + 1, depth);
+            if (i < 0) {
+                return -1;
+            }
+            i = skipWhitespace(s, i);
+            if (i >= s.length()) {
+                return -1;
+            }
+            char c = s.charAt(i);
+            if (c == '}') {
+                return i + 1;
+            }
+            if (c != ',') {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int array(String s, int i, int depth) {
+        i = skipWhitespace(s, i + 1);
+        if (i < s.length() && s.charAt(i) == ']') {
+            return i + 1;
+        }
+        while (i >= 0 && i < s.length()) {
+            i = value(s, i, depth);
+            if (i < 0) {
+                return -1;
+            }
+            i = skipWhitespace(s, i);
+            if (i >= s.length()) {
+                return -1;
+            }
+            char c = s.charAt(i);
+            if (c == ']') {
+                return i + 1;
+            }
+            if (c != ',') {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int string(String s, int i) {
+        if (i >= s.length() || s.charAt(i) != '"') {
+            return -1;
+        }
+        i++;
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') {
+                return i;
+            }
+            if (c < 0x20) {
+                return -1;
+            }
+            if (c == '\\') {
+                if (i >= s.length()) {
+                    return -1;
+                }
+                char escaped = s.charAt(i++);
+                if (escaped == 'u') {
+                    for (int end = i + 4; i < end; i++) {
+                        if (i >= s.length() || !isHexDigit(s.charAt(i))) {
+                            return -1;
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int number(String s, int i) {
+        if (i < s.length() && s.charAt(i) == '-') {
+            i++;
+        }
+        if (i < s.length() && s.charAt(i) == '0') {
+            i++;
+        } else {
+            int digits = digits(s, i);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        if (i < s.length() && s.charAt(i) == '.') {
+            int digits = digits(s, i + 1);
+            if (digits == i + 1) {
+                return -1;
+            }
+            i = digits;
+        }
+        if (i < s.length() && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < s.length() && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = digits(s, i);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        return i;
+    }
+
+    private static int digits(String s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Unlike {@link Character#digit(char, int)}, accepts ASCII hex digits only
+     */
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static int literal(String s, int i, String literal) {
+        return s.startsWith(literal, i) ? i + literal.length() : -1;
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
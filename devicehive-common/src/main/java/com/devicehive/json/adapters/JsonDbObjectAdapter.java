@@ -32,9 +32,10 @@ public class JsonDbObjectAdapter implements JsonSerializer<JsonStringWrapper>, J
     public JsonStringWrapper deserialize(JsonElement jsonElement, Type type,
                                          JsonDeserializationContext jsonDeserializationContext)
         throws JsonParseException {
-        JsonStringWrapper jsonStringWrapper = new JsonStringWrapper();
-        jsonStringWrapper.setJsonString(jsonElement.toString());
-        return jsonStringWrapper;
+        if (!jsonElement.isJsonObject()) {
+            throw new JsonParseException("JSON object expected");
+        }
+        return JsonStringWrapper.ofValidated(jsonElement.toString());
     }
 
     @Override
@@ -21,14 +21,22 @@ package com.devicehive.json.adapters;
  */
 
 
+import com.devicehive.configuration.Messages;
+import com.devicehive.exceptions.HiveException;
 import com.devicehive.model.JsonStringWrapper;
 import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
 import com.google.gson.internal.Streams;
+import com.google.gson.internal.bind.JsonTreeWriter;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.io.StringWriter;
+
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 
 public class JsonStringWrapperAdapterFactory implements TypeAdapterFactory {
 
@@ -45,24 +53,87 @@ public class JsonStringWrapperAdapterFactory implements TypeAdapterFactory {
         return result;
     }
 
+    /**
+     * Wrapped JSON is embedded into output as is and copied token by token from input,
+     * so it is neither parsed into a tree nor validated again.
+     */
     private static class JsonStringWrapperAdapter extends TypeAdapter<JsonStringWrapper> {
 
-
         @Override
         public void write(JsonWriter out, JsonStringWrapper value) throws IOException {
             if (value == null && out.getSerializeNulls()) {
                 out.nullValue();
             } else if (value != null) {
-                Streams.write(new JsonParser().parse(value.getJsonString()), out);
+                if (out instanceof JsonTreeWriter) {
+                    // tree writers can't take raw JSON
+                    Streams.write(new JsonParser().parse(value.getJsonString()), out);
+                } else {
+                    out.jsonValue(value.getJsonString());
+                }
             }
         }
 
         @Override
         public JsonStringWrapper read(JsonReader in) throws IOException {
-            JsonElement jsonElement = Streams.parse(in);
-            return !JsonNull.INSTANCE.equals(jsonElement)
-                    ? new JsonStringWrapper(jsonElement.toString())
-                    : null;
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            if (token != JsonToken.BEGIN_OBJECT) {
+                throw new HiveException(Messages.PARAMS_NOT_JSON, BAD_REQUEST.getStatusCode());
+            }
+            return JsonStringWrapper.ofValidated(copy(in));
+        }
+
+        private static String copy(JsonReader in) throws IOException {
+            StringWriter buffer = new StringWriter();
+            JsonWriter out = new JsonWriter(buffer);
+            int depth = 0;
+            do {
+                switch (in.peek()) {
+                    case BEGIN_OBJECT:
+                        in.beginObject();
+                        out.beginObject();
+                        depth++;
+                        break;
+                    case END_OBJECT:
+                        in.endObject();
+                        out.endObject();
+                        depth--;
+                        break;
+                    case BEGIN_ARRAY:
+                        in.beginArray();
+                        out.beginArray();
+                        depth++;
+                        break;
+                    case END_ARRAY:
+                        in.endArray();
+                        out.endArray();
+                        depth--;
+                        break;
+                    case NAME:
+                        out.name(in.nextName());
+                        break;
+                    case STRING:
+                        out.value(in.nextString());
+                        break;
+                    case NUMBER:
+                        out.value(new LazilyParsedNumber(in.nextString()));
+                        break;
+                    case BOOLEAN:
+                        out.value(in.nextBoolean());
+                        break;
+                    case NULL:
+                        in.nextNull();
+                        out.nullValue();
+                        break;
+                    default:
+                        throw new JsonSyntaxException("Unexpected end of JSON object");
+                }
+            } while (depth > 0);
+            out.flush();
+            return buffer.toString();
         }
     }
 }
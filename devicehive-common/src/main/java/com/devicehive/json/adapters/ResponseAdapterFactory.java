@@ -0,0 +1,94 @@
+package com.devicehive.json.adapters;
+
+/*
+ * #%L
+ * DeviceHive Common Dao Interfaces
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Response;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link Response} with pre-encoded body (see {@link Response#getEncodedBody()}) by splicing the body JSON
+ * into the envelope as is. Responses without encoded body and all reads are handled by the default adapter.
+ */
+public class ResponseAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Response.class.equals(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<Response> delegate = gson.getDelegateAdapter(this, TypeToken.get(Response.class));
+        TypeAdapter<String> stringAdapter = gson.getAdapter(String.class);
+        /**
+         * Cast is checked since we check that type T is Response
+         */
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> result = (TypeAdapter<T>) new ResponseAdapter(delegate, stringAdapter);
+        return result;
+    }
+
+    private static class ResponseAdapter extends TypeAdapter<Response> {
+
+        private final TypeAdapter<Response> delegate;
+        private final TypeAdapter<String> stringAdapter;
+
+        ResponseAdapter(TypeAdapter<Response> delegate, TypeAdapter<String> stringAdapter) {
+            this.delegate = delegate;
+            this.stringAdapter = stringAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Response value) throws IOException {
+            if (value == null || value.getEncodedBody() == null) {
+                delegate.write(out, value);
+                return;
+            }
+            out.beginObject();
+            out.name(Response.BODY).jsonValue(value.getEncodedBody());
+            out.name(Response.CORRELATION_ID);
+            stringAdapter.write(out, value.getCorrelationId());
+            if (value.getCorrelationIds() != null) {
+                out.name(Response.CORRELATION_IDS).beginArray();
+                for (String correlationId : value.getCorrelationIds()) {
+                    stringAdapter.write(out, correlationId);
+                }
+                out.endArray();
+            } else if (out.getSerializeNulls()) {
+                out.name(Response.CORRELATION_IDS).nullValue();
+            }
+            out.name(Response.LAST).value(value.isLast());
+            out.name(Response.ERROR_CODE).value(value.getErrorCode());
+            out.name(Response.FAILED).value(value.isFailed());
+            out.endObject();
+        }
+
+        @Override
+        public Response read(JsonReader in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+}
@@ -42,7 +42,6 @@ import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.TypeAdapter;
@@ -235,8 +234,8 @@ public final class RuntimeTypeAdapterFactory<T> implements TypeAdapterFactory {
                     throw new JsonParseException("cannot serialize " + srcType.getName()
                             + "; did you forget to register a subtype?");
                 }
-                JsonObject jsonObject = delegate.toJsonTree(value).getAsJsonObject();
-                Streams.write(jsonObject, out);
+                // subtypes carry the label field themselves, so they are written directly without a tree
+                delegate.write(out, value);
             }
         }.nullSafe();
     }
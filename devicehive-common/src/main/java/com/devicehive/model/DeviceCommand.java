@@ -261,8 +261,8 @@ public class DeviceCommand implements HiveEntity, HazelcastEntity, Portable {
 
     @Override
     @ApiModelProperty(hidden = true)
-    public String getHazelcastKey() {
-        return id+"-"+deviceId+"-"+timestamp;
+    public HazelcastEntityKey getHazelcastKey() {
+        return new HazelcastEntityKey(id, deviceId);
     }
 
     @Override
@@ -306,13 +306,13 @@ public class DeviceCommand implements HiveEntity, HazelcastEntity, Portable {
         networkId = portableReader.readLong("networkId");
         String parametersString = portableReader.readUTF("parameters");
         if (Objects.nonNull(parametersString)) {
-            parameters = new JsonStringWrapper(parametersString);
+            parameters = JsonStringWrapper.ofValidated(parametersString);
         }
         lifetime = portableReader.readInt("lifetime");
         status = portableReader.readUTF("status");
         String resultString = portableReader.readUTF("result");
         if (Objects.nonNull(resultString)) {
-            result = new JsonStringWrapper(resultString);
+            result = JsonStringWrapper.ofValidated(resultString);
         }
         isUpdated = portableReader.readBoolean("isUpdated");
     }
@@ -159,8 +159,8 @@ public class DeviceNotification implements HiveEntity, HazelcastEntity, Portable
 
     @Override
     @ApiModelProperty(hidden = true)
-    public String getHazelcastKey() {
-        return id+"-"+deviceId+"-"+timestamp;
+    public HazelcastEntityKey getHazelcastKey() {
+        return new HazelcastEntityKey(id, deviceId);
     }
 
     @Override
@@ -195,7 +195,7 @@ public class DeviceNotification implements HiveEntity, HazelcastEntity, Portable
         timestamp = new Date(portableReader.readLong("timestamp"));
         String parametersString = portableReader.readUTF("parameters");
         if (Objects.nonNull(parametersString)) {
-            parameters = new JsonStringWrapper(parametersString);
+            parameters = JsonStringWrapper.ofValidated(parametersString);
         }
     }
 
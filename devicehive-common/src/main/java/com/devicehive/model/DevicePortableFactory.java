@@ -25,6 +25,9 @@ import com.devicehive.auth.HivePrincipal;
 import com.devicehive.model.eventbus.Filter;
 import com.devicehive.model.eventbus.Subscriber;
 import com.devicehive.model.eventbus.Subscription;
+import com.devicehive.model.history.DeviceHistory;
+import com.devicehive.model.history.DeviceHistoryAppender;
+import com.devicehive.model.history.DeviceHistoryQuery;
 import com.hazelcast.nio.serialization.Portable;
 import com.hazelcast.nio.serialization.PortableFactory;
 
@@ -43,6 +46,18 @@ public class DevicePortableFactory implements PortableFactory {
             return new Subscription();
         } else if (Subscriber.CLASS_ID == classId) {
             return new Subscriber();
+        } else if (DeviceHistory.CLASS_ID == classId) {
+            return new DeviceHistory();
+        } else if (DeviceHistoryAppender.CLASS_ID == classId) {
+            return new DeviceHistoryAppender();
+        } else if (DeviceHistoryQuery.CLASS_ID == classId) {
+            return new DeviceHistoryQuery();
+        } else if (HazelcastEntityKey.CLASS_ID == classId) {
+            return new HazelcastEntityKey();
+        } else if (HazelcastDeviceQuery.CLASS_ID == classId) {
+            return new HazelcastDeviceQuery();
+        } else if (HazelcastDeviceTrim.CLASS_ID == classId) {
+            return new HazelcastDeviceTrim();
         }
         
         return null;
@@ -0,0 +1,107 @@
+package com.devicehive.model;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.core.IMap;
+import com.hazelcast.nio.serialization.Portable;
+import com.hazelcast.nio.serialization.PortableReader;
+import com.hazelcast.nio.serialization.PortableWriter;
+import com.hazelcast.query.PartitionPredicate;
+import com.hazelcast.query.Predicate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Query of notifications or commands of one device. It is submitted to the member owning the device partition
+ * and runs there against that partition only, returning the first page in the given order, as paging predicate does.
+ */
+public class HazelcastDeviceQuery implements Callable<List<HazelcastEntity>>, HazelcastInstanceAware, Portable {
+    public static final int FACTORY_ID = 1;
+    public static final int CLASS_ID = 11;
+
+    private String mapName;
+    private String deviceId;
+    private Predicate<HazelcastEntityKey, HazelcastEntity> predicate;
+    private int take;
+    private HazelcastEntityComparator comparator;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    public HazelcastDeviceQuery() {
+    }
+
+    public HazelcastDeviceQuery(String mapName, String deviceId, Predicate<HazelcastEntityKey, HazelcastEntity> predicate,
+                                int take, HazelcastEntityComparator comparator) {
+        this.mapName = mapName;
+        this.deviceId = deviceId;
+        this.predicate = predicate;
+        this.take = take;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public List<HazelcastEntity> call() {
+        final IMap<HazelcastEntityKey, HazelcastEntity> map = hazelcastInstance.getMap(mapName);
+        final Collection<HazelcastEntity> values = map.values(new PartitionPredicate<>(deviceId, predicate));
+        final List<HazelcastEntity> result = new ArrayList<>(values);
+        result.sort(comparator::compareEntities);
+        return take > 0 && result.size() > take ? new ArrayList<>(result.subList(0, take)) : result;
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return CLASS_ID;
+    }
+
+    @Override
+    public void writePortable(PortableWriter writer) throws IOException {
+        writer.writeUTF("mapName", mapName);
+        writer.writeUTF("deviceId", deviceId);
+        writer.writeInt("take", take);
+        writer.getRawDataOutput().writeObject(predicate);
+        writer.getRawDataOutput().writeObject(comparator);
+    }
+
+    @Override
+    public void readPortable(PortableReader reader) throws IOException {
+        mapName = reader.readUTF("mapName");
+        deviceId = reader.readUTF("deviceId");
+        take = reader.readInt("take");
+        predicate = reader.getRawDataInput().readObject();
+        comparator = reader.getRawDataInput().readObject();
+    }
+}
@@ -0,0 +1,128 @@
+package com.devicehive.model;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.core.IMap;
+import com.hazelcast.nio.serialization.Portable;
+import com.hazelcast.nio.serialization.PortableReader;
+import com.hazelcast.nio.serialization.PortableWriter;
+import com.hazelcast.query.PartitionPredicate;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.devicehive.model.enums.SearchableField.DEVICE_ID;
+
+/**
+ * Removes the oldest notifications or commands of one device above the per-device limit. It is submitted to
+ * the member owning the device partition, so only that partition is scanned and no entries leave the member.
+ * Entries are evicted instead of deleted if requested, so that listeners of evictions receive them.
+ */
+public class HazelcastDeviceTrim implements Callable<Integer>, HazelcastInstanceAware, Portable {
+    public static final int FACTORY_ID = 1;
+    public static final int CLASS_ID = 12;
+
+    private String mapName;
+    private String deviceId;
+    private int maxPerDevice;
+    private boolean evict;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    public HazelcastDeviceTrim() {
+    }
+
+    public HazelcastDeviceTrim(String mapName, String deviceId, int maxPerDevice, boolean evict) {
+        this.mapName = mapName;
+        this.deviceId = deviceId;
+        this.maxPerDevice = maxPerDevice;
+        this.evict = evict;
+    }
+
+    /**
+     * @return - number of removed entries
+     */
+    @Override
+    public Integer call() {
+        final IMap<HazelcastEntityKey, HazelcastEntity> map = hazelcastInstance.getMap(mapName);
+        // Predicates returns raw predicates
+        @SuppressWarnings("unchecked")
+        final Predicate<HazelcastEntityKey, HazelcastEntity> ofDevice = Predicates.equal(DEVICE_ID.getField(), deviceId);
+        final List<Map.Entry<HazelcastEntityKey, HazelcastEntity>> entries = new ArrayList<>(map.entrySet(
+                new PartitionPredicate<>(deviceId, ofDevice)));
+        final int excess = entries.size() - maxPerDevice;
+        if (excess <= 0) {
+            return 0;
+        }
+        entries.sort(Comparator.comparingLong(entry -> timestampOf(entry.getValue())));
+        for (int i = 0; i < excess; i++) {
+            if (evict) {
+                map.evict(entries.get(i).getKey());
+            } else {
+                map.delete(entries.get(i).getKey());
+            }
+        }
+        return excess;
+    }
+
+    private static long timestampOf(HazelcastEntity entity) {
+        return entity.getTimestamp() != null ? entity.getTimestamp().getTime() : 0L;
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return CLASS_ID;
+    }
+
+    @Override
+    public void writePortable(PortableWriter writer) throws IOException {
+        writer.writeUTF("mapName", mapName);
+        writer.writeUTF("deviceId", deviceId);
+        writer.writeInt("maxPerDevice", maxPerDevice);
+        writer.writeBoolean("evict", evict);
+    }
+
+    @Override
+    public void readPortable(PortableReader reader) throws IOException {
+        mapName = reader.readUTF("mapName");
+        deviceId = reader.readUTF("deviceId");
+        maxPerDevice = reader.readInt("maxPerDevice");
+        evict = reader.readBoolean("evict");
+    }
+}
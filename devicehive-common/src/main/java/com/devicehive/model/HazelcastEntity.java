@@ -26,7 +26,9 @@ import java.util.Date;
 
 public interface HazelcastEntity extends HazelcastInstanceAware {
 
-    String getHazelcastKey();
+    HazelcastEntityKey getHazelcastKey();
+
+    String getDeviceId();
 
     Date getTimestamp();
 }
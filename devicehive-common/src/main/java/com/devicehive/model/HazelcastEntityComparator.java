@@ -20,19 +20,82 @@ package com.devicehive.model;
  * #L%
  */
 
+import com.devicehive.model.enums.SearchableField;
+
 import java.io.Serializable;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.Map;
 
-public class HazelcastEntityComparator implements Comparator<Map.Entry<String, HazelcastEntity>>, Serializable {
+/**
+ * Order of notifications or commands by timestamp, notification, command or status. It is used by paging predicates,
+ * so each member sorts its own matches and returns only the requested page. Entries with equal sort values are
+ * ordered by timestamp and id, so that pages of different members are merged consistently.
+ */
+public class HazelcastEntityComparator implements Comparator<Map.Entry<HazelcastEntityKey, HazelcastEntity>>, Serializable {
     private static final long serialVersionUID = 5413354955792888308L;
 
+    private SearchableField field;
+    private boolean descending;
+
+    /**
+     * Oldest entries first
+     */
+    public HazelcastEntityComparator() {
+        this(SearchableField.TIMESTAMP, false);
+    }
+
+    public HazelcastEntityComparator(SearchableField field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
     @Override
-    public int compare(Map.Entry<String, HazelcastEntity> o1, Map.Entry<String, HazelcastEntity> o2) {
-        final Date o1Time = o1.getValue().getTimestamp();
-        final Date o2Time = o2.getValue().getTimestamp();
+    public int compare(Map.Entry<HazelcastEntityKey, HazelcastEntity> o1, Map.Entry<HazelcastEntityKey, HazelcastEntity> o2) {
+        return compareEntities(o1.getValue(), o2.getValue());
+    }
+
+    public int compareEntities(HazelcastEntity o1, HazelcastEntity o2) {
+        int result = compareNullable(valueOf(o1), valueOf(o2));
+        if (result == 0 && field != SearchableField.TIMESTAMP) {
+            result = compareNullable(o1.getTimestamp(), o2.getTimestamp());
+        }
+        if (result == 0) {
+            result = Long.compare(o1.getHazelcastKey().getId(), o2.getHazelcastKey().getId());
+        }
+        return descending ? -result : result;
+    }
+
+    private Comparable<?> valueOf(HazelcastEntity entity) {
+        switch (field != null ? field : SearchableField.TIMESTAMP) {
+            case NOTIFICATION:
+                return entity instanceof DeviceNotification ? ((DeviceNotification) entity).getNotification() : null;
+            case COMMAND:
+                return entity instanceof DeviceCommand ? ((DeviceCommand) entity).getCommand() : null;
+            case STATUS:
+                return entity instanceof DeviceCommand ? ((DeviceCommand) entity).getStatus() : null;
+            default:
+                return entity.getTimestamp();
+        }
+    }
+
+    private static int compareNullable(Comparable<?> o1, Comparable<?> o2) {
+        if (o1 == null || o2 == null) {
+            return o1 == null ? (o2 == null ? 0 : -1) : 1;
+        }
+        return compareValues(o1, o2);
+    }
+
+    // both values are taken from the same field, so they are mutually comparable
+    @SuppressWarnings("unchecked")
+    private static <C extends Comparable<? super C>> int compareValues(Comparable<?> o1, Comparable<?> o2) {
+        return ((C) o1).compareTo((C) o2);
+    }
+
+    public SearchableField getField() {
+        return field;
+    }
 
-        return o1Time.compareTo(o2Time);
+    public boolean isDescending() {
+        return descending;
     }
 }
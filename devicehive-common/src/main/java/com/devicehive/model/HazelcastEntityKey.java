@@ -0,0 +1,105 @@
+package com.devicehive.model;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.hazelcast.core.PartitionAware;
+import com.hazelcast.nio.serialization.Portable;
+import com.hazelcast.nio.serialization.PortableReader;
+import com.hazelcast.nio.serialization.PortableWriter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Key of notification or command in hazelcast. Entries are partitioned by device id,
+ * so all entries of a device are stored in one partition and can be read by key or queried in that partition only.
+ */
+public class HazelcastEntityKey implements PartitionAware<String>, Portable, Serializable {
+    private static final long serialVersionUID = -2741536950213407482L;
+
+    public static final int FACTORY_ID = 1;
+    public static final int CLASS_ID = 10;
+
+    private long id;
+    private String deviceId;
+
+    public HazelcastEntityKey() {
+    }
+
+    public HazelcastEntityKey(Long id, String deviceId) {
+        this.id = id != null ? id : 0;
+        this.deviceId = deviceId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return deviceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HazelcastEntityKey)) return false;
+        HazelcastEntityKey that = (HazelcastEntityKey) o;
+        return id == that.id && Objects.equals(deviceId, that.deviceId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, deviceId);
+    }
+
+    @Override
+    public String toString() {
+        return id + "-" + deviceId;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return CLASS_ID;
+    }
+
+    @Override
+    public void writePortable(PortableWriter writer) throws IOException {
+        writer.writeLong("id", id);
+        writer.writeUTF("deviceId", deviceId);
+    }
+
+    @Override
+    public void readPortable(PortableReader reader) throws IOException {
+        id = reader.readLong("id");
+        deviceId = reader.readUTF("deviceId");
+    }
+}
@@ -22,7 +22,7 @@ package com.devicehive.model;
 
 import com.devicehive.configuration.Messages;
 import com.devicehive.exceptions.HiveException;
-import com.google.gson.JsonParser;
+import com.devicehive.json.JsonScanner;
 
 import javax.persistence.Embeddable;
 import java.util.Objects;
@@ -47,14 +47,22 @@ public class JsonStringWrapper implements HiveEntity {
     }
 
     public void setJsonString(String jsonString) {
-        try {
-            new JsonParser().parse(jsonString).getAsJsonObject();
-        } catch (Exception e) {
+        if (!JsonScanner.isObject(jsonString)) {
             throw new HiveException(Messages.PARAMS_NOT_JSON, BAD_REQUEST.getStatusCode());
         }
         this.jsonString = jsonString;
     }
 
+    /**
+     * Wraps JSON object which has already been validated, e.g. written by a JSON writer or read back from storage,
+     * so that it is not scanned again on every hop.
+     */
+    public static JsonStringWrapper ofValidated(String jsonString) {
+        JsonStringWrapper wrapper = new JsonStringWrapper();
+        wrapper.jsonString = jsonString;
+        return wrapper;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -48,6 +48,11 @@ public class CommandEvent extends Event {
         return Arrays.asList(device, deviceWithName);
     }
 
+    @Override
+    public String getPartitionKey() {
+        return command.getDeviceId();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -50,6 +50,11 @@ public class CommandsUpdateEvent extends Event {
         return command;
     }
 
+    @Override
+    public String getPartitionKey() {
+        return command.getDeviceId();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -42,4 +42,12 @@ public abstract class Event extends Body {
      */
     public abstract Collection<Subscription> getApplicableSubscriptions();
 
+    /**
+     * Returns key, which defines ordering of events during asynchronous delivery:
+     * events with the same key are delivered to subscribers in the order they were published.
+     *
+     * @return id of device, this event belongs to.
+     */
+    public abstract String getPartitionKey();
+
 }
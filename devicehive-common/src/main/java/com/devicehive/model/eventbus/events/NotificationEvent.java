@@ -54,6 +54,11 @@ public class NotificationEvent extends Event {
         return Arrays.asList(deviceOnly, deviceWithName);
     }
 
+    @Override
+    public String getPartitionKey() {
+        return notification.getDeviceId();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
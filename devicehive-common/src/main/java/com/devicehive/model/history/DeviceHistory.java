@@ -0,0 +1,181 @@
+package com.devicehive.model.history;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.Portable;
+import com.hazelcast.nio.serialization.PortableReader;
+import com.hazelcast.nio.serialization.PortableWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bounded history of one device, ordered by timestamp. It is stored under device id, so the whole history
+ * of a device lives in one partition and is read with a binary search instead of a cluster-wide query.
+ *
+ * When the oldest entries are dropped because of capacity, the history remembers up to which timestamp
+ * it is no longer complete. Queries starting before that point can't be answered from the history.
+ */
+public class DeviceHistory implements Portable {
+    public static final int FACTORY_ID = 1;
+    public static final int CLASS_ID = 7;
+
+    private int capacity;
+    private long completeAfter;
+    private List<HazelcastEntity> entries;
+
+    public DeviceHistory() {
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * @param capacity - max number of entries
+     * @param completeAfter - timestamp after which all entries of the device are known to the history
+     */
+    public DeviceHistory(int capacity, long completeAfter) {
+        this.capacity = capacity;
+        this.completeAfter = completeAfter;
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * Adds entry or replaces the entry with the same key, e.g. updated command.
+     */
+    public void add(HazelcastEntity entity) {
+        long timestamp = timestampOf(entity);
+        int position = firstAfter(timestamp);
+        for (int i = position - 1; i >= 0 && timestampOf(entries.get(i)) == timestamp; i--) {
+            if (entries.get(i).getHazelcastKey().equals(entity.getHazelcastKey())) {
+                entries.set(i, entity);
+                return;
+            }
+        }
+        entries.add(position, entity);
+        while (entries.size() > capacity) {
+            completeAfter = Math.max(completeAfter, timestampOf(entries.remove(0)));
+        }
+    }
+
+    /**
+     * @param names - names of notifications or commands, all names if empty
+     * @param timestamp - entries with greater timestamp are returned
+     * @param minTimestamp - entries older than this are treated as expired
+     * @param take - max number of entries, all if not positive
+     * @return - oldest matching entries after the timestamp, or null if the history is not complete for it
+     */
+    public List<HazelcastEntity> find(Collection<String> names, long timestamp, long minTimestamp, int take) {
+        if (timestamp < completeAfter) {
+            return null;
+        }
+        List<HazelcastEntity> result = new ArrayList<>();
+        for (int i = firstAfter(timestamp); i < entries.size() && (take <= 0 || result.size() < take); i++) {
+            HazelcastEntity entity = entries.get(i);
+            if (timestampOf(entity) >= minTimestamp && (names == null || names.isEmpty() || names.contains(nameOf(entity)))) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    public List<HazelcastEntity> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return - index of the first entry with timestamp greater than given one
+     */
+    private int firstAfter(long timestamp) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestampOf(entries.get(middle)) <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    static long timestampOf(HazelcastEntity entity) {
+        return entity.getTimestamp() != null ? entity.getTimestamp().getTime() : 0;
+    }
+
+    private static String nameOf(HazelcastEntity entity) {
+        if (entity instanceof DeviceNotification) {
+            return ((DeviceNotification) entity).getNotification();
+        }
+        if (entity instanceof DeviceCommand) {
+            return ((DeviceCommand) entity).getCommand();
+        }
+        return null;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return CLASS_ID;
+    }
+
+    @Override
+    public void writePortable(PortableWriter writer) throws IOException {
+        writer.writeInt("capacity", capacity);
+        writer.writeLong("completeAfter", completeAfter);
+        ObjectDataOutput out = writer.getRawDataOutput();
+        out.writeInt(entries.size());
+        for (HazelcastEntity entity : entries) {
+            out.writeObject(entity);
+        }
+    }
+
+    @Override
+    public void readPortable(PortableReader reader) throws IOException {
+        capacity = reader.readInt("capacity");
+        completeAfter = reader.readLong("completeAfter");
+        ObjectDataInput in = reader.getRawDataInput();
+        int size = in.readInt();
+        entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(in.readObject());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceHistory{" +
+                "capacity=" + capacity +
+                ", completeAfter=" + completeAfter +
+                ", size=" + entries.size() +
+                '}';
+    }
+}
@@ -0,0 +1,112 @@
+package com.devicehive.model.history;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.serialization.Portable;
+import com.hazelcast.nio.serialization.PortableReader;
+import com.hazelcast.nio.serialization.PortableWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds entries of one device to its history on the member owning the device partition.
+ */
+public class DeviceHistoryAppender implements EntryProcessor<String, DeviceHistory>,
+        EntryBackupProcessor<String, DeviceHistory>, Portable {
+    private static final long serialVersionUID = -4916971724414131873L;
+    public static final int FACTORY_ID = 1;
+    public static final int CLASS_ID = 8;
+
+    private List<HazelcastEntity> entities;
+    private int capacity;
+
+    public DeviceHistoryAppender() {
+    }
+
+    public DeviceHistoryAppender(HazelcastEntity entity, int capacity) {
+        this(Collections.singletonList(entity), capacity);
+    }
+
+    public DeviceHistoryAppender(Collection<? extends HazelcastEntity> entities, int capacity) {
+        this.entities = new ArrayList<>(entities);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, DeviceHistory> entry) {
+        DeviceHistory history = entry.getValue();
+        if (history == null) {
+            // entries stored before the history was created are unknown to it
+            long oldest = entities.stream().mapToLong(DeviceHistory::timestampOf).min().orElse(0L);
+            history = new DeviceHistory(capacity, oldest);
+        }
+        entities.forEach(history::add);
+        entry.setValue(history);
+        return null;
+    }
+
+    @Override
+    public EntryBackupProcessor<String, DeviceHistory> getBackupProcessor() {
+        return this;
+    }
+
+    @Override
+    public void processBackup(Map.Entry<String, DeviceHistory> entry) {
+        process(entry);
+    }
+
+    @Override
+    public int getFactoryId() {
+        return FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return CLASS_ID;
+    }
+
+    @Override
+    public void writePortable(PortableWriter writer) throws IOException {
+        writer.writeInt("capacity", capacity);
+        writer.getRawDataOutput().writeInt(entities.size());
+        for (HazelcastEntity entity : entities) {
+            writer.getRawDataOutput().writeObject(entity);
+        }
+    }
+
+    @Override
+    public void readPortable(PortableReader reader) throws IOException {
+        capacity = reader.readInt("capacity");
+        int size = reader.getRawDataInput().readInt();
+        entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entities.add(reader.getRawDataInput().readObject());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.devicehive.model.history;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.serialization.Portable;
+import com.hazelcast.nio.serialization.PortableReader;
+import com.hazelcast.nio.serialization.PortableWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads entries after a timestamp from the history of a device on the member owning the device partition.
+ * Returns {@link DeviceHistory} with found entries, or null if the history can't answer the query.
+ */
+public class DeviceHistoryQuery implements EntryProcessor<String, DeviceHistory>, ReadOnly, Portable {
+    private static final long serialVersionUID = -1814742574104711077L;
+    public static final int FACTORY_ID = 1;
+    public static final int CLASS_ID = 9;
+
+    private String[] names;
+    private long timestamp;
+    private long minTimestamp;
+    private int take;
+
+    public DeviceHistoryQuery() {
+    }
+
+    public DeviceHistoryQuery(Collection<String> names, long timestamp, long minTimestamp, int take) {
+        this.names = names != null ? names.toArray(new String[names.size()]) : new String[0];
+        this.timestamp = timestamp;
+        this.minTimestamp = minTimestamp;
+        this.take = take;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, DeviceHistory> entry) {
+        DeviceHistory history = entry.getValue();
+        if (history == null) {
+            return null;
+        }
+        List<HazelcastEntity> found = history.find(Arrays.asList(names), timestamp, minTimestamp, take);
+        if (found == null) {
+            return null;
+        }
+        DeviceHistory result = new DeviceHistory(found.size(), timestamp);
+        result.getEntries().addAll(found);
+        return result;
+    }
+
+    @Override
+    public EntryBackupProcessor<String, DeviceHistory> getBackupProcessor() {
+        return null;
+    }
+
+    @Override
+    public int getFactoryId() {
+        return FACTORY_ID;
+    }
+
+    @Override
+    public int getClassId() {
+        return CLASS_ID;
+    }
+
+    @Override
+    public void writePortable(PortableWriter writer) throws IOException {
+        writer.writeUTFArray("names", names);
+        writer.writeLong("timestamp", timestamp);
+        writer.writeLong("minTimestamp", minTimestamp);
+        writer.writeInt("take", take);
+    }
+
+    @Override
+    public void readPortable(PortableReader reader) throws IOException {
+        names = reader.readUTFArray("names");
+        timestamp = reader.readLong("timestamp");
+        minTimestamp = reader.readLong("minTimestamp");
+        take = reader.readInt("take");
+    }
+}
@@ -23,6 +23,7 @@ import com.devicehive.model.eventbus.Filter;
 import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Body;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Objects;
 import java.util.Set;
@@ -31,6 +32,7 @@ public class CommandSubscribeRequest extends Body {
 
     private Long subscriptionId;
     private String device;
+    private Set<String> devices;
     private Filter filter;
     private Date timestamp;
     private boolean returnUpdated;
@@ -47,6 +49,15 @@ public class CommandSubscribeRequest extends Body {
         this.limit = limit;
     }
 
+    /**
+     * Subscribes to commands of all given devices with a single request
+     */
+    public CommandSubscribeRequest(Long subscriptionId, Set<String> devices,
+            Filter filter, Date timestamp, boolean returnUpdated, Integer limit) {
+        this(subscriptionId, (String) null, filter, timestamp, returnUpdated, limit);
+        this.devices = devices;
+    }
+
     public Long getSubscriptionId() {
         return subscriptionId;
     }
@@ -63,6 +74,24 @@ public class CommandSubscribeRequest extends Body {
         this.device = device;
     }
 
+    public Set<String> getDevices() {
+        return devices;
+    }
+
+    public void setDevices(Set<String> devices) {
+        this.devices = devices;
+    }
+
+    /**
+     * @return - ids of all devices of the subscription, either the device set or the single device
+     */
+    public Set<String> getDeviceIds() {
+        if (devices != null && !devices.isEmpty()) {
+            return devices;
+        }
+        return device != null ? Collections.singleton(device) : Collections.emptySet();
+    }
+
     public Filter getFilter() {
         return filter;
     }
@@ -109,13 +138,14 @@ public class CommandSubscribeRequest extends Body {
         CommandSubscribeRequest that = (CommandSubscribeRequest) o;
         return Objects.equals(subscriptionId, that.subscriptionId)
                 && Objects.equals(device, that.device)
+                && Objects.equals(devices, that.devices)
                 && Objects.equals(filter, that.filter)
                 && Objects.equals(timestamp, that.timestamp);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), subscriptionId, device, filter, timestamp);
+        return Objects.hash(super.hashCode(), subscriptionId, device, devices, filter, timestamp);
     }
 
     @Override
@@ -123,6 +153,7 @@ public class CommandSubscribeRequest extends Body {
         return "CommandSubscribeRequest{"
                 + "subscriptionId='" + subscriptionId + '\''
                 + ", device='" + device + '\''
+                + ", devices=" + devices
                 + ", filter=" + filter
                 + ", timestamp=" + timestamp
                 + ", limit=" + limit
@@ -24,6 +24,12 @@ import com.devicehive.model.DeviceCommand;
 import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Body;
 
+/**
+ * Sent by frontends of earlier releases next to {@link CommandUpdateRequest} for the same command.
+ * Kept only so that such requests are still decoded during a rolling upgrade.
+ *
+ * Legacy, {@link CommandUpdateRequest} now stores the command and publishes both update events.
+ */
 public class CommandsUpdateRequest extends Body {
 
     private DeviceCommand deviceCommand;
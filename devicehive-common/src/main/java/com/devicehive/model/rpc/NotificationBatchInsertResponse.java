@@ -0,0 +1,58 @@
+package com.devicehive.model.rpc;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Action;
+import com.devicehive.shim.api.Body;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Carries only ids and timestamps of the stored notifications, in the order they were sent, the caller already has the rest.
+ */
+public class NotificationBatchInsertResponse extends Body {
+
+    private List<Long> ids;
+    private List<Date> timestamps;
+
+    public NotificationBatchInsertResponse(List<Long> ids, List<Date> timestamps) {
+        super(Action.NOTIFICATION_BATCH_INSERT_RESPONSE);
+        this.ids = ids;
+        this.timestamps = timestamps;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public List<Date> getTimestamps() {
+        return timestamps;
+    }
+
+    public void setTimestamps(List<Date> timestamps) {
+        this.timestamps = timestamps;
+    }
+}
@@ -24,6 +24,7 @@ import com.devicehive.model.eventbus.Filter;
 import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Body;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Objects;
 import java.util.Set;
@@ -32,6 +33,7 @@ public class NotificationSubscribeRequest extends Body {
 
     private Long subscriptionId;
     private String device;
+    private Set<String> devices;
     private Filter filter;
     private Date timestamp;
 
@@ -43,6 +45,14 @@ public class NotificationSubscribeRequest extends Body {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Subscribes to notifications of all given devices with a single request
+     */
+    public NotificationSubscribeRequest(Long subscriptionId, Set<String> devices, Filter filter, Date timestamp) {
+        this(subscriptionId, (String) null, filter, timestamp);
+        this.devices = devices;
+    }
+
     public Long getSubscriptionId() {
         return subscriptionId;
     }
@@ -59,6 +69,24 @@ public class NotificationSubscribeRequest extends Body {
         this.device = device;
     }
 
+    public Set<String> getDevices() {
+        return devices;
+    }
+
+    public void setDevices(Set<String> devices) {
+        this.devices = devices;
+    }
+
+    /**
+     * @return - ids of all devices of the subscription, either the device set or the single device
+     */
+    public Set<String> getDeviceIds() {
+        if (devices != null && !devices.isEmpty()) {
+            return devices;
+        }
+        return device != null ? Collections.singleton(device) : Collections.emptySet();
+    }
+
     public Filter getFilter() {
         return filter;
     }
@@ -83,13 +111,14 @@ public class NotificationSubscribeRequest extends Body {
         NotificationSubscribeRequest that = (NotificationSubscribeRequest) o;
         return Objects.equals(subscriptionId, that.subscriptionId) &&
                 Objects.equals(device, that.device) &&
+                Objects.equals(devices, that.devices) &&
                 Objects.equals(filter, that.filter) &&
                 Objects.equals(timestamp, that.timestamp);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), subscriptionId, device, filter, timestamp);
+        return Objects.hash(super.hashCode(), subscriptionId, device, devices, filter, timestamp);
     }
 
     @Override
@@ -97,6 +126,7 @@ public class NotificationSubscribeRequest extends Body {
         return "NotificationSubscribeRequest{" +
                 "subscriptionId='" + subscriptionId + '\'' +
                 ", device='" + device + '\'' +
+                ", devices=" + devices +
                 ", filter=" + filter +
                 ", timestamp=" + timestamp +
                 '}';
@@ -0,0 +1,132 @@
+package com.devicehive.json;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonScannerTest {
+
+    @Test
+    public void shouldAcceptObjects() {
+        assertTrue(JsonScanner.isObject("{}"));
+        assertTrue(JsonScanner.isObject(" \t\r\n{ } \n"));
+        assertTrue(JsonScanner.isObject("{\"a\":1,\"b\":[true,false,null],\"c\":{\"d\":\"e\"}}"));
+        assertTrue(JsonScanner.isObject("{ \"a\" : [ ] , \"b\" : { } }"));
+    }
+
+    @Test
+    public void shouldRejectNonObjects() {
+        assertFalse(JsonScanner.isObject(null));
+        assertFalse(JsonScanner.isObject(""));
+        assertFalse(JsonScanner.isObject("  "));
+        assertFalse(JsonScanner.isObject("[]"));
+        assertFalse(JsonScanner.isObject("\"string\""));
+        assertFalse(JsonScanner.isObject("1"));
+        assertFalse(JsonScanner.isObject("null"));
+    }
+
+    @Test
+    public void shouldAcceptEscapes() {
+        assertTrue(JsonScanner.isObject("{\"a\":\"\\\" \\\\ \\/ \\b \\f \\n \\r \\t\"}"));
+        assertTrue(JsonScanner.isObject("{\"\\\"key\\\"\":\"value\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\x\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\'\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"line\nbreak\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"tab\there\"}"));
+    }
+
+    @Test
+    public void shouldAcceptUnicode() {
+        assertTrue(JsonScanner.isObject("{\"a\":\"\\u0041\\u00e9\\uD83D\\uDE00\\uFFFF\"}"));
+        assertTrue(JsonScanner.isObject("{\"\u0442\u0435\u043c\u043f\":\"\u00b0C \u2713 \uD83D\uDE00\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\u00g0\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\u12\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\u12"));
+        // non-ASCII digits are not hex digits of JSON
+        assertFalse(JsonScanner.isObject("{\"a\":\"\\u\uFF10\uFF10\uFF10\uFF10\"}"));
+    }
+
+    @Test
+    public void shouldAcceptNumberForms() {
+        for (String number : new String[]{"0", "-0", "7", "-123", "1.5", "-0.25", "1e10", "1E+10", "2.5e-3", "0e0"}) {
+            assertTrue(number, JsonScanner.isObject("{\"n\":" + number + "}"));
+        }
+        for (String number : new String[]{"01", "-", "+1", ".5", "1.", "1e", "1e+", "0x10", "NaN", "Infinity", "1.5.5", "--1"}) {
+            assertFalse(number, JsonScanner.isObject("{\"n\":" + number + "}"));
+        }
+    }
+
+    @Test
+    public void shouldLimitNesting() {
+        assertTrue(JsonScanner.isObject(nested(512)));
+        assertFalse(JsonScanner.isObject(nested(513)));
+        assertFalse(JsonScanner.isObject(nested(100000)));
+    }
+
+    @Test
+    public void shouldRejectTrailingGarbage() {
+        assertFalse(JsonScanner.isObject("{}x"));
+        assertFalse(JsonScanner.isObject("{}{}"));
+        assertFalse(JsonScanner.isObject("{} ,"));
+        assertFalse(JsonScanner.isObject("{\"a\":1}}"));
+        assertFalse(JsonScanner.isObject("{\"a\":truex}"));
+        assertFalse(JsonScanner.isObject("{\"a\":nul}"));
+    }
+
+    @Test
+    public void shouldRejectMalformedObjects() {
+        assertFalse(JsonScanner.isObject("{\"a\":1,}"));
+        assertFalse(JsonScanner.isObject("{,}"));
+        assertFalse(JsonScanner.isObject("{\"a\"}"));
+        assertFalse(JsonScanner.isObject("{\"a\" 1}"));
+        assertFalse(JsonScanner.isObject("{a:1}"));
+        assertFalse(JsonScanner.isObject("{'a':1}"));
+        assertFalse(JsonScanner.isObject("{\"a\":[1,]}"));
+        assertFalse(JsonScanner.isObject("{\"a\":[1 2]}"));
+    }
+
+    @Test
+    public void shouldRejectTruncatedInput() {
+        String json = "{\"a\":[1,{\"b\":\"c\\u0041\"},-2.5e3],\"d\":true}";
+        assertTrue(JsonScanner.isObject(json));
+        for (int length = 0; length < json.length(); length++) {
+            assertFalse(json.substring(0, length), JsonScanner.isObject(json.substring(0, length)));
+        }
+    }
+
+    /**
+     * @return - object with the given number of nested levels, counting the outer object
+     */
+    private static String nested(int depth) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 1; i < depth; i++) {
+            json.append("\"a\":{");
+        }
+        for (int i = 0; i < depth; i++) {
+            json.append('}');
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.devicehive.json.adapters;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Response;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.annotations.SerializedName;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResponseAdapterFactoryTest {
+
+    private final Gson gson = GsonFactory.createGson();
+    private final JsonParser parser = new JsonParser();
+
+    @Test
+    public void shouldWriteEncodedBodySameAsReflectiveAdapter() {
+        assertSameJson(Response.newBuilder().withCorrelationId("c1").withLast(false), new ErrorResponse("single"));
+        assertSameJson(Response.newBuilder().withCorrelationIds(Arrays.asList("c1", "c2")), new ErrorResponse("multicast"));
+        assertSameJson(Response.newBuilder().withCorrelationId(null), new ErrorResponse(null));
+    }
+
+    @Test
+    public void shouldWriteAllSerializedFieldsOfResponse() {
+        Set<String> expected = Arrays.stream(Response.class.getDeclaredFields())
+                .filter(field -> !Modifier.isTransient(field.getModifiers()) && !Modifier.isStatic(field.getModifiers()))
+                .map(this::jsonName)
+                .collect(Collectors.toSet());
+
+        ErrorResponse body = new ErrorResponse("fields");
+        Response response = Response.newBuilder()
+                .withEncodedBody(body, gson.toJson(body, Body.class))
+                .withCorrelationIds(Arrays.asList("c1", "c2"))
+                .buildSuccess();
+        JsonObject json = parser.parse(gson.toJson(response)).getAsJsonObject();
+
+        assertEquals(expected, json.entrySet().stream().map(Map.Entry::getKey).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void shouldReadBackResponseWithEncodedBody() {
+        ErrorResponse body = new ErrorResponse("round trip");
+        Response response = Response.newBuilder()
+                .withEncodedBody(body, gson.toJson(body, Body.class))
+                .withCorrelationIds(Arrays.asList("c1", "c2"))
+                .withLast(false)
+                .buildFailed(404);
+
+        Response read = gson.fromJson(gson.toJson(response), Response.class);
+
+        assertEquals(response, read);
+        assertEquals("round trip", read.getBody().cast(ErrorResponse.class).getMessage());
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2")), new HashSet<>(read.getCorrelationIds()));
+    }
+
+    private void assertSameJson(Response.Builder<Body> builder, ErrorResponse body) {
+        Response reflective = builder.withBody(body).buildFailed(500);
+        Response encoded = builder.withEncodedBody(body, gson.toJson(body, Body.class)).buildFailed(500);
+
+        assertEquals(parser.parse(gson.toJson(reflective)), parser.parse(gson.toJson(encoded)));
+    }
+
+    private String jsonName(Field field) {
+        SerializedName name = field.getAnnotation(SerializedName.class);
+        return name != null ? name.value() : field.getName();
+    }
+}
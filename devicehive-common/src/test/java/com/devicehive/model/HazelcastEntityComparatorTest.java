@@ -0,0 +1,120 @@
+package com.devicehive.model;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.enums.SearchableField;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HazelcastEntityComparatorTest {
+
+    private final DeviceCommand c1 = command(1, 30, "b", "Pending");
+    private final DeviceCommand c2 = command(2, 10, "c", "Completed");
+    private final DeviceCommand c3 = command(3, 20, "a", null);
+
+    @Test
+    public void shouldSortOldestFirstByDefault() {
+        assertEquals(Arrays.asList(2L, 3L, 1L), ids(new HazelcastEntityComparator(), c1, c2, c3));
+    }
+
+    @Test
+    public void shouldSortByEachFieldInBothOrders() {
+        assertEquals(Arrays.asList(2L, 3L, 1L), ids(comparator(SearchableField.TIMESTAMP, false), c1, c2, c3));
+        assertEquals(Arrays.asList(1L, 3L, 2L), ids(comparator(SearchableField.TIMESTAMP, true), c1, c2, c3));
+        assertEquals(Arrays.asList(3L, 1L, 2L), ids(comparator(SearchableField.COMMAND, false), c1, c2, c3));
+        assertEquals(Arrays.asList(2L, 1L, 3L), ids(comparator(SearchableField.COMMAND, true), c1, c2, c3));
+        // entries without status come first in ascending order
+        assertEquals(Arrays.asList(3L, 2L, 1L), ids(comparator(SearchableField.STATUS, false), c1, c2, c3));
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(comparator(SearchableField.STATUS, true), c1, c2, c3));
+
+        DeviceNotification n1 = notification(1, 10, "b");
+        DeviceNotification n2 = notification(2, 20, "a");
+        assertEquals(Arrays.asList(2L, 1L), ids(comparator(SearchableField.NOTIFICATION, false), n1, n2));
+        assertEquals(Arrays.asList(1L, 2L), ids(comparator(SearchableField.NOTIFICATION, true), n1, n2));
+    }
+
+    @Test
+    public void shouldOrderTiesByTimestampAndId() {
+        DeviceCommand first = command(5, 10, "same", "Pending");
+        DeviceCommand second = command(4, 20, "same", "Pending");
+        DeviceCommand third = command(6, 20, "same", "Pending");
+
+        assertEquals(Arrays.asList(5L, 4L, 6L), ids(comparator(SearchableField.COMMAND, false), third, second, first));
+        assertEquals(Arrays.asList(6L, 4L, 5L), ids(comparator(SearchableField.COMMAND, true), first, third, second));
+        assertEquals(Arrays.asList(5L, 4L, 6L), ids(comparator(SearchableField.STATUS, false), second, third, first));
+        assertEquals(Arrays.asList(5L, 4L, 6L), ids(comparator(SearchableField.TIMESTAMP, false), third, first, second));
+        assertEquals(Arrays.asList(6L, 4L, 5L), ids(comparator(SearchableField.TIMESTAMP, true), second, first, third));
+    }
+
+    @Test
+    public void shouldTreatFieldsOfOtherTypeAsMissing() {
+        DeviceNotification notification = notification(7, 10, "n");
+
+        assertTrue(comparator(SearchableField.COMMAND, false).compareEntities(notification, c1) < 0);
+        assertTrue(comparator(SearchableField.NOTIFICATION, false).compareEntities(c1, notification) < 0);
+    }
+
+    @Test
+    public void shouldCompareMapEntriesByValue() {
+        HazelcastEntityComparator comparator = new HazelcastEntityComparator();
+
+        assertTrue(comparator.compare(new AbstractMap.SimpleEntry<>(c1.getHazelcastKey(), c1),
+                new AbstractMap.SimpleEntry<>(c2.getHazelcastKey(), c2)) > 0);
+    }
+
+    private static HazelcastEntityComparator comparator(SearchableField field, boolean descending) {
+        return new HazelcastEntityComparator(field, descending);
+    }
+
+    private static List<Long> ids(HazelcastEntityComparator comparator, HazelcastEntity... entities) {
+        List<HazelcastEntity> sorted = new ArrayList<>(Arrays.asList(entities));
+        sorted.sort(comparator::compareEntities);
+        return sorted.stream().map(entity -> entity.getHazelcastKey().getId()).collect(Collectors.toList());
+    }
+
+    private static DeviceCommand command(long id, long timestamp, String name, String status) {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(id);
+        command.setDeviceId("device");
+        command.setCommand(name);
+        command.setStatus(status);
+        command.setTimestamp(new Date(timestamp));
+        return command;
+    }
+
+    private static DeviceNotification notification(long id, long timestamp, String name) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId("device");
+        notification.setNotification(name);
+        notification.setTimestamp(new Date(timestamp));
+        return notification;
+    }
+}
@@ -0,0 +1,72 @@
+package com.devicehive.model.history;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.devicehive.model.history.DeviceHistoryTest.history;
+import static com.devicehive.model.history.DeviceHistoryTest.notification;
+import static com.devicehive.model.history.DeviceHistoryTest.timestamps;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DeviceHistoryAppenderTest {
+
+    @Test
+    public void shouldCreateHistoryCompleteAfterOldestAppendedEntry() {
+        Map.Entry<String, DeviceHistory> entry = new AbstractMap.SimpleEntry<>("device", null);
+
+        new DeviceHistoryAppender(Arrays.asList(notification(1, 30, "n"), notification(2, 20, "n")), 10).process(entry);
+
+        DeviceHistory history = entry.getValue();
+        assertEquals(Arrays.asList(20L, 30L), timestamps(history.getEntries()));
+        // entries stored before the first appended one may be missing
+        assertNull(history.find(null, 19, 0, 0));
+        assertEquals(Collections.singletonList(30L), timestamps(history.find(null, 20, 0, 0)));
+    }
+
+    @Test
+    public void shouldAppendToExistingHistory() {
+        Map.Entry<String, DeviceHistory> entry = new AbstractMap.SimpleEntry<>("device", history(3, 10, 20));
+
+        new DeviceHistoryAppender(Arrays.asList(notification(3, 40, "n"), notification(4, 30, "n")), 3).process(entry);
+
+        assertEquals(Arrays.asList(20L, 30L, 40L), timestamps(entry.getValue().getEntries()));
+        assertNull(entry.getValue().find(null, 5, 0, 0));
+    }
+
+    @Test
+    public void shouldApplySameChangeOnBackup() {
+        Map.Entry<String, DeviceHistory> primary = new AbstractMap.SimpleEntry<>("device", history(10, 10));
+        Map.Entry<String, DeviceHistory> backup = new AbstractMap.SimpleEntry<>("device", history(10, 10));
+        DeviceHistoryAppender appender = new DeviceHistoryAppender(notification(2, 20, "n"), 10);
+
+        appender.process(primary);
+        appender.getBackupProcessor().processBackup(backup);
+
+        assertEquals(timestamps(primary.getValue().getEntries()), timestamps(backup.getValue().getEntries()));
+    }
+}
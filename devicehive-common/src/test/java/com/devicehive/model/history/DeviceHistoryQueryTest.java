@@ -0,0 +1,78 @@
+package com.devicehive.model.history;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.devicehive.model.history.DeviceHistoryTest.history;
+import static com.devicehive.model.history.DeviceHistoryTest.notification;
+import static com.devicehive.model.history.DeviceHistoryTest.timestamps;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DeviceHistoryQueryTest {
+
+    @Test
+    public void shouldReturnNullWithoutHistory() {
+        Map.Entry<String, DeviceHistory> entry = new AbstractMap.SimpleEntry<>("device", null);
+
+        assertNull(new DeviceHistoryQuery(null, 0, 0, 0).process(entry));
+    }
+
+    @Test
+    public void shouldReturnNullIfHistoryIsIncomplete() {
+        Map.Entry<String, DeviceHistory> entry = new AbstractMap.SimpleEntry<>("device", history(2, 10, 20, 30));
+
+        assertNull(new DeviceHistoryQuery(null, 5, 0, 0).process(entry));
+    }
+
+    @Test
+    public void shouldReturnFoundEntries() {
+        DeviceHistory history = history(10, 10, 20, 30);
+        history.add(notification(4, 40, "other"));
+        Map.Entry<String, DeviceHistory> entry = new AbstractMap.SimpleEntry<>("device", history);
+
+        DeviceHistory found = (DeviceHistory) new DeviceHistoryQuery(null, 10, 25, 0).process(entry);
+        assertEquals(Arrays.asList(30L, 40L), timestamps(found.getEntries()));
+
+        found = (DeviceHistory) new DeviceHistoryQuery(Collections.singleton("n"), 0, 0, 2).process(entry);
+        assertEquals(Arrays.asList(10L, 20L), timestamps(found.getEntries()));
+
+        found = (DeviceHistory) new DeviceHistoryQuery(Collections.emptyList(), 40, 0, 0).process(entry);
+        assertEquals(Collections.emptyList(), found.getEntries());
+    }
+
+    @Test
+    public void shouldNotChangeHistory() {
+        DeviceHistory history = history(10, 10, 20);
+        Map.Entry<String, DeviceHistory> entry = new AbstractMap.SimpleEntry<>("device", history);
+
+        new DeviceHistoryQuery(null, 0, 0, 1).process(entry);
+
+        assertEquals(history, entry.getValue());
+        assertEquals(Arrays.asList(10L, 20L), timestamps(history.getEntries()));
+    }
+}
@@ -0,0 +1,143 @@
+package com.devicehive.model.history;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DeviceHistoryTest {
+
+    @Test
+    public void shouldKeepEntriesOrderedByTimestamp() {
+        DeviceHistory history = new DeviceHistory(10, 0);
+        for (long timestamp : new long[] {50, 10, 40, 20, 30, 20}) {
+            history.add(notification(timestamp, timestamp, "n"));
+        }
+        // second entry with id 20 is the same entry, a different one with the same timestamp is added
+        history.add(notification(60, 20, "n"));
+
+        assertEquals(Arrays.asList(10L, 20L, 20L, 30L, 40L, 50L), timestamps(history.getEntries()));
+    }
+
+    @Test
+    public void shouldReturnEntriesAfterTimestamp() {
+        DeviceHistory history = history(10, 10, 20, 20, 30, 40);
+
+        assertEquals(Arrays.asList(30L, 40L), timestamps(history.find(null, 20, 0, 0)));
+        assertEquals(Arrays.asList(10L, 20L, 20L, 30L, 40L), timestamps(history.find(null, 0, 0, 0)));
+        assertEquals(Arrays.asList(10L, 20L), timestamps(history.find(null, 5, 0, 2)));
+        assertEquals(Collections.emptyList(), history.find(null, 40, 0, 0));
+        assertEquals(Collections.emptyList(), history.find(null, 100, 0, 0));
+    }
+
+    @Test
+    public void shouldSkipExpiredEntriesAndOtherNames() {
+        DeviceHistory history = new DeviceHistory(10, 0);
+        history.add(notification(1, 10, "temperature"));
+        history.add(notification(2, 20, "humidity"));
+        history.add(notification(3, 30, "temperature"));
+        history.add(notification(4, 40, "pressure"));
+
+        assertEquals(Arrays.asList(30L, 40L), timestamps(history.find(null, 0, 25, 0)));
+        assertEquals(Arrays.asList(10L, 30L),
+                timestamps(history.find(Collections.singleton("temperature"), 0, 0, 0)));
+        assertEquals(Arrays.asList(20L, 40L),
+                timestamps(history.find(Arrays.asList("humidity", "pressure"), 0, 0, 0)));
+        assertEquals(Collections.singletonList(10L),
+                timestamps(history.find(Collections.singleton("temperature"), 0, 0, 1)));
+        assertEquals(Collections.singletonList(40L), timestamps(history.find(Collections.emptyList(), 30, 0, 0)));
+    }
+
+    @Test
+    public void shouldReplaceEntryWithSameKey() {
+        DeviceHistory history = new DeviceHistory(10, 0);
+        history.add(command(1, 10, "Pending"));
+        history.add(command(2, 10, "Pending"));
+        history.add(command(1, 10, "Completed"));
+
+        assertEquals(2, history.getEntries().size());
+        assertEquals("Completed", ((DeviceCommand) history.getEntries().get(0)).getStatus());
+        assertEquals("Pending", ((DeviceCommand) history.getEntries().get(1)).getStatus());
+    }
+
+    @Test
+    public void shouldDropOldestEntriesOverCapacity() {
+        DeviceHistory history = history(3, 10, 20, 30);
+        history.add(notification(40, 40, "n"));
+        history.add(notification(5, 5, "n"));
+
+        assertEquals(Arrays.asList(20L, 30L, 40L), timestamps(history.getEntries()));
+        // 10 and 5 are dropped, so the history is complete only for polls starting at 10 or later
+        assertNull(history.find(null, 9, 0, 0));
+        assertEquals(Arrays.asList(20L, 30L, 40L), timestamps(history.find(null, 10, 0, 0)));
+    }
+
+    @Test
+    public void shouldNotAnswerBeforeCreation() {
+        DeviceHistory history = new DeviceHistory(10, 100);
+        history.add(notification(1, 110, "n"));
+
+        assertNull(history.find(null, 99, 0, 0));
+        assertEquals(Collections.singletonList(110L), timestamps(history.find(null, 100, 0, 0)));
+    }
+
+    static DeviceHistory history(int capacity, long... timestamps) {
+        DeviceHistory history = new DeviceHistory(capacity, 0);
+        for (long timestamp : timestamps) {
+            history.add(notification(history.getEntries().size() + 1, timestamp, "n"));
+        }
+        return history;
+    }
+
+    static DeviceNotification notification(long id, long timestamp, String name) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId("device");
+        notification.setNotification(name);
+        notification.setTimestamp(new Date(timestamp));
+        return notification;
+    }
+
+    static DeviceCommand command(long id, long timestamp, String status) {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(id);
+        command.setDeviceId("device");
+        command.setCommand("c");
+        command.setStatus(status);
+        command.setTimestamp(new Date(timestamp));
+        return command;
+    }
+
+    static List<Long> timestamps(List<HazelcastEntity> entities) {
+        return entities.stream().map(DeviceHistory::timestampOf).collect(Collectors.toList());
+    }
+}
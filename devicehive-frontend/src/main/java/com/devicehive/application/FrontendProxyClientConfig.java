@@ -27,6 +27,7 @@ import com.devicehive.proxy.client.WebSocketKafkaProxyClient;
 import com.devicehive.proxy.config.WebSocketKafkaProxyConfig;
 import com.devicehive.shim.api.client.RpcClient;
 import com.devicehive.shim.kafka.client.RequestResponseMatcher;
+import com.devicehive.shim.kafka.client.SerialLaneExecutor;
 import com.google.gson.Gson;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -55,6 +56,18 @@ public class FrontendProxyClientConfig {
     @Value("${response.topic.perfix}")
     private String responseTopicPrefix;
 
+    @Value("${rpc.client.request-timeout-ms:60000}")
+    private long requestTimeoutMillis;
+
+    @Value("${rpc.client.callback.threads:0}")
+    private int callbackThreads;
+
+    @Value("${rpc.client.callback.queue-size:10000}")
+    private int callbackQueueSize;
+
+    @Value("${rpc.client.callback.overflow-policy:block}")
+    private String callbackOverflowPolicy;
+
     @PostConstruct
     private void init() {
         try {
@@ -74,9 +87,12 @@ public class FrontendProxyClientConfig {
         }
     }
 
-    @Bean
+    @Bean(destroyMethod = "shutdown")
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        int threads = callbackThreads > 0 ? callbackThreads : Runtime.getRuntime().availableProcessors();
+        SerialLaneExecutor callbackExecutor = new SerialLaneExecutor(threads, callbackQueueSize,
+                SerialLaneExecutor.OverflowPolicy.valueOf(callbackOverflowPolicy.toUpperCase()));
+        return new RequestResponseMatcher(requestTimeoutMillis, callbackExecutor);
     }
 
     @Bean
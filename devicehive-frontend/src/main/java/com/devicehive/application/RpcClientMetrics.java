@@ -0,0 +1,64 @@
+package com.devicehive.application;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.kafka.client.ProducerMetrics;
+import com.devicehive.shim.kafka.client.RequestResponseMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes state of the RPC request/response matcher and batching of the request producers on the metrics endpoint
+ */
+@Component
+public class RpcClientMetrics implements PublicMetrics {
+
+    private RequestResponseMatcher requestResponseMatcher;
+    private ProducerMetrics producerMetrics;
+
+    @Autowired
+    public void setRequestResponseMatcher(RequestResponseMatcher requestResponseMatcher) {
+        this.requestResponseMatcher = requestResponseMatcher;
+    }
+
+    @Autowired(required = false)
+    public void setProducerMetrics(ProducerMetrics producerMetrics) {
+        this.producerMetrics = producerMetrics;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("rpc.client.callbacks", requestResponseMatcher.getCallbackCount()));
+        metrics.add(new Metric<>("rpc.client.subscriptions", requestResponseMatcher.getSubscriptionCount()));
+        metrics.add(new Metric<>("rpc.client.expired", requestResponseMatcher.getExpiredCount()));
+        if (producerMetrics != null) {
+            producerMetrics.snapshot().forEach((name, value) -> metrics.add(new Metric<>("rpc.client.producer." + name, value)));
+        }
+        return metrics;
+    }
+}
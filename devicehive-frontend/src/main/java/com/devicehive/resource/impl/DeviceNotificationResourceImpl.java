@@ -273,4 +273,67 @@ public class DeviceNotificationResourceImpl implements DeviceNotificationResourc
             }
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertBatch(String deviceId, List<DeviceNotificationWrapper> notificationsSubmit,
+                            @Suspended final AsyncResponse asyncResponse) {
+        logger.debug("DeviceNotification batch insert requested: {} notifications", notificationsSubmit != null ? notificationsSubmit.size() : 0);
+        if (notificationsSubmit == null || notificationsSubmit.isEmpty()
+                || notificationsSubmit.stream().anyMatch(n -> n == null || n.getNotification() == null)) {
+            logger.warn("DeviceNotification batch insert proceed with error. BAD REQUEST: notifications are required.");
+            ErrorResponse errorResponseEntity = new ErrorResponse(BAD_REQUEST.getStatusCode(),
+                    Messages.INVALID_REQUEST_PARAMETERS);
+            asyncResponse.resume(ResponseFactory.response(BAD_REQUEST, errorResponseEntity));
+            return;
+        }
+        if (notificationsSubmit.size() > notificationService.getMaxBatchSize()) {
+            logger.warn("DeviceNotification batch insert proceed with error. BAD REQUEST: {} notifications exceed the limit of {}.",
+                    notificationsSubmit.size(), notificationService.getMaxBatchSize());
+            ErrorResponse errorResponseEntity = new ErrorResponse(BAD_REQUEST.getStatusCode(),
+                    String.format(Messages.NOTIFICATION_BATCH_TOO_LARGE, notificationsSubmit.size(), notificationService.getMaxBatchSize()));
+            asyncResponse.resume(ResponseFactory.response(BAD_REQUEST, errorResponseEntity));
+            return;
+        }
+        notificationsSubmit.forEach(hiveValidator::validate);
+        if (notificationsSubmit.stream().map(DeviceNotificationWrapper::getNotification).anyMatch(name ->
+                SpecialNotifications.DEVICE_UPDATE.equals(name) || SpecialNotifications.DEVICE_ADD.equals(name))) {
+            logger.warn("DeviceNotification batch insert proceed with error. FORBIDDEN: it's not allow to insert special notification.");
+            ErrorResponse errorCode = new ErrorResponse(FORBIDDEN.getStatusCode(), Messages.FORBIDDEN_INSERT_SPECIAL_NOTIFICATION);
+            asyncResponse.resume(ResponseFactory.response(FORBIDDEN, errorCode));
+            return;
+        }
+        DeviceVO device = deviceService.findById(deviceId);
+        if (device == null) {
+            logger.warn("DeviceNotification batch insert proceed with error. NOT FOUND: device {} not found.", deviceId);
+            asyncResponse.resume(ResponseFactory.response(NOT_FOUND, new ErrorResponse(NOT_FOUND.getStatusCode(),
+                    String.format(Messages.DEVICE_NOT_FOUND, deviceId))));
+            return;
+        }
+        if (device.getNetworkId() == null) {
+            logger.warn("DeviceNotification batch insert proceed with error. FORBIDDEN: Device {} is not connected to network.", deviceId);
+            asyncResponse.resume(ResponseFactory.response(FORBIDDEN, new ErrorResponse(FORBIDDEN.getStatusCode(),
+                    String.format(Messages.DEVICE_IS_NOT_CONNECTED_TO_NETWORK, deviceId))));
+            return;
+        }
+        List<DeviceNotification> toInsert = new ArrayList<>(notificationsSubmit.size());
+        notificationsSubmit.forEach(n -> toInsert.add(notificationService.convertWrapperToNotification(n, device)));
+        notificationService.insertBatch(toInsert, device)
+                .thenAccept(inserted -> {
+                    logger.debug("Device notification batch insert proceed successfully. deviceId = {}, notifications = {}",
+                            deviceId, inserted.size());
+                    asyncResponse.resume(ResponseFactory.response(
+                            Response.Status.CREATED,
+                            inserted,
+                            JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT));
+                })
+                .exceptionally(e -> {
+                    logger.warn("Device notification batch insert failed for device with deviceId = {}.", deviceId);
+                    ErrorResponse errorCode = new ErrorResponse(INTERNAL_SERVER_ERROR.getStatusCode(), String.format(Messages.NOTIFICATION_INSERT_FAILED, deviceId));
+                    asyncResponse.resume(ResponseFactory.response(INTERNAL_SERVER_ERROR, errorCode));
+                    return null;
+                });
+    }
 }
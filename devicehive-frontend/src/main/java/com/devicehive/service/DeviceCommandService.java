@@ -27,6 +27,7 @@ import com.devicehive.model.eventbus.events.CommandUpdateEvent;
 import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
 import com.devicehive.model.rpc.*;
 import com.devicehive.model.wrappers.DeviceCommandWrapper;
+import com.devicehive.service.exception.BackendException;
 import com.devicehive.service.helpers.LongIdGenerator;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.service.time.TimestampService;
@@ -49,7 +50,6 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 @Service
 public class DeviceCommandService {
@@ -143,38 +143,36 @@ public class DeviceCommandService {
             final BiConsumer<DeviceCommand, Long> callback) throws InterruptedException {
 
         final Long subscriptionId = idGenerator.generate();
-        Collection<CompletableFuture<Collection<DeviceCommand>>> futures = devices.stream()
-                .map(device -> new CommandSubscribeRequest(subscriptionId, device, filter, timestamp, returnUpdated, limit))
-                .map(subscribeRequest -> {
-                    CompletableFuture<Collection<DeviceCommand>> future = new CompletableFuture<>();
-                    Consumer<Response> responseConsumer = response -> {
-                        Action resAction = response.getBody().getAction();
-                        if (resAction.equals(Action.COMMAND_SUBSCRIBE_RESPONSE)) {
-                            future.complete(response.getBody().cast(CommandSubscribeResponse.class).getCommands());
-                            requestResponseMatcher.addSubscription(subscriptionId, response.getCorrelationId());
-                        } else if (!returnUpdated && resAction.equals(Action.COMMAND_EVENT)) {
-                            callback.accept(response.getBody().cast(CommandEvent.class).getCommand(), subscriptionId);
-                        } else if (returnUpdated && resAction.equals(Action.COMMANDS_UPDATE_EVENT)) {
-                            callback.accept(response.getBody().cast(CommandsUpdateEvent.class).getDeviceCommand(), subscriptionId);
-                        } else {
-                            logger.warn("Unknown action received from backend {}", resAction);
-                        }
-                    };
-                    Request request = Request.newBuilder()
-                            .withBody(subscribeRequest)
-                            .withPartitionKey(subscribeRequest.getDevice())
-                            .withSingleReply(false)
-                            .build();
-                    rpcClient.call(request, responseConsumer);
-                    return future;
-                }).collect(Collectors.toList());
+        if (devices.isEmpty()) {
+            return Pair.of(subscriptionId, CompletableFuture.completedFuture(Collections.emptyList()));
+        }
+        // all devices share one subscription stream, so that the backend keeps a single subscriber per subscription id
+        CommandSubscribeRequest subscribeRequest = new CommandSubscribeRequest(subscriptionId, devices, filter, timestamp, returnUpdated, limit);
+        CompletableFuture<List<DeviceCommand>> future = new CompletableFuture<>();
+        Consumer<Response> responseConsumer = response -> {
+            Action resAction = response.getBody().getAction();
+            if (resAction.equals(Action.COMMAND_SUBSCRIBE_RESPONSE)) {
+                future.complete(new ArrayList<>(response.getBody().cast(CommandSubscribeResponse.class).getCommands()));
+                requestResponseMatcher.addSubscription(subscriptionId, response.getCorrelationId());
+            } else if (!returnUpdated && resAction.equals(Action.COMMAND_EVENT)) {
+                callback.accept(response.getBody().cast(CommandEvent.class).getCommand(), subscriptionId);
+            } else if (returnUpdated && resAction.equals(Action.COMMANDS_UPDATE_EVENT)) {
+                callback.accept(response.getBody().cast(CommandsUpdateEvent.class).getDeviceCommand(), subscriptionId);
+            } else if (resAction.equals(Action.ERROR_RESPONSE)) {
+                future.completeExceptionally(new BackendException(
+                        response.getBody().cast(ErrorResponse.class).getMessage(), response.getErrorCode()));
+            } else {
+                logger.warn("Unknown action received from backend {}", resAction);
+            }
+        };
+        Request request = Request.newBuilder()
+                .withBody(subscribeRequest)
+                // a bulk subscription has no single device, its id spreads bulk subscribes over partitions and workers
+                .withPartitionKey(devices.size() == 1 ? devices.iterator().next() : String.valueOf(subscriptionId))
+                .withSingleReply(false)
+                .build();
+        rpcClient.call(request, responseConsumer);
 
-        CompletableFuture<List<DeviceCommand>> future = CompletableFuture
-                .allOf(futures.toArray(new CompletableFuture[futures.size()]))
-                .thenApply(v -> futures.stream()
-                        .map(CompletableFuture::join)
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList()));
         return Pair.of(subscriptionId, future);
     }
 
@@ -217,6 +215,41 @@ public class DeviceCommandService {
     }
 
     public CompletableFuture<Void> update(DeviceCommand cmd, DeviceCommandWrapper commandWrapper) {
+        applyUpdate(cmd, commandWrapper);
+
+        // backend stores the command once and notifies both command and command update subscribers
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        rpcClient.call(Request.newBuilder()
+                .withBody(new CommandUpdateRequest(cmd))
+                .withPartitionKey(cmd.getDeviceId())
+                .build(), new ResponseConsumer(future));
+        return future.thenApply(response -> null);
+    }
+
+    /**
+     * Updates commands of one device in a single request to backend.
+     *
+     * @param updates - pairs of saved command and its update
+     */
+    public CompletableFuture<Void> updateBatch(List<Pair<DeviceCommand, DeviceCommandWrapper>> updates) {
+        List<DeviceCommand> commands = new ArrayList<>(updates.size());
+        updates.forEach(update -> {
+            applyUpdate(update.getLeft(), update.getRight());
+            commands.add(update.getLeft());
+        });
+        if (commands.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        rpcClient.call(Request.newBuilder()
+                .withBody(new CommandBatchUpdateRequest(commands))
+                .withPartitionKey(commands.get(0).getDeviceId())
+                .build(), new ResponseConsumer(future));
+        return future.thenApply(response -> null);
+    }
+
+    private void applyUpdate(DeviceCommand cmd, DeviceCommandWrapper commandWrapper) {
         hiveValidator.validate(commandWrapper);
         if (cmd == null) {
             throw new NoSuchElementException("Command not found");
@@ -244,16 +277,6 @@ public class DeviceCommandService {
         }
 
         hiveValidator.validate(cmd);
-
-        CompletableFuture<Response> commandUpdateFuture = new CompletableFuture<>();
-        rpcClient.call(Request.newBuilder()
-                .withBody(new CommandUpdateRequest(cmd))
-                .build(), new ResponseConsumer(commandUpdateFuture));
-        CompletableFuture<Response> commandsUpdateFuture = new CompletableFuture<>();
-        rpcClient.call(Request.newBuilder()
-                .withBody(new CommandsUpdateRequest(cmd))
-                .build(), new ResponseConsumer(commandsUpdateFuture));
-        return CompletableFuture.allOf(commandUpdateFuture, commandsUpdateFuture).thenApply(response -> null);
     }
 
     private DeviceCommand convertWrapperToCommand(DeviceCommandWrapper commandWrapper, DeviceVO device, UserVO user) {
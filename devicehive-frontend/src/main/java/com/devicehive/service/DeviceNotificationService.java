@@ -25,7 +25,9 @@ import com.devicehive.model.SpecialNotifications;
 import com.devicehive.model.eventbus.Filter;
 import com.devicehive.model.eventbus.events.NotificationEvent;
 import com.devicehive.model.rpc.*;
+import com.devicehive.model.websockets.InsertNotification;
 import com.devicehive.model.wrappers.DeviceNotificationWrapper;
+import com.devicehive.service.exception.BackendException;
 import com.devicehive.service.helpers.LongIdGenerator;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.service.time.TimestampService;
@@ -40,13 +42,13 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 @Service
 public class DeviceNotificationService {
@@ -59,6 +61,9 @@ public class DeviceNotificationService {
     private final LongIdGenerator idGenerator;
     private final RequestResponseMatcher requestResponseMatcher;
 
+    @Value("${notification.batch.max-size:100}")
+    private int maxBatchSize;
+
     @Autowired
     public DeviceNotificationService(TimestampService timestampService,
                                      RpcClient rpcClient,
@@ -126,6 +131,33 @@ public class DeviceNotificationService {
         return future.thenApply(r -> r.getBody().cast(NotificationInsertResponse.class).getDeviceNotification());
     }
 
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sends notifications of one device to backend in a single request, they are stored and published together.
+     * Callers are expected to reject batches larger than {@link #getMaxBatchSize()} before calling this.
+     */
+    public CompletableFuture<List<InsertNotification>> insertBatch(final List<DeviceNotification> notifications,
+                                                                   final DeviceVO device) {
+        notifications.forEach(hiveValidator::validate);
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        rpcClient.call(Request.newBuilder()
+                .withBody(new NotificationBatchInsertRequest(notifications))
+                .withPartitionKey(device.getDeviceId())
+                .build(), new ResponseConsumer(future));
+
+        return future.thenApply(r -> {
+            NotificationBatchInsertResponse response = r.getBody().cast(NotificationBatchInsertResponse.class);
+            List<InsertNotification> inserted = new ArrayList<>(response.getIds().size());
+            for (int i = 0; i < response.getIds().size(); i++) {
+                inserted.add(new InsertNotification(response.getIds().get(i), response.getTimestamps().get(i)));
+            }
+            return inserted;
+        });
+    }
+
     public Pair<Long, CompletableFuture<List<DeviceNotification>>> subscribe(
             final Set<String> devices,
             final Filter filter,
@@ -133,40 +165,36 @@ public class DeviceNotificationService {
             final BiConsumer<DeviceNotification, Long> callback) {
 
         final Long subscriptionId = idGenerator.generate();
-        Set<NotificationSubscribeRequest> subscribeRequests = devices.stream()
-                .map(device -> new NotificationSubscribeRequest(subscriptionId, device, filter, timestamp))
-                .collect(Collectors.toSet());
-        Collection<CompletableFuture<Collection<DeviceNotification>>> futures = new ArrayList<>();
-        for (NotificationSubscribeRequest sr : subscribeRequests) {
-            CompletableFuture<Collection<DeviceNotification>> future = new CompletableFuture<>();
-            Consumer<Response> responseConsumer = response -> {
-                Action resAction = response.getBody().getAction();
-                if (resAction.equals(Action.NOTIFICATION_SUBSCRIBE_RESPONSE)) {
-                    NotificationSubscribeResponse r = response.getBody().cast(NotificationSubscribeResponse.class);
-                    requestResponseMatcher.addSubscription(subscriptionId, response.getCorrelationId());
-                    future.complete(r.getNotifications());
-                } else if (resAction.equals(Action.NOTIFICATION_EVENT)) {
-                    NotificationEvent event = response.getBody().cast(NotificationEvent.class);
-                    callback.accept(event.getNotification(), subscriptionId);
-                } else {
-                    logger.warn("Unknown action received from backend {}", resAction);
-                }
-            };
-            futures.add(future);
-            Request request = Request.newBuilder()
-                    .withBody(sr)
-                    .withPartitionKey(sr.getDevice())
-                    .withSingleReply(false)
-                    .build();
-            rpcClient.call(request, responseConsumer);
+        if (devices.isEmpty()) {
+            return Pair.of(subscriptionId, CompletableFuture.completedFuture(Collections.emptyList()));
         }
+        // all devices share one subscription stream, so that the backend keeps a single subscriber per subscription id
+        NotificationSubscribeRequest subscribeRequest = new NotificationSubscribeRequest(subscriptionId, devices, filter, timestamp);
+        CompletableFuture<List<DeviceNotification>> future = new CompletableFuture<>();
+        Consumer<Response> responseConsumer = response -> {
+            Action resAction = response.getBody().getAction();
+            if (resAction.equals(Action.NOTIFICATION_SUBSCRIBE_RESPONSE)) {
+                NotificationSubscribeResponse r = response.getBody().cast(NotificationSubscribeResponse.class);
+                requestResponseMatcher.addSubscription(subscriptionId, response.getCorrelationId());
+                future.complete(new ArrayList<>(r.getNotifications()));
+            } else if (resAction.equals(Action.NOTIFICATION_EVENT)) {
+                NotificationEvent event = response.getBody().cast(NotificationEvent.class);
+                callback.accept(event.getNotification(), subscriptionId);
+            } else if (resAction.equals(Action.ERROR_RESPONSE)) {
+                future.completeExceptionally(new BackendException(
+                        response.getBody().cast(ErrorResponse.class).getMessage(), response.getErrorCode()));
+            } else {
+                logger.warn("Unknown action received from backend {}", resAction);
+            }
+        };
+        Request request = Request.newBuilder()
+                .withBody(subscribeRequest)
+                // a bulk subscription has no single device, its id spreads bulk subscribes over partitions and workers
+                .withPartitionKey(devices.size() == 1 ? devices.iterator().next() : String.valueOf(subscriptionId))
+                .withSingleReply(false)
+                .build();
+        rpcClient.call(request, responseConsumer);
 
-        CompletableFuture<List<DeviceNotification>> future = CompletableFuture
-                .allOf(futures.toArray(new CompletableFuture[futures.size()]))
-                .thenApply(v -> futures.stream()
-                        .map(CompletableFuture::join)
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList()));
         return Pair.of(subscriptionId, future);
     }
 
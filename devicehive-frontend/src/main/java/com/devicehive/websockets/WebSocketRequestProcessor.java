@@ -113,6 +113,9 @@ public class WebSocketRequestProcessor {
             case NOTIFICATION_INSERT:
                 notificationHandlers.processNotificationInsert(deviceId, request, session);
                 break;
+            case NOTIFICATION_INSERT_BATCH:
+                notificationHandlers.processNotificationInsertBatch(deviceId, request, session);
+                break;
             case NOTIFICATION_SUBSCRIBE:
                 notificationHandlers.processNotificationSubscribe(deviceId, request, session);
                 break;
@@ -131,6 +134,9 @@ public class WebSocketRequestProcessor {
             case COMMAND_UPDATE:
                 commandHandlers.processCommandUpdate(request, session);
                 break;
+            case COMMAND_UPDATE_BATCH:
+                commandHandlers.processCommandUpdateBatch(request, session);
+                break;
             case COMMAND_SUBSCRIBE:
                 commandHandlers.processCommandSubscribe(deviceId, request, session);
                 break;
@@ -228,6 +234,7 @@ public class WebSocketRequestProcessor {
         CONFIGURATION_PUT("configuration/put"),
         CONFIGURATION_DELETE("configuration/delete"),
         NOTIFICATION_INSERT("notification/insert"),
+        NOTIFICATION_INSERT_BATCH("notification/insertBatch"),
         NOTIFICATION_SUBSCRIBE("notification/subscribe"),
         NOTIFICATION_UNSUBSCRIBE("notification/unsubscribe"),
         NOTIFICATION_GET("notification/get"),
@@ -236,6 +243,7 @@ public class WebSocketRequestProcessor {
         COMMAND_SUBSCRIBE("command/subscribe"),
         COMMAND_UNSUBSCRIBE("command/unsubscribe"),
         COMMAND_UPDATE("command/update"),
+        COMMAND_UPDATE_BATCH("command/updateBatch"),
         COMMAND_GET("command/get"),
         COMMAND_LIST("command/list"),
         SUBSCRIPTION_LIST("subscription/list"),
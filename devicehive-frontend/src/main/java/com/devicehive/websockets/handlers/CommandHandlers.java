@@ -36,6 +36,7 @@ import com.devicehive.vo.DeviceVO;
 import com.devicehive.vo.UserVO;
 import com.devicehive.websockets.converters.WebSocketResponse;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -244,6 +245,64 @@ public class CommandHandlers {
                 });
     }
 
+    /**
+     * Updates several commands of one device. Request contains deviceId and commands array, each element of it
+     * holds commandId and command update, same as in command/update.
+     */
+    @HiveWebsocketAuth
+    @PreAuthorize("isAuthenticated() and hasPermission(null, 'UPDATE_DEVICE_COMMAND')")
+    public void processCommandUpdateBatch(JsonObject request, WebSocketSession session) {
+        HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        String deviceId = gson.fromJson(request.get(DEVICE_ID), String.class);
+        JsonArray updates = request.has(COMMANDS) && request.get(COMMANDS).isJsonArray()
+                ? request.getAsJsonArray(COMMANDS)
+                : new JsonArray();
+
+        logger.debug("command/updateBatch requested for session: {}. Device ID: {}. Commands: {}", session, deviceId, updates.size());
+        if (updates.size() == 0) {
+            throw new HiveException(Messages.COMMAND_ID_REQUIRED, SC_BAD_REQUEST);
+        }
+
+        if (deviceId == null) {
+            throw new HiveException(DEVICE_ID_REQUIRED, SC_BAD_REQUEST);
+        }
+
+        DeviceVO deviceVO = deviceService.findByIdWithPermissionsCheck(deviceId, principal);
+        if (deviceVO == null) {
+            throw new HiveException(String.format(DEVICE_NOT_FOUND, deviceId), SC_NOT_FOUND);
+        }
+
+        List<Long> ids = new ArrayList<>(updates.size());
+        List<DeviceCommandWrapper> commandUpdates = new ArrayList<>(updates.size());
+        updates.forEach(element -> {
+            JsonObject update = element.getAsJsonObject();
+            Long id = gson.fromJson(update.get(COMMAND_ID), Long.class);
+            if (id == null) {
+                throw new HiveException(Messages.COMMAND_ID_REQUIRED, SC_BAD_REQUEST);
+            }
+            ids.add(id);
+            commandUpdates.add(gson.fromJson(update.getAsJsonObject(COMMAND), DeviceCommandWrapper.class));
+        });
+
+        List<CompletableFuture<Optional<DeviceCommand>>> found = new ArrayList<>(ids.size());
+        ids.forEach(id -> found.add(commandService.findOne(id, deviceVO.getDeviceId())));
+        CompletableFuture.allOf(found.toArray(new CompletableFuture[found.size()]))
+                .thenCompose(v -> {
+                    List<Pair<DeviceCommand, DeviceCommandWrapper>> toUpdate = new ArrayList<>(ids.size());
+                    for (int i = 0; i < ids.size(); i++) {
+                        final Long id = ids.get(i);
+                        DeviceCommand command = found.get(i).join()
+                                .orElseThrow(() -> new HiveException(String.format(COMMAND_NOT_FOUND, id), SC_NOT_FOUND));
+                        toUpdate.add(Pair.of(command, commandUpdates.get(i)));
+                    }
+                    return commandService.updateBatch(toUpdate);
+                }).thenAccept(whenUpdated -> {
+                    logger.debug("command/updateBatch proceed successfully for session: {}. Device ID: {}. Commands: {}",
+                            session, deviceId, ids.size());
+                    clientHandler.sendMessage(request, new WebSocketResponse(), session);
+                });
+    }
+
     @HiveWebsocketAuth
     @PreAuthorize("isAuthenticated() and hasPermission(#deviceId, 'GET_DEVICE_COMMAND')")
     public void processCommandGet(String deviceId, JsonObject request, WebSocketSession session)  {
@@ -226,6 +226,54 @@ public class NotificationHandlers {
                 });
     }
 
+    @HiveWebsocketAuth
+    @PreAuthorize("isAuthenticated() and hasPermission(#deviceId, 'CREATE_DEVICE_NOTIFICATION')")
+    public void processNotificationInsertBatch(String deviceId, JsonObject request, WebSocketSession session) {
+        HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        List<DeviceNotificationWrapper> notificationsSubmit = gson.fromJson(request.get(Constants.NOTIFICATIONS),
+                JsonTypes.NOTIFICATION_WRAPPER_LIST_TYPE);
+
+        logger.debug("notification/insertBatch requested. Session {}. Device ID {}", session, deviceId);
+        if (isEmpty(notificationsSubmit) || notificationsSubmit.stream().anyMatch(n -> n == null || n.getNotification() == null)) {
+            logger.error("notification/insertBatch proceed with error. Bad notifications: notification is required.");
+            throw new HiveException(Messages.NOTIFICATION_REQUIRED, SC_BAD_REQUEST);
+        }
+
+        if (notificationsSubmit.size() > notificationService.getMaxBatchSize()) {
+            logger.error("notification/insertBatch proceed with error. {} notifications exceed the limit of {}.",
+                    notificationsSubmit.size(), notificationService.getMaxBatchSize());
+            throw new HiveException(String.format(Messages.NOTIFICATION_BATCH_TOO_LARGE,
+                    notificationsSubmit.size(), notificationService.getMaxBatchSize()), SC_BAD_REQUEST);
+        }
+
+        if (deviceId == null) {
+            logger.error("notification/insertBatch proceed with error. Device ID should be provided");
+            throw new HiveException(Messages.DEVICE_ID_REQUIRED, SC_BAD_REQUEST);
+        }
+
+        final DeviceVO device = deviceService.findByIdWithPermissionsCheck(deviceId, principal);
+
+        if (device == null) {
+            logger.error("notification/insertBatch proceed with error. No device with Device ID = {} found.", deviceId);
+            throw new HiveException(String.format(Messages.DEVICE_NOT_FOUND, deviceId), SC_NOT_FOUND);
+        }
+
+        if (device.getNetworkId() == null) {
+            logger.error("notification/insertBatch. No network specified for device with Device ID = {}", deviceId);
+            throw new HiveException(String.format(Messages.DEVICE_IS_NOT_CONNECTED_TO_NETWORK, deviceId), SC_FORBIDDEN);
+        }
+        List<DeviceNotification> messages = new ArrayList<>(notificationsSubmit.size());
+        notificationsSubmit.forEach(n -> messages.add(notificationService.convertWrapperToNotification(n, device)));
+
+        notificationService.insertBatch(messages, device)
+                .thenAccept(inserted -> {
+                    logger.debug("notification/insertBatch proceed successfully. Session {}. Device ID {}", session, deviceId);
+                    WebSocketResponse response = new WebSocketResponse();
+                    response.addValue(NOTIFICATIONS, inserted, NOTIFICATION_TO_DEVICE);
+                    clientHandler.sendMessage(request, response, session);
+                });
+    }
+
     @HiveWebsocketAuth
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'GET_DEVICE_NOTIFICATION')")
     public void processNotificationGet(JsonObject request, WebSocketSession session) {
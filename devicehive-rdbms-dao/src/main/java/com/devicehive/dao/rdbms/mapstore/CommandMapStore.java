@@ -0,0 +1,90 @@
+package com.devicehive.dao.rdbms.mapstore;
+
+/*
+ * #%L
+ * DeviceHive Dao RDBMS Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Write-behind store of COMMANDS-MAP into device_command table. Command updates replace the stored row.
+ */
+public class CommandMapStore extends HazelcastEntityMapStore<DeviceCommand> {
+
+    public CommandMapStore() {
+        super("device_command");
+    }
+
+    @Override
+    protected String columns() {
+        return "id, device_id, network_id, command, timestamp, last_updated, user_id, parameters, lifetime, status, "
+                + "result, is_updated";
+    }
+
+    @Override
+    protected String columnDefinitions() {
+        return "id BIGINT NOT NULL, device_id VARCHAR(48) NOT NULL, network_id BIGINT NULL, command TEXT NOT NULL, "
+                + "timestamp TIMESTAMP NOT NULL, last_updated TIMESTAMP NULL, user_id BIGINT NULL, "
+                + "parameters TEXT NULL, lifetime INT NULL, status TEXT NULL, result TEXT NULL, is_updated BOOLEAN NULL";
+    }
+
+    @Override
+    protected boolean isUpdatable() {
+        return true;
+    }
+
+    @Override
+    protected void bind(PreparedStatement statement, DeviceCommand command) throws SQLException {
+        statement.setLong(1, command.getId());
+        statement.setString(2, command.getDeviceId());
+        statement.setObject(3, command.getNetworkId(), Types.BIGINT);
+        statement.setString(4, command.getCommand());
+        setTimestamp(statement, 5, command.getTimestamp());
+        setTimestamp(statement, 6, command.getLastUpdated());
+        statement.setObject(7, command.getUserId(), Types.BIGINT);
+        statement.setString(8, json(command.getParameters()));
+        statement.setObject(9, command.getLifetime(), Types.INTEGER);
+        statement.setString(10, command.getStatus());
+        statement.setString(11, json(command.getResult()));
+        statement.setObject(12, command.getIsUpdated(), Types.BOOLEAN);
+    }
+
+    @Override
+    protected DeviceCommand read(ResultSet resultSet) throws SQLException {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(resultSet.getLong("id"));
+        command.setDeviceId(resultSet.getString("device_id"));
+        command.setNetworkId((Long) resultSet.getObject("network_id"));
+        command.setCommand(resultSet.getString("command"));
+        command.setTimestamp(getTimestamp(resultSet, "timestamp"));
+        command.setLastUpdated(getTimestamp(resultSet, "last_updated"));
+        command.setUserId((Long) resultSet.getObject("user_id"));
+        command.setParameters(json(resultSet.getString("parameters")));
+        command.setLifetime((Integer) resultSet.getObject("lifetime"));
+        command.setStatus(resultSet.getString("status"));
+        command.setResult(json(resultSet.getString("result")));
+        command.setIsUpdated((Boolean) resultSet.getObject("is_updated"));
+        return command;
+    }
+}
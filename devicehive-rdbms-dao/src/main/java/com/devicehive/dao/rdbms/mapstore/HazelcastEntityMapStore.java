@@ -0,0 +1,399 @@
+package com.devicehive.dao.rdbms.mapstore;
+
+/*
+ * #%L
+ * DeviceHive Dao RDBMS Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.model.HazelcastEntityKey;
+import com.devicehive.model.JsonStringWrapper;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.MapLoaderLifecycleSupport;
+import com.hazelcast.core.MapStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Hazelcast map store persisting notifications or commands into a table partitioned by day.
+ * Intended for write-behind mode (write-delay-seconds > 0 in map-store config of members), so entries are written
+ * with one JDBC batch per map store flush instead of one statement per insert.
+ *
+ * Rows go to child tables named {table}_yyyyMMdd (UTC), which inherit the parent table and are created on first
+ * write of the day. The parent table is created by the store itself on first connection, so databases of
+ * deployments without map stores don't get it. Child tables older than retention-days are dropped at that moment.
+ * Removal of entries from the map does not delete rows, retention of the table is driven by days only.
+ *
+ * Properties of map-store config: jdbc.url, jdbc.username, jdbc.password, retention-days (0 keeps all days)
+ * and load-window-hours (entries newer than that are loaded into the map on start, 0 loads entries on demand only).
+ * Members need devicehive-rdbms-dao and the JDBC driver on classpath.
+ */
+public abstract class HazelcastEntityMapStore<T extends HazelcastEntity>
+        implements MapStore<HazelcastEntityKey, T>, MapLoaderLifecycleSupport {
+    private static final Logger logger = LoggerFactory.getLogger(HazelcastEntityMapStore.class);
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final String table;
+    private final Set<String> partitions = new HashSet<>();
+    private boolean tableCreated;
+
+    private String url;
+    private String username;
+    private String password;
+    private int retentionDays;
+    private int loadWindowHours;
+    private Connection connection;
+
+    protected HazelcastEntityMapStore(String table) {
+        this.table = table;
+    }
+
+    @Override
+    public void init(HazelcastInstance hazelcastInstance, Properties properties, String mapName) {
+        this.url = properties.getProperty("jdbc.url");
+        this.username = properties.getProperty("jdbc.username");
+        this.password = properties.getProperty("jdbc.password");
+        this.retentionDays = Integer.parseInt(properties.getProperty("retention-days", "0"));
+        this.loadWindowHours = Integer.parseInt(properties.getProperty("load-window-hours", "0"));
+        logger.info("Map store of {} initialized. Table: {}, retention days: {}, load window hours: {}",
+                mapName, table, retentionDays, loadWindowHours);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("Unable to close connection of {} map store", table, e);
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * @return - comma separated columns of the table, in order of {@link #bind(PreparedStatement, HazelcastEntity)}
+     */
+    protected abstract String columns();
+
+    /**
+     * @return - comma separated definitions of the columns, for the parent table
+     */
+    protected abstract String columnDefinitions();
+
+    /**
+     * Binds all columns of the entity, starting with parameter 1.
+     */
+    protected abstract void bind(PreparedStatement statement, T entity) throws SQLException;
+
+    protected abstract T read(ResultSet resultSet) throws SQLException;
+
+    /**
+     * @return - true if stored entities may already exist in the table and have to be updated,
+     * false if entities are never updated and every store is an insert
+     */
+    protected boolean isUpdatable() {
+        return false;
+    }
+
+    @Override
+    public void store(HazelcastEntityKey key, T value) {
+        Map<HazelcastEntityKey, T> entries = new HashMap<>();
+        entries.put(key, value);
+        storeAll(entries);
+    }
+
+    @Override
+    public synchronized void storeAll(Map<HazelcastEntityKey, T> entries) {
+        Map<String, List<T>> byPartition = new TreeMap<>();
+        entries.values().forEach(entity -> {
+            if (entity.getTimestamp() == null) {
+                // timestamp picks the partition and is a part of the primary key
+                logger.warn("Entry {} without timestamp is not stored into {}", entity.getHazelcastKey(), table);
+                return;
+            }
+            byPartition.computeIfAbsent(partitionOf(entity.getTimestamp()), p -> new ArrayList<>()).add(entity);
+        });
+        if (byPartition.isEmpty()) {
+            return;
+        }
+        try {
+            Connection conn = connection();
+            for (String partition : byPartition.keySet()) {
+                createPartition(conn, partition);
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, List<T>> entry : byPartition.entrySet()) {
+                    write(conn, entry.getKey(), entry.getValue());
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reset();
+            throw new IllegalStateException("Unable to store " + entries.size() + " entries into " + table, e);
+        }
+    }
+
+    /**
+     * Updates entities first if they may exist, and inserts those no row was updated for.
+     */
+    void write(Connection conn, String partition, List<T> entities) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(columnCount(), "?"));
+        List<T> inserts = entities;
+        if (isUpdatable()) {
+            inserts = new ArrayList<>();
+            try (PreparedStatement statement = conn.prepareStatement("UPDATE " + partition + " SET (" + columns()
+                    + ") = (" + placeholders + ") WHERE device_id = ? AND timestamp = ? AND id = ?")) {
+                for (T entity : entities) {
+                    bind(statement, entity);
+                    bindKey(statement, columnCount() + 1, entity);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        inserts.add(entities.get(i));
+                    }
+                }
+            }
+        }
+        if (inserts.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = conn.prepareStatement(
+                "INSERT INTO " + partition + " (" + columns() + ") VALUES (" + placeholders + ")")) {
+            for (T entity : inserts) {
+                bind(statement, entity);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Rows are kept in the database after removal from the map, see retention-days.
+     */
+    @Override
+    public void delete(HazelcastEntityKey key) {
+    }
+
+    @Override
+    public void deleteAll(Collection<HazelcastEntityKey> keys) {
+    }
+
+    @Override
+    public synchronized T load(HazelcastEntityKey key) {
+        try (PreparedStatement statement = connection().prepareStatement(
+                "SELECT " + columns() + " FROM " + table + " WHERE device_id = ? AND id = ?")) {
+            statement.setString(1, key.getDeviceId());
+            statement.setLong(2, key.getId());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? read(resultSet) : null;
+            }
+        } catch (SQLException e) {
+            reset();
+            throw new IllegalStateException("Unable to load " + key + " from " + table, e);
+        }
+    }
+
+    @Override
+    public synchronized Map<HazelcastEntityKey, T> loadAll(Collection<HazelcastEntityKey> keys) {
+        Map<HazelcastEntityKey, T> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        try {
+            Connection conn = connection();
+            String[] deviceIds = keys.stream().map(HazelcastEntityKey::getDeviceId).distinct().toArray(String[]::new);
+            Long[] ids = keys.stream().map(HazelcastEntityKey::getId).toArray(Long[]::new);
+            // device_id leads the primary key of partitions, so their indexes are used
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT " + columns() + " FROM " + table + " WHERE device_id = ANY (?) AND id = ANY (?)")) {
+                statement.setArray(1, conn.createArrayOf("varchar", deviceIds));
+                statement.setArray(2, conn.createArrayOf("bigint", ids));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        T entity = read(resultSet);
+                        if (keys.contains(entity.getHazelcastKey())) {
+                            result.put(entity.getHazelcastKey(), entity);
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            reset();
+            throw new IllegalStateException("Unable to load " + keys.size() + " entries from " + table, e);
+        }
+    }
+
+    @Override
+    public synchronized Iterable<HazelcastEntityKey> loadAllKeys() {
+        if (loadWindowHours <= 0) {
+            return null;
+        }
+        List<HazelcastEntityKey> keys = new ArrayList<>();
+        try (PreparedStatement statement = connection().prepareStatement(
+                "SELECT id, device_id FROM " + table + " WHERE timestamp >= ?")) {
+            long from = System.currentTimeMillis() - loadWindowHours * 3600_000L;
+            statement.setTimestamp(1, new Timestamp(from), utc());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    keys.add(new HazelcastEntityKey(resultSet.getLong(1), resultSet.getString(2)));
+                }
+            }
+        } catch (SQLException e) {
+            reset();
+            throw new IllegalStateException("Unable to load keys from " + table, e);
+        }
+        logger.info("Loading {} entries of last {} hours from {}", keys.size(), loadWindowHours, table);
+        return keys;
+    }
+
+    private void createPartition(Connection conn, String partition) throws SQLException {
+        if (partitions.contains(partition)) {
+            return;
+        }
+        LocalDate day = LocalDate.parse(partition.substring(table.length() + 1), DAY_FORMAT);
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + partition + " ("
+                    + "CHECK (timestamp >= '" + day + "' AND timestamp < '" + day.plusDays(1) + "'), "
+                    + "PRIMARY KEY (device_id, timestamp, id)) INHERITS (" + table + ")");
+        }
+        partitions.add(partition);
+        if (retentionDays > 0) {
+            dropExpiredPartitions(conn, day.minusDays(retentionDays));
+        }
+    }
+
+    private void dropExpiredPartitions(Connection conn, LocalDate before) throws SQLException {
+        List<String> expired = new ArrayList<>();
+        try (PreparedStatement statement = conn.prepareStatement("SELECT c.relname FROM pg_inherits i "
+                + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String partition = resultSet.getString(1);
+                    if (partition.compareTo(table + "_" + before.format(DAY_FORMAT)) < 0) {
+                        expired.add(partition);
+                    }
+                }
+            }
+        }
+        try (Statement statement = conn.createStatement()) {
+            for (String partition : expired) {
+                statement.execute("DROP TABLE IF EXISTS " + partition);
+                partitions.remove(partition);
+                logger.info("Dropped expired partition {}", partition);
+            }
+        }
+    }
+
+    String partitionOf(Date timestamp) {
+        LocalDate day = Instant.ofEpochMilli(timestamp.getTime()).atZone(ZoneOffset.UTC).toLocalDate();
+        return table + "_" + day.format(DAY_FORMAT);
+    }
+
+    private void bindKey(PreparedStatement statement, int index, T entity) throws SQLException {
+        statement.setString(index, entity.getDeviceId());
+        setTimestamp(statement, index + 1, entity.getTimestamp());
+        statement.setLong(index + 2, entity.getHazelcastKey().getId());
+    }
+
+    private int columnCount() {
+        return columns().split(",").length;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection(url, username, password);
+            if (!tableCreated) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (" + columnDefinitions() + ")");
+                }
+                tableCreated = true;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Drops connection after a failure, so the next call of the store reconnects.
+     */
+    private void reset() {
+        destroy();
+    }
+
+    private static Calendar utc() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    }
+
+    protected static void setTimestamp(PreparedStatement statement, int index, Date date) throws SQLException {
+        if (date != null) {
+            statement.setTimestamp(index, new Timestamp(date.getTime()), utc());
+        } else {
+            statement.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    protected static Date getTimestamp(ResultSet resultSet, String column) throws SQLException {
+        Timestamp timestamp = resultSet.getTimestamp(column, utc());
+        return timestamp != null ? new Date(timestamp.getTime()) : null;
+    }
+
+    protected static String json(JsonStringWrapper wrapper) {
+        return wrapper != null ? wrapper.getJsonString() : null;
+    }
+
+    protected static JsonStringWrapper json(String value) {
+        return value != null ? new JsonStringWrapper(value) : null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.devicehive.dao.rdbms.mapstore;
+
+/*
+ * #%L
+ * DeviceHive Dao RDBMS Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Write-behind store of NOTIFICATIONS-MAP into device_notification table. Notifications are never updated.
+ */
+public class NotificationMapStore extends HazelcastEntityMapStore<DeviceNotification> {
+
+    public NotificationMapStore() {
+        super("device_notification");
+    }
+
+    @Override
+    protected String columns() {
+        return "id, device_id, network_id, notification, timestamp, parameters";
+    }
+
+    @Override
+    protected String columnDefinitions() {
+        return "id BIGINT NOT NULL, device_id VARCHAR(48) NOT NULL, network_id BIGINT NULL, "
+                + "notification TEXT NOT NULL, timestamp TIMESTAMP NOT NULL, parameters TEXT NULL";
+    }
+
+    @Override
+    protected void bind(PreparedStatement statement, DeviceNotification notification) throws SQLException {
+        statement.setLong(1, notification.getId());
+        statement.setString(2, notification.getDeviceId());
+        statement.setObject(3, notification.getNetworkId(), Types.BIGINT);
+        statement.setString(4, notification.getNotification());
+        setTimestamp(statement, 5, notification.getTimestamp());
+        statement.setString(6, json(notification.getParameters()));
+    }
+
+    @Override
+    protected DeviceNotification read(ResultSet resultSet) throws SQLException {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(resultSet.getLong("id"));
+        notification.setDeviceId(resultSet.getString("device_id"));
+        notification.setNetworkId((Long) resultSet.getObject("network_id"));
+        notification.setNotification(resultSet.getString("notification"));
+        notification.setTimestamp(getTimestamp(resultSet, "timestamp"));
+        notification.setParameters(json(resultSet.getString("parameters")));
+        return notification;
+    }
+}
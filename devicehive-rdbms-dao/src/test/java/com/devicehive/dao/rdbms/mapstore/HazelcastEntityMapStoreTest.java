@@ -0,0 +1,189 @@
+package com.devicehive.dao.rdbms.mapstore;
+
+/*
+ * #%L
+ * DeviceHive Dao RDBMS Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HazelcastEntityMapStoreTest {
+
+    @Test
+    public void shouldNamePartitionsByUtcDay() {
+        NotificationMapStore store = new NotificationMapStore();
+
+        assertEquals("device_notification_20170301", store.partitionOf(new Date(1488326400000L)));
+        assertEquals("device_notification_20170301", store.partitionOf(new Date(1488412799999L)));
+        assertEquals("device_notification_20170302", store.partitionOf(new Date(1488412800000L)));
+        assertEquals("device_command_20161231", new CommandMapStore().partitionOf(new Date(1483228799000L)));
+    }
+
+    @Test
+    public void shouldInsertNotificationsWithoutUpdates() throws SQLException {
+        FakeConnection fake = new FakeConnection(Collections.emptySet());
+
+        new NotificationMapStore().write(fake.connection(), "device_notification_20170301",
+                Arrays.asList(notification(1), notification(2)));
+
+        assertEquals(Collections.singletonList("INSERT"), fake.statementTypes());
+        assertEquals(Arrays.asList(1L, 2L), fake.batchIds("INSERT"));
+    }
+
+    @Test
+    public void shouldInsertOnlyCommandsWhichWereNotUpdated() throws SQLException {
+        FakeConnection fake = new FakeConnection(new HashSet<>(Arrays.asList(2L, 4L)));
+
+        new CommandMapStore().write(fake.connection(), "device_command_20170301",
+                Arrays.asList(command(1), command(2), command(3), command(4)));
+
+        assertEquals(Arrays.asList("UPDATE", "INSERT"), fake.statementTypes());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), fake.batchIds("UPDATE"));
+        assertEquals(Arrays.asList(1L, 3L), fake.batchIds("INSERT"));
+        assertTrue(fake.sql("UPDATE").endsWith("WHERE device_id = ? AND timestamp = ? AND id = ?"));
+        // key parameters follow the columns
+        Map<Integer, Object> first = fake.batches.get("UPDATE").get(0);
+        assertEquals("device", first.get(13));
+        assertEquals(1L, first.get(15));
+    }
+
+    @Test
+    public void shouldSkipInsertIfAllCommandsWereUpdated() throws SQLException {
+        FakeConnection fake = new FakeConnection(new HashSet<>(Arrays.asList(1L, 2L)));
+
+        new CommandMapStore().write(fake.connection(), "device_command_20170301",
+                Arrays.asList(command(1), command(2)));
+
+        assertEquals(Collections.singletonList("UPDATE"), fake.statementTypes());
+    }
+
+    @Test
+    public void shouldSkipEntriesWithoutTimestamp() {
+        DeviceNotification notification = notification(1);
+        notification.setTimestamp(null);
+
+        // nothing is left to store, so the store doesn't even connect
+        new NotificationMapStore().storeAll(Collections.singletonMap(notification.getHazelcastKey(), notification));
+    }
+
+    private static DeviceNotification notification(long id) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId("device");
+        notification.setNotification("notification");
+        notification.setTimestamp(new Date(1488326400000L + id));
+        return notification;
+    }
+
+    private static DeviceCommand command(long id) {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(id);
+        command.setDeviceId("device");
+        command.setCommand("command");
+        command.setTimestamp(new Date(1488326400000L + id));
+        return command;
+    }
+
+    /**
+     * Records batches of prepared statements. Updates change a row only if its id is one of existing ids.
+     */
+    private static class FakeConnection {
+        private final Set<Long> existing;
+        private final Map<String, String> statements = new LinkedHashMap<>();
+        private final Map<String, List<Map<Integer, Object>>> batches = new LinkedHashMap<>();
+
+        FakeConnection(Set<Long> existing) {
+            this.existing = existing;
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (method, args) -> {
+                if ("prepareStatement".equals(method)) {
+                    return statement((String) args[0]);
+                }
+                throw new UnsupportedOperationException(method);
+            });
+        }
+
+        private PreparedStatement statement(String sql) {
+            String type = sql.substring(0, sql.indexOf(' '));
+            statements.put(type, sql);
+            List<Map<Integer, Object>> recorded = new ArrayList<>();
+            batches.put(type, recorded);
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (method.startsWith("set")) {
+                    parameters.put((Integer) args[0], method.equals("setNull") ? null : args[1]);
+                } else if ("addBatch".equals(method)) {
+                    recorded.add(new TreeMap<>(parameters));
+                    parameters.clear();
+                } else if ("executeBatch".equals(method)) {
+                    return recorded.stream()
+                            .mapToInt(batch -> "INSERT".equals(type) || existing.contains(batch.get(1)) ? 1 : 0)
+                            .toArray();
+                } else if (!"close".equals(method)) {
+                    throw new UnsupportedOperationException(method);
+                }
+                return null;
+            });
+        }
+
+        List<String> statementTypes() {
+            return new ArrayList<>(statements.keySet());
+        }
+
+        String sql(String type) {
+            return statements.get(type);
+        }
+
+        List<Long> batchIds(String type) {
+            return batches.get(type).stream().map(batch -> (Long) batch.get(1)).collect(Collectors.toList());
+        }
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type},
+                (proxy, method, args) -> handler.handle(method.getName(), args));
+    }
+}
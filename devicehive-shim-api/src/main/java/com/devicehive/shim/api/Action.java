@@ -39,6 +39,7 @@ public enum Action {
     COMMAND_INSERT_REQUEST,
     COMMAND_INSERT_RESPONSE,
     COMMAND_UPDATE_REQUEST,
+    // legacy, sent only by frontends of earlier releases
     COMMANDS_UPDATE_REQUEST,
     COMMAND_SUBSCRIBE_REQUEST,
     COMMAND_SUBSCRIBE_RESPONSE,
@@ -70,5 +71,10 @@ public enum Action {
     LIST_SUBSCRIBE_RESPONSE,
 
     DEVICE_CREATE_REQUEST,
-    DEVICE_CREATE_RESPONSE
+    DEVICE_CREATE_RESPONSE,
+
+    // ordinals are sent over the wire, so new actions are added at the end only
+    NOTIFICATION_BATCH_INSERT_REQUEST,
+    NOTIFICATION_BATCH_INSERT_RESPONSE,
+    COMMAND_BATCH_UPDATE_REQUEST
 }
@@ -140,6 +140,11 @@ public class Request {
             return this;
         }
 
+        public Builder<T> withCorrelationId(String correlationId) {
+            this.correlationId = correlationId;
+            return this;
+        }
+
         public Builder<T> withPartitionKey(String key) {
             this.partitionKey = key;
             return this;
@@ -22,29 +22,58 @@ package com.devicehive.shim.api;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 @SuppressWarnings("unused")
 public class Response {
 
-    @SerializedName("b")
+    /**
+     * JSON names of the fields, shared with adapters writing responses without reflection
+     */
+    public static final String BODY = "b";
+    public static final String CORRELATION_ID = "cId";
+    public static final String CORRELATION_IDS = "cIds";
+    public static final String LAST = "l";
+    public static final String ERROR_CODE = "err";
+    public static final String FAILED = "fld";
+
+    @SerializedName(BODY)
     private Body body;
 
-    @SerializedName("cId")
+    @SerializedName(CORRELATION_ID)
     private String correlationId;
 
-    @SerializedName("l")
+    /**
+     * Correlation ids of all recipients of a multicast response. When set, the same body is delivered
+     * to the callback of each correlation id on the receiving side and {@link #correlationId} is not used.
+     */
+    @SerializedName(CORRELATION_IDS)
+    private List<String> correlationIds;
+
+    @SerializedName(LAST)
     private boolean last;
 
-    @SerializedName("err")
+    @SerializedName(ERROR_CODE)
     private int errorCode;
 
-    @SerializedName("fld")
+    @SerializedName(FAILED)
     private boolean failed;
 
-    private Response(Body body, String correlationId, boolean last, int errorCode, boolean failed) {
+    /**
+     * Pre-encoded JSON of {@link #body}. Lets the same body be serialized once and reused
+     * for every recipient of an event, since only the correlation id differs between them.
+     */
+    private transient String encodedBody;
+
+    private Response(Body body, String encodedBody, String correlationId, List<String> correlationIds,
+                     boolean last, int errorCode, boolean failed) {
         this.body = body;
+        this.encodedBody = encodedBody;
         this.correlationId = correlationId;
+        this.correlationIds = correlationIds;
         this.last = last;
         this.errorCode = errorCode;
         this.failed = failed;
@@ -58,6 +87,18 @@ public class Response {
         return correlationId;
     }
 
+    public String getEncodedBody() {
+        return encodedBody;
+    }
+
+    public List<String> getCorrelationIds() {
+        return correlationIds;
+    }
+
+    public boolean isMulticast() {
+        return correlationIds != null && !correlationIds.isEmpty();
+    }
+
     public boolean isLast() {
         return last;
     }
@@ -83,12 +124,13 @@ public class Response {
                 errorCode == response.errorCode &&
                 failed == response.failed &&
                 Objects.equals(body, response.body) &&
-                Objects.equals(correlationId, response.correlationId);
+                Objects.equals(correlationId, response.correlationId) &&
+                Objects.equals(correlationIds, response.correlationIds);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(body, correlationId, last, errorCode, failed);
+        return Objects.hash(body, correlationId, correlationIds, last, errorCode, failed);
     }
 
     @Override
@@ -96,6 +138,7 @@ public class Response {
         final StringBuilder sb = new StringBuilder("Response{");
         sb.append(", body=").append(body);
         sb.append(", correlationId='").append(correlationId).append('\'');
+        sb.append(", correlationIds=").append(correlationIds);
         sb.append(", last=").append(last);
         sb.append(", errorCode=").append(errorCode);
         sb.append(", failed=").append(failed);
@@ -111,28 +154,45 @@ public class Response {
         private T body;
         private boolean last = true;
         private String correlationId;
+        private List<String> correlationIds;
+        private String encodedBody;
 
         public Builder<T> withBody(T body) {
             this.body = body;
             return this;
         }
 
+        /**
+         * @param body - response body
+         * @param encodedBody - JSON representation of the body, which will be written as is instead of serializing the body
+         */
+        public Builder<T> withEncodedBody(T body, String encodedBody) {
+            this.body = body;
+            this.encodedBody = encodedBody;
+            return this;
+        }
+
         public Builder<T> withCorrelationId(String correlationId) {
             this.correlationId = correlationId;
             return this;
         }
 
+        public Builder<T> withCorrelationIds(Collection<String> correlationIds) {
+            this.correlationIds = new ArrayList<>(correlationIds);
+            return this;
+        }
+
         public Builder<T> withLast(boolean last) {
             this.last = last;
             return this;
         }
 
         public Response buildFailed(int errorCode) {
-            return new Response(body, correlationId, last, errorCode, true);
+            return new Response(body, encodedBody, correlationId, correlationIds, last, errorCode, true);
         }
 
         public Response buildSuccess() {
-            return new Response(body, correlationId, last, 0, false);
+            return new Response(body, encodedBody, correlationId, correlationIds, last, 0, false);
         }
 
     }
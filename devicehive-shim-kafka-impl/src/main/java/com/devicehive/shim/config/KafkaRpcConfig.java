@@ -21,6 +21,8 @@ package com.devicehive.shim.config;
  */
 
 
+import com.devicehive.shim.kafka.serializer.PayloadCompression;
+import com.devicehive.shim.kafka.serializer.WireFormat;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.beans.factory.annotation.Value;
@@ -85,6 +87,15 @@ public class KafkaRpcConfig {
     @Value("${buffer.memory:33554432}")
     private String bufferMemory;
 
+    @Value("${rpc.wire-format:json}")
+    private String wireFormat;
+
+    @Value("${rpc.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${rpc.compression.threshold:4096}")
+    private int compressionThreshold;
+
     public Properties producerProps() {
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -96,6 +107,12 @@ public class KafkaRpcConfig {
         return props;
     }
 
+    public Properties producerProps(ProducerProfile profile) {
+        Properties props = producerProps();
+        profile.apply(props);
+        return props;
+    }
+
     private Properties commonConsumerProps() {
         Properties props = new Properties();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -142,4 +159,12 @@ public class KafkaRpcConfig {
     public int getConnectionTimeout() {
         return connectionTimeout;
     }
+
+    public WireFormat getWireFormat() {
+        return WireFormat.valueOf(wireFormat.toUpperCase());
+    }
+
+    public PayloadCompression getPayloadCompression() {
+        return compressionEnabled ? new PayloadCompression(compressionThreshold) : PayloadCompression.DISABLED;
+    }
 }
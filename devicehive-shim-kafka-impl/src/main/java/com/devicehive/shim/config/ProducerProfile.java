@@ -0,0 +1,80 @@
+package com.devicehive.shim.config;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Properties;
+
+/**
+ * Batching presets of a request producer. The Kafka producer already groups records of the same partition into
+ * batches, presets only choose how long it waits for a batch to fill and whether batches are compressed.
+ */
+public enum ProducerProfile {
+
+    /**
+     * Keeps linger.ms, batch.size and compression from the common producer properties
+     */
+    CUSTOM(null, null, null),
+
+    /**
+     * Sends every record as soon as the sender thread is free, for commands and other interactive requests
+     */
+    LOW_LATENCY(0, 16384, "none"),
+
+    /**
+     * Waits a few milliseconds to fill larger compressed batches, for notification ingest
+     */
+    HIGH_THROUGHPUT(20, 262144, "lz4");
+
+    private final Integer lingerMs;
+    private final Integer batchSize;
+    private final String compressionType;
+
+    ProducerProfile(Integer lingerMs, Integer batchSize, String compressionType) {
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+    }
+
+    public void apply(Properties props) {
+        if (lingerMs != null) {
+            props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        }
+        if (batchSize != null) {
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        }
+        if (compressionType != null) {
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        }
+    }
+
+    /**
+     * @param name - profile name as written in properties, e.g. high-throughput
+     */
+    public static ProducerProfile fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -20,12 +20,16 @@ package com.devicehive.shim.config.client;
  * #L%
  */
 
+import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.client.RpcClient;
 import com.devicehive.shim.config.KafkaRpcConfig;
+import com.devicehive.shim.config.ProducerProfile;
 import com.devicehive.shim.config.server.KafkaRpcServerConfig;
 import com.devicehive.shim.kafka.client.KafkaRpcClient;
+import com.devicehive.shim.kafka.client.ProducerMetrics;
 import com.devicehive.shim.kafka.client.RequestResponseMatcher;
+import com.devicehive.shim.kafka.client.SerialLaneExecutor;
 import com.devicehive.shim.kafka.client.ServerResponseListener;
 import com.devicehive.shim.kafka.serializer.RequestSerializer;
 import com.devicehive.shim.kafka.serializer.ResponseSerializer;
@@ -45,6 +49,7 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.Base64;
+import java.util.EnumSet;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.UUID;
@@ -102,21 +107,48 @@ public class KafkaRpcClientConfig {
     @Value("${rpc.client.response-consumer.threads:3}")
     private int responseConsumerThreads;
 
-    @Bean
+    @Value("${rpc.client.request-timeout-ms:60000}")
+    private long requestTimeoutMillis;
+
+    @Value("${rpc.client.callback.threads:0}")
+    private int callbackThreads;
+
+    @Value("${rpc.client.callback.queue-size:10000}")
+    private int callbackQueueSize;
+
+    @Value("${rpc.client.callback.overflow-policy:block}")
+    private String callbackOverflowPolicy;
+
+    @Value("${rpc.client.callback.block-timeout-ms:1000}")
+    private long callbackBlockTimeoutMillis;
+
+    @Value("${rpc.client.producer.profile:low-latency}")
+    private String producerProfile;
+
+    @Value("${rpc.client.bulk-producer.enabled:true}")
+    private boolean bulkProducerEnabled;
+
+    @Value("${rpc.client.bulk-producer.profile:high-throughput}")
+    private String bulkProducerProfile;
+
+    @Bean(destroyMethod = "shutdown")
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        int threads = callbackThreads > 0 ? callbackThreads : Runtime.getRuntime().availableProcessors();
+        SerialLaneExecutor callbackExecutor = new SerialLaneExecutor(threads, callbackQueueSize,
+                SerialLaneExecutor.OverflowPolicy.valueOf(callbackOverflowPolicy.toUpperCase()), callbackBlockTimeoutMillis);
+        return new RequestResponseMatcher(requestTimeoutMillis, callbackExecutor);
     }
 
     @Bean
-    public Producer<String, Request> kafkaRequestProducer(Gson gson) {
-        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(), new RequestSerializer(gson));
+    public ProducerMetrics producerMetrics() {
+        return new ProducerMetrics();
     }
 
     @Profile("!test")
     @Bean(destroyMethod = "shutdown")
-    public RpcClient rpcClient(Producer<String, Request> requestProducer, RequestResponseMatcher responseMatcher,
-                               ServerResponseListener responseListener) {
-        KafkaRpcClient client = new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, requestProducer, responseMatcher, responseListener);
+    public RpcClient rpcClient(RequestResponseMatcher responseMatcher, ServerResponseListener responseListener,
+                               ProducerMetrics producerMetrics, Gson gson) {
+        KafkaRpcClient client = createClient(responseMatcher, responseListener, producerMetrics, gson);
         client.start();
         return client;
     }
@@ -128,19 +160,44 @@ public class KafkaRpcClientConfig {
     @Profile("test")
     @DependsOn("rpcServer")
     @Bean(destroyMethod = "shutdown")
-    public RpcClient testRpcClient(Producer<String, Request> requestProducer, RequestResponseMatcher responseMatcher,
-                               ServerResponseListener responseListener) {
-        KafkaRpcClient client = new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, requestProducer, responseMatcher, responseListener);
+    public RpcClient testRpcClient(RequestResponseMatcher responseMatcher, ServerResponseListener responseListener,
+                                   ProducerMetrics producerMetrics, Gson gson) {
+        KafkaRpcClient client = createClient(responseMatcher, responseListener, producerMetrics, gson);
         client.start();
         return client;
     }
 
+    /**
+     * Notification inserts, single and batch, go through a separate producer tuned for throughput,
+     * everything else is sent through the producer tuned for latency.
+     */
+    private KafkaRpcClient createClient(RequestResponseMatcher responseMatcher, ServerResponseListener responseListener,
+                                        ProducerMetrics producerMetrics, Gson gson) {
+        ProducerProfile profile = ProducerProfile.fromName(producerProfile);
+        Producer<String, Request> requestProducer = createProducer(profile, gson);
+        producerMetrics.register(profile.getName(), requestProducer);
+        if (!bulkProducerEnabled) {
+            return new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, requestProducer, responseMatcher, responseListener);
+        }
+
+        ProducerProfile bulkProfile = ProducerProfile.fromName(bulkProducerProfile);
+        Producer<String, Request> bulkProducer = createProducer(bulkProfile, gson);
+        producerMetrics.register("bulk-" + bulkProfile.getName(), bulkProducer);
+        return new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, requestProducer, bulkProducer,
+                EnumSet.of(Action.NOTIFICATION_INSERT_REQUEST, Action.NOTIFICATION_BATCH_INSERT_REQUEST), responseMatcher, responseListener);
+    }
+
+    private Producer<String, Request> createProducer(ProducerProfile profile, Gson gson) {
+        return new KafkaProducer<>(kafkaRpcConfig.producerProps(profile), new StringSerializer(),
+                new RequestSerializer(gson, kafkaRpcConfig.getWireFormat(), kafkaRpcConfig.getPayloadCompression()));
+    }
+
     @Bean
     public ServerResponseListener serverResponseListener(RequestResponseMatcher responseMatcher, Gson gson) {
         ExecutorService executor = Executors.newFixedThreadPool(responseConsumerThreads);
         Properties consumerProps = kafkaRpcConfig.clientConsumerProps();
         return new ServerResponseListener(RESPONSE_TOPIC, responseConsumerThreads,
-                responseMatcher, consumerProps, executor, new ResponseSerializer(gson));
+                responseMatcher, consumerProps, executor, new ResponseSerializer(gson, kafkaRpcConfig.getWireFormat(), kafkaRpcConfig.getPayloadCompression()));
     }
 
 }
@@ -26,6 +26,7 @@ import com.devicehive.shim.api.server.RpcServer;
 import com.devicehive.shim.kafka.serializer.RequestSerializer;
 import com.devicehive.shim.kafka.serializer.ResponseSerializer;
 import com.devicehive.shim.kafka.server.KafkaRpcServer;
+import com.devicehive.shim.kafka.server.PartitionedWorkerPool;
 import com.devicehive.shim.config.KafkaRpcConfig;
 import com.devicehive.shim.kafka.server.RequestConsumer;
 import com.devicehive.shim.kafka.server.ServerEvent;
@@ -33,6 +34,7 @@ import com.devicehive.shim.kafka.server.ServerEventHandler;
 import com.devicehive.shim.kafka.topic.KafkaTopicService;
 import com.google.gson.Gson;
 import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.common.serialization.StringSerializer;
@@ -68,9 +70,12 @@ public class KafkaRpcServerConfig {
     @Value("${rpc.server.request-consumer.threads:1}")
     private int consumerThreads;
 
-    @Value("${rpc.server.worker.threads:1}")
+    @Value("${rpc.server.worker.threads:0}")
     private int workerThreads;
 
+    @Value("${rpc.server.worker.partition-affine:false}")
+    private boolean partitionAffine;
+
     @Value("${lmax.buffer-size:1024}")
     private int bufferSize;
 
@@ -84,21 +89,11 @@ public class KafkaRpcServerConfig {
 
     @Bean(name = "server-producer")
     public Producer<String, Response> kafkaResponseProducer(Gson gson) {
-        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(), new ResponseSerializer(gson));
+        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(), new ResponseSerializer(gson, kafkaRpcConfig.getWireFormat(), kafkaRpcConfig.getPayloadCompression()));
     }
 
-    @Bean
-    public WorkerPool<ServerEvent> workerPool(@Qualifier("request-dispatcher") RequestHandler requestHandler,
-                                              @Qualifier("server-producer") Producer<String, Response> responseProducer) {
-        final ServerEventHandler[] workHandlers = new ServerEventHandler[workerThreads];
-        IntStream.range(0, workerThreads).forEach(
-                nbr -> workHandlers[nbr] = new ServerEventHandler(requestHandler, responseProducer)
-        );
-        final RingBuffer<ServerEvent> ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, bufferSize, getWaitStrategy());
-        final SequenceBarrier barrier = ringBuffer.newBarrier();
-        WorkerPool<ServerEvent> workerPool = new WorkerPool<>(ringBuffer, barrier, new FatalExceptionHandler(), workHandlers);
-        ringBuffer.addGatingSequences(workerPool.getWorkerSequences());
-        return workerPool;
+    private int getWorkerThreads() {
+        return workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
     }
 
     private WaitStrategy getWaitStrategy() {
@@ -133,12 +128,31 @@ public class KafkaRpcServerConfig {
 
     @Bean
     public RequestConsumer requestConsumer(Gson gson) {
-        return new RequestConsumer(REQUEST_TOPIC, kafkaRpcConfig.serverConsumerProps(), consumerThreads, new RequestSerializer(gson));
+        return new RequestConsumer(REQUEST_TOPIC, kafkaRpcConfig.serverConsumerProps(), consumerThreads, new RequestSerializer(gson, kafkaRpcConfig.getWireFormat(), kafkaRpcConfig.getPayloadCompression()));
     }
 
     @Bean
-    public RpcServer rpcServer(WorkerPool<ServerEvent> workerPool, RequestConsumer requestConsumer, ServerEventHandler eventHandler) {
-        RpcServer server = new KafkaRpcServer(workerPool, requestConsumer, eventHandler, workerThreads);
+    public RpcServer rpcServer(@Qualifier("request-dispatcher") RequestHandler requestHandler,
+                               @Qualifier("server-producer") Producer<String, Response> responseProducer,
+                               RequestConsumer requestConsumer, ServerEventHandler eventHandler) {
+        final int workerThreads = getWorkerThreads();
+        logger.info("RPC server worker threads: {}, partition affine: {}", workerThreads, partitionAffine);
+        final ServerEventHandler[] workHandlers = new ServerEventHandler[workerThreads];
+        IntStream.range(0, workerThreads).forEach(
+                nbr -> workHandlers[nbr] = new ServerEventHandler(requestHandler, responseProducer)
+        );
+        final ProducerType producerType = consumerThreads > 1 ? ProducerType.MULTI : ProducerType.SINGLE;
+        final RingBuffer<ServerEvent> ringBuffer = RingBuffer.create(producerType, ServerEvent::new, bufferSize, getWaitStrategy());
+
+        RpcServer server;
+        if (partitionAffine) {
+            server = new KafkaRpcServer(new PartitionedWorkerPool(ringBuffer, workHandlers), requestConsumer, eventHandler, workerThreads);
+        } else {
+            final SequenceBarrier barrier = ringBuffer.newBarrier();
+            WorkerPool<ServerEvent> workerPool = new WorkerPool<>(ringBuffer, barrier, new FatalExceptionHandler(), workHandlers);
+            ringBuffer.addGatingSequences(workerPool.getWorkerSequences());
+            server = new KafkaRpcServer(workerPool, requestConsumer, eventHandler, workerThreads);
+        }
         server.start();
         return server;
     }
@@ -48,6 +48,8 @@ public class ClientBuilder {
     private Deserializer<Response> consumerValueDeserializer;
     private int consumerThreads;
 
+    private long requestTimeoutMillis = RequestResponseMatcher.DEFAULT_REQUEST_TIMEOUT_MILLIS;
+
     public ClientBuilder withRequestTopic(String requestTopic) {
         this.requestTopic = requestTopic;
         return this;
@@ -73,6 +75,11 @@ public class ClientBuilder {
         return this;
     }
 
+    public ClientBuilder withRequestTimeout(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        return this;
+    }
+
     public ClientBuilder withProducerValueSerializer(Serializer<Request> serializer) {
         this.producerValueSerializer = serializer;
         return this;
@@ -84,7 +91,7 @@ public class ClientBuilder {
     }
 
     public RpcClient build() {
-        RequestResponseMatcher matcher = new RequestResponseMatcher();
+        RequestResponseMatcher matcher = new RequestResponseMatcher(requestTimeoutMillis);
 
         ExecutorService consumerExecutor = Executors.newFixedThreadPool(consumerThreads);
         ServerResponseListener responseListener = new ServerResponseListener(replyTopic, consumerThreads,
@@ -25,11 +25,17 @@ import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.shim.api.server.RpcServer;
 import com.devicehive.shim.kafka.server.KafkaRpcServer;
+import com.devicehive.shim.kafka.server.PartitionedWorkerPool;
 import com.devicehive.shim.kafka.server.RequestConsumer;
 import com.devicehive.shim.kafka.server.ServerEvent;
 import com.devicehive.shim.kafka.server.ServerEventHandler;
+import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.WorkerPool;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -45,6 +51,12 @@ public class ServerBuilder {
 
     private int consumerThreads;
 
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    private int bufferSize = 1024;
+    private WaitStrategy waitStrategy = new BlockingWaitStrategy();
+    private ProducerType producerType;
+    private boolean partitionAffine;
+
     private Properties consumerProps;
     private Deserializer<Request> consumerValueDeserializer;
 
@@ -63,6 +75,37 @@ public class ServerBuilder {
         return this;
     }
 
+    public ServerBuilder withWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+        return this;
+    }
+
+    public ServerBuilder withBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public ServerBuilder withWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        return this;
+    }
+
+    /**
+     * By default single producer ring buffer is used when requests are consumed by one thread, multi producer otherwise
+     */
+    public ServerBuilder withProducerType(ProducerType producerType) {
+        this.producerType = producerType;
+        return this;
+    }
+
+    /**
+     * Route requests with the same partition key to the same worker, see {@link PartitionedWorkerPool}
+     */
+    public ServerBuilder withPartitionAffinity(boolean partitionAffine) {
+        this.partitionAffine = partitionAffine;
+        return this;
+    }
+
     public ServerBuilder withProducerProps(Properties producerProps) {
         this.producerProps = producerProps;
         return this;
@@ -89,16 +132,23 @@ public class ServerBuilder {
     }
 
     public RpcServer build() {
-        final int workerThreads = 3;
         Producer<String, Response> responseProducer = new KafkaProducer<>(producerProps, new StringSerializer(), producerValueSerializer);
         final ServerEventHandler[] workHandlers = new ServerEventHandler[workerThreads];
         IntStream.range(0, workerThreads).forEach(
                 nbr -> workHandlers[nbr] = new ServerEventHandler(requestHandler, responseProducer)
         );
-        final WorkerPool<ServerEvent> workerPool = new WorkerPool<>(ServerEvent::new, new FatalExceptionHandler(), workHandlers);
-
+        final ProducerType type = producerType != null ? producerType : (consumerThreads > 1 ? ProducerType.MULTI : ProducerType.SINGLE);
+        final RingBuffer<ServerEvent> ringBuffer = RingBuffer.create(type, ServerEvent::new, bufferSize, waitStrategy);
         RequestConsumer requestConsumer = new RequestConsumer(topic, consumerProps, consumerThreads, consumerValueDeserializer);
-        return new KafkaRpcServer(workerPool, requestConsumer, new ServerEventHandler(requestHandler, responseProducer), workerThreads);
+        ServerEventHandler eventHandler = new ServerEventHandler(requestHandler, responseProducer);
+        if (partitionAffine) {
+            return new KafkaRpcServer(new PartitionedWorkerPool(ringBuffer, workHandlers), requestConsumer, eventHandler, workerThreads);
+        }
+
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+        final WorkerPool<ServerEvent> workerPool = new WorkerPool<>(ringBuffer, barrier, new FatalExceptionHandler(), workHandlers);
+        ringBuffer.addGatingSequences(workerPool.getWorkerSequences());
+        return new KafkaRpcServer(workerPool, requestConsumer, eventHandler, workerThreads);
     }
 
 }
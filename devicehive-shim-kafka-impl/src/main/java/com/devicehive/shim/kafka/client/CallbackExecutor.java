@@ -0,0 +1,35 @@
+package com.devicehive.shim.kafka.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Executes response callbacks for {@link RequestResponseMatcher}. Tasks submitted with the same key
+ * (correlation id) must run one at a time, in order of submission.
+ */
+public interface CallbackExecutor {
+
+    /**
+     * @return - false if the task was dropped and will never run
+     */
+    boolean execute(String key, Runnable task);
+
+    void shutdown();
+}
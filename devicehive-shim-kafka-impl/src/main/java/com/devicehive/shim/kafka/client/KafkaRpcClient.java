@@ -20,6 +20,7 @@ package com.devicehive.shim.kafka.client;
  * #L%
  */
 
+import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.RequestType;
 import com.devicehive.shim.api.Response;
@@ -29,34 +30,63 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 public class KafkaRpcClient implements RpcClient {
     private static final Logger logger = LoggerFactory.getLogger(KafkaRpcClient.class);
 
+    private static final int PING_ATTEMPTS = 10;
+    private static final long PING_TIMEOUT_MILLIS = 3000;
+
     private String requestTopic;
     private String replyToTopic;
     private Producer<String, Request> requestProducer;
+    private Producer<String, Request> bulkRequestProducer;
+    private Set<Action> bulkActions;
     private RequestResponseMatcher requestResponseMatcher;
     private ServerResponseListener responseListener;
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+
+    public KafkaRpcClient(String requestTopic, String replyToTopic, Producer<String, Request> requestProducer,
+                          RequestResponseMatcher requestResponseMatcher, ServerResponseListener responseListener) {
+        this(requestTopic, replyToTopic, requestProducer, requestProducer, Collections.emptySet(),
+                requestResponseMatcher, responseListener);
+    }
 
+    /**
+     * Creates client which sends requests with the given actions through a separate producer,
+     * so that bulk traffic can be batched without delaying interactive requests.
+     */
     public KafkaRpcClient(String requestTopic, String replyToTopic, Producer<String, Request> requestProducer,
+                          Producer<String, Request> bulkRequestProducer, Set<Action> bulkActions,
                           RequestResponseMatcher requestResponseMatcher, ServerResponseListener responseListener) {
         this.requestTopic = requestTopic;
         this.replyToTopic = replyToTopic;
         this.requestProducer = requestProducer;
+        this.bulkRequestProducer = bulkRequestProducer;
+        this.bulkActions = bulkActions;
         this.requestResponseMatcher = requestResponseMatcher;
         this.responseListener = responseListener;
     }
 
+    /**
+     * Starts response consumers and pings RpcServer in the background. Requests sent before the server answers
+     * stay in the request topic until it is up.
+     */
     @Override
     public void start() {
         responseListener.startWorkers();
-        pingServer();
+        pingServer(0);
+    }
+
+    /**
+     * @return - future completed when RpcServer answers ping, or completed exceptionally when all attempts fail
+     */
+    public CompletableFuture<Void> connected() {
+        return connected;
     }
 
     @Override
@@ -74,7 +104,8 @@ public class KafkaRpcClient implements RpcClient {
         }
 
         request.setReplyTo(replyToTopic);
-        requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request),
+        Producer<String, Request> producer = bulkActions.contains(request.getBody().getAction()) ? bulkRequestProducer : requestProducer;
+        producer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request),
                 (recordMetadata, e) -> {
                     if (e != null) {
                         logger.error("Send request failed", e);
@@ -88,50 +119,34 @@ public class KafkaRpcClient implements RpcClient {
     @Override
     public void shutdown() {
         requestProducer.close();
+        if (bulkRequestProducer != requestProducer) {
+            bulkRequestProducer.close();
+        }
         responseListener.shutdown();
     }
 
-    private void pingServer() {
+    private void pingServer(int attempt) {
         Request request = Request.newBuilder().build();
         request.setReplyTo(replyToTopic);
         request.setType(RequestType.ping);
-        boolean connected = false;
-        int attempts = 10;
-        for (int i = 0; i < attempts; i++) {
-            logger.info("Ping RpcServer attempt {}", i);
-
-            CompletableFuture<Response> pingFuture = new CompletableFuture<>();
-
-            requestResponseMatcher.addRequestCallback(request.getCorrelationId(), pingFuture::complete);
-            logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
-
-            requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request));
-
-            Response response = null;
-            try {
-                response = pingFuture.get(3000, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                logger.error("Exception occured while trying to ping RpcServer ", e);
-            } catch (TimeoutException e) {
+        logger.info("Ping RpcServer attempt {}", attempt);
+
+        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), response -> {
+            requestResponseMatcher.removeRequestCallback(request.getCorrelationId());
+            if (!response.isFailed()) {
+                logger.info("Successfully connected to RpcServer");
+                connected.complete(null);
+            } else if (attempt + 1 < PING_ATTEMPTS) {
                 logger.warn("RpcServer didn't respond to ping request");
-                continue;
-            } finally {
-                requestResponseMatcher.removeRequestCallback(request.getCorrelationId());
-            }
-            if (response != null && !response.isFailed()) {
-                connected = true;
-                break;
+                pingServer(attempt + 1);
             } else {
-                responseListener.shutdown();
-                responseListener.startWorkers();
+                logger.error("Unable to reach out RpcServer in {} attempts", PING_ATTEMPTS);
+                connected.completeExceptionally(new RuntimeException("RpcServer is not reachable"));
             }
-        }
-        if (connected) {
-            logger.info("Successfully connected to RpcServer");
-        } else {
-            logger.error("Unable to reach out RpcServer in {} attempts", attempts);
-            throw new RuntimeException("RpcServer is not reachable");
-        }
+        }, PING_TIMEOUT_MILLIS);
+        logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
+
+        requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request));
     }
 
 }
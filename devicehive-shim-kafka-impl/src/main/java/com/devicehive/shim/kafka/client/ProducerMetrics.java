@@ -0,0 +1,68 @@
+package com.devicehive.shim.kafka.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects batching metrics of the request producers. Per-topic metrics are reported as
+ * {@code <producer>.<topic>.<metric>}, producer-wide batching metrics as {@code <producer>.<metric>}.
+ */
+public class ProducerMetrics {
+
+    private static final String TOPIC_GROUP = "producer-topic-metrics";
+    private static final String PRODUCER_GROUP = "producer-metrics";
+
+    private static final Set<String> PRODUCER_METRICS = new HashSet<>(Arrays.asList(
+            "batch-size-avg", "records-per-request-avg", "record-queue-time-avg",
+            "compression-rate-avg", "request-latency-avg", "buffer-available-bytes"));
+
+    private final ConcurrentMap<String, Producer<?, ?>> producers = new ConcurrentHashMap<>();
+
+    public void register(String name, Producer<?, ?> producer) {
+        producers.put(name, producer);
+    }
+
+    public Map<String, Double> snapshot() {
+        Map<String, Double> result = new TreeMap<>();
+        producers.forEach((name, producer) -> {
+            for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+                MetricName metric = entry.getKey();
+                if (TOPIC_GROUP.equals(metric.group()) && metric.tags().containsKey("topic")) {
+                    result.put(name + "." + metric.tags().get("topic") + "." + metric.name(), entry.getValue().value());
+                } else if (PRODUCER_GROUP.equals(metric.group()) && PRODUCER_METRICS.contains(metric.name())) {
+                    result.put(name + "." + metric.name(), entry.getValue().value());
+                }
+            }
+        });
+        return result;
+    }
+}
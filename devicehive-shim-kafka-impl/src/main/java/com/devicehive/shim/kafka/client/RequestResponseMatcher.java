@@ -20,6 +20,8 @@ package com.devicehive.shim.kafka.client;
  * #L%
  */
 
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.shim.api.Body;
 import com.devicehive.shim.api.Response;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimaps;
@@ -29,48 +31,237 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+/**
+ * Matches responses to callbacks of the requests by correlation id.
+ *
+ * Every callback gets a deadline for the first response. If nothing arrives in time, the callback is removed
+ * and completed with a failed response with {@link #TIMEOUT_ERROR_CODE}, so lost responses and crashed backends
+ * don't leave entries behind. Once the first response arrives the deadline is cancelled: streaming callbacks
+ * (subscriptions) live until the last response or until their subscription is removed.
+ *
+ * The callback entry is removed on the last response before the response is handed over to the callback executor.
+ * If the executor drops the last response, the callback is completed with a failed response with
+ * {@link #DROPPED_ERROR_CODE}. Failed responses are delivered from a separate thread, so the timer thread
+ * never waits for a full callback lane.
+ */
 public class RequestResponseMatcher {
     private static final Logger logger = LoggerFactory.getLogger(RequestResponseMatcher.class);
 
-    private final ConcurrentHashMap<String, Consumer<Response>> correlationMap = new ConcurrentHashMap<>();
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 60000;
+    public static final int TIMEOUT_ERROR_CODE = 408;
+    public static final int DROPPED_ERROR_CODE = 503;
+    public static final int DEFAULT_CALLBACK_QUEUE_SIZE = 10000;
+
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int TIMER_SLOTS = 512;
+
+    private final ConcurrentHashMap<String, Callback> correlationMap = new ConcurrentHashMap<>();
     private final SetMultimap<Long, String> subscriptionMap = Multimaps.synchronizedSetMultimap(HashMultimap.create());
 
-    //TODO [rafa] we do not really need FJP, but rather some other pool implementation. Though FJP looks good, it might be over kill for our use case.
-    private final ForkJoinPool executionPool = new ForkJoinPool();
+    private final long requestTimeoutMillis;
+    private final TimerWheel<Expiry> timerWheel;
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    private final CallbackExecutor callbackExecutor;
+    private final ExecutorService failureExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "response-callback-failures");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RequestResponseMatcher() {
+        this(DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param requestTimeoutMillis - time to wait for the first response to a request, 0 to wait forever
+     */
+    public RequestResponseMatcher(long requestTimeoutMillis) {
+        this(requestTimeoutMillis, new SerialLaneExecutor(Runtime.getRuntime().availableProcessors(),
+                DEFAULT_CALLBACK_QUEUE_SIZE, SerialLaneExecutor.OverflowPolicy.BLOCK));
+    }
+
+    /**
+     * @param requestTimeoutMillis - time to wait for the first response to a request, 0 to wait forever
+     * @param callbackExecutor - executor of response callbacks, callbacks are keyed by correlation id
+     */
+    public RequestResponseMatcher(long requestTimeoutMillis, CallbackExecutor callbackExecutor) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.callbackExecutor = callbackExecutor;
+        this.timerWheel = new TimerWheel<>("request-timeout-timer", TIMER_TICK_MILLIS, TIMER_SLOTS, this::expire);
+    }
 
     public void addRequestCallback(String correlationId, Consumer<Response> callback) {
-        correlationMap.put(correlationId, callback);
+        addRequestCallback(correlationId, callback, requestTimeoutMillis);
+    }
+
+    public void addRequestCallback(String correlationId, Consumer<Response> callback, long timeoutMillis) {
+        Callback entry = new Callback(callback);
+        correlationMap.put(correlationId, entry);
+        if (timeoutMillis > 0) {
+            entry.timeout = timerWheel.schedule(new Expiry(correlationId, entry), timeoutMillis);
+        }
     }
 
     public void removeRequestCallback(String correlationId) {
-        correlationMap.remove(correlationId);
+        Callback entry = correlationMap.remove(correlationId);
+        if (entry != null) {
+            entry.cancelTimeout();
+        }
     }
 
     public void offerResponse(Response response) {
-        Consumer<Response> callback = correlationMap.get(response.getCorrelationId());
-        if (callback != null) {
-            executionPool.execute(() -> {
-                try {
-                    callback.accept(response);
-                } finally {
-                    if (response.isLast()) {
-                        correlationMap.remove(response.getCorrelationId());
-                    }
-                }
-            });
+        if (response.isMulticast()) {
+            response.getCorrelationIds().forEach(correlationId -> dispatch(copyFor(correlationId, response)));
         } else {
-            logger.warn("Callback was not found for {}. Map size: {}, response: {}", response.getCorrelationId(), correlationMap.size(), response.getBody());
+            dispatch(response);
         }
     }
 
+    private void dispatch(Response response) {
+        String correlationId = response.getCorrelationId();
+        Callback callback = correlationMap.get(correlationId);
+        if (callback == null || !callback.respond()) {
+            logger.warn("Callback was not found for {}. Map size: {}, response: {}", correlationId, correlationMap.size(), response.getBody());
+            return;
+        }
+        if (response.isLast()) {
+            correlationMap.remove(correlationId, callback);
+        }
+        boolean accepted = callbackExecutor.execute(correlationId, () -> callback.consumer.accept(response));
+        if (!accepted && response.isLast()) {
+            logger.warn("Last response of request {} dropped, request is failed", correlationId);
+            failureExecutor.execute(() -> fail(correlationId, callback, "Response dropped, callback queue is full", DROPPED_ERROR_CODE));
+        }
+    }
+
+    private void expire(Expiry expiry) {
+        if (!expiry.callback.expire() || !correlationMap.remove(expiry.correlationId, expiry.callback)) {
+            return;
+        }
+        expiredCount.incrementAndGet();
+        logger.warn("Request {} timed out, no response received", expiry.correlationId);
+        failureExecutor.execute(() -> fail(expiry.correlationId, expiry.callback, "Request timed out", TIMEOUT_ERROR_CODE));
+    }
+
+    /**
+     * Delivers failed response on the lane of the callback, or in the current thread if the lane does not accept it.
+     */
+    private void fail(String correlationId, Callback callback, String message, int errorCode) {
+        Response response = Response.newBuilder()
+                .withBody(new ErrorResponse(message))
+                .withCorrelationId(correlationId)
+                .buildFailed(errorCode);
+        if (callbackExecutor.execute(correlationId, () -> callback.consumer.accept(response))) {
+            return;
+        }
+        try {
+            callback.consumer.accept(response);
+        } catch (Exception e) {
+            logger.error("Response callback failed for {}", correlationId, e);
+        }
+    }
+
+    /**
+     * Unpacks single recipient's response out of multicast envelope. Body is shared between all the copies.
+     */
+    private Response copyFor(String correlationId, Response response) {
+        Response.Builder<Body> builder = Response.newBuilder()
+                .withBody(response.getBody())
+                .withCorrelationId(correlationId)
+                .withLast(response.isLast());
+        return response.isFailed() ? builder.buildFailed(response.getErrorCode()) : builder.buildSuccess();
+    }
+
     public void addSubscription(Long subscriptionId, String correlationId) {
        subscriptionMap.put(subscriptionId, correlationId);
     }
 
+    /**
+     * Removes the subscription together with callbacks of all its requests
+     */
     public void removeSubscription(Long subscriptionId) {
-        subscriptionMap.removeAll(subscriptionId);
+        subscriptionMap.removeAll(subscriptionId).forEach(this::removeRequestCallback);
+    }
+
+    /**
+     * @return - number of callbacks waiting for responses
+     */
+    public int getCallbackCount() {
+        return correlationMap.size();
+    }
+
+    /**
+     * @return - number of callbacks removed because no response arrived in time
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionMap.keySet().size();
+    }
+
+    public void shutdown() {
+        timerWheel.shutdown();
+        failureExecutor.shutdown();
+        callbackExecutor.shutdown();
+    }
+
+    private static class Callback {
+        private static final int WAITING = 0;
+        private static final int RESPONDED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Consumer<Response> consumer;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile TimerWheel.Timeout<Expiry> timeout;
+
+        Callback(Consumer<Response> consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return - false if the callback has already expired and must not get any more responses
+         */
+        boolean respond() {
+            if (state.get() == RESPONDED) {
+                return true;
+            }
+            cancelTimeout();
+            return state.compareAndSet(WAITING, RESPONDED) || state.get() == RESPONDED;
+        }
+
+        boolean expire() {
+            return state.compareAndSet(WAITING, EXPIRED);
+        }
+
+        void cancelTimeout() {
+            TimerWheel.Timeout<Expiry> t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+    }
+
+    private static class Expiry {
+        private final String correlationId;
+        private final Callback callback;
+
+        Expiry(String correlationId, Callback callback) {
+            this.correlationId = correlationId;
+            this.callback = callback;
+        }
+
+        @Override
+        public String toString() {
+            return correlationId;
+        }
     }
 }
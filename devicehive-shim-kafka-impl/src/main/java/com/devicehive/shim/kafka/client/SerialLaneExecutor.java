@@ -0,0 +1,145 @@
+package com.devicehive.shim.kafka.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CallbackExecutor} with a fixed number of single threaded lanes, each with a bounded queue.
+ * The lane is chosen by hash of the key, so callbacks of one request or subscription run in order,
+ * while different keys are spread over the lanes. When the queue of a lane is full, behaviour is defined
+ * by {@link OverflowPolicy}.
+ */
+public class SerialLaneExecutor implements CallbackExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(SerialLaneExecutor.class);
+
+    public enum OverflowPolicy {
+        /**
+         * Block the submitting thread (response consumer) until there is room in the queue, but not longer than
+         * the block timeout. The callback is dropped after that, so that a callback waiting for a response
+         * of another request on the same lane cannot stop the consumer forever.
+         */
+        BLOCK,
+        /**
+         * Run the callback in the submitting thread. Keeps consumer going, but the order of callbacks is not guaranteed
+         */
+        CALLER_RUNS,
+        /**
+         * Drop the callback and log a warning. If the last response of a request is dropped,
+         * {@link RequestResponseMatcher} completes the request with a failed response instead
+         */
+        DROP
+    }
+
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 1000;
+
+    private final ThreadPoolExecutor[] lanes;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public SerialLaneExecutor(int laneCount, int queueSize, OverflowPolicy overflowPolicy) {
+        this(laneCount, queueSize, overflowPolicy, DEFAULT_BLOCK_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param blockTimeoutMillis - longest time to wait for room in the queue with {@link OverflowPolicy#BLOCK}
+     */
+    public SerialLaneExecutor(int laneCount, int queueSize, OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        for (int i = 0; i < laneCount; i++) {
+            final String name = "response-callback-" + i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), r -> {
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            lanes[i] = lane;
+        }
+    }
+
+    @Override
+    public boolean execute(String key, Runnable task) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(Objects.hashCode(key), lanes.length)];
+        Runnable callback = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Response callback failed for {}", key, e);
+            }
+        };
+        try {
+            lane.execute(callback);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return overflow(lane, callback);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private boolean overflow(ThreadPoolExecutor lane, Runnable callback) {
+        if (lane.isShutdown()) {
+            return false;
+        }
+        switch (overflowPolicy) {
+            case CALLER_RUNS:
+                callback.run();
+                return true;
+            case BLOCK:
+                try {
+                    // the lane thread is started by the first task, so the queue is only full while it is running
+                    if (lane.getQueue().offer(callback, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP:
+            default:
+                break;
+        }
+        droppedCount.incrementAndGet();
+        logger.warn("Response callback queue is full, callback dropped");
+        return false;
+    }
+}
@@ -0,0 +1,119 @@
+package com.devicehive.shim.kafka.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel for large numbers of timeouts which are usually cancelled before they fire.
+ * Scheduling and cancellation are O(1), a single daemon thread advances the wheel once per tick
+ * and fires timeouts of the current slot whose deadline has passed. Timeouts fire with up to one tick of delay.
+ */
+class TimerWheel<T> {
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickMillis;
+    private final Set<Timeout<T>>[] slots;
+    private final Consumer<T> expiryHandler;
+    private final ScheduledExecutorService ticker;
+
+    private volatile long lastTick;
+
+    // generic arrays can only be created raw
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(String name, long tickMillis, int slotCount, Consumer<T> expiryHandler) {
+        this.tickMillis = tickMillis;
+        this.slots = new Set[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.expiryHandler = expiryHandler;
+        this.lastTick = System.currentTimeMillis() / tickMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    Timeout<T> schedule(T item, long delayMillis) {
+        Timeout<T> timeout = new Timeout<>(item, System.currentTimeMillis() + delayMillis);
+        // first tick starting at or after the deadline, which hasn't been processed yet
+        long tick = Math.max((timeout.deadline + tickMillis - 1) / tickMillis, lastTick + 1);
+        slots[slotOf(tick)].add(timeout);
+        return timeout;
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private void advance() {
+        long now = System.currentTimeMillis();
+        long currentTick = now / tickMillis;
+        // catch up with ticks skipped because of a delayed run, at most one full round
+        for (long tick = Math.max(lastTick + 1, currentTick - slots.length + 1); tick <= currentTick; tick++) {
+            slots[slotOf(tick)].removeIf(timeout -> {
+                if (timeout.cancelled) {
+                    return true;
+                }
+                if (timeout.deadline <= now) {
+                    try {
+                        expiryHandler.accept(timeout.item);
+                    } catch (Exception e) {
+                        logger.error("Timeout handler failed for {}", timeout.item, e);
+                    }
+                    return true;
+                }
+                return false;
+            });
+        }
+        lastTick = currentTick;
+    }
+
+    private int slotOf(long tick) {
+        return (int) (tick % slots.length);
+    }
+
+    static class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
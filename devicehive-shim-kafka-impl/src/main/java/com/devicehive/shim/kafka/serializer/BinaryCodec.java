@@ -0,0 +1,235 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import com.devicehive.shim.api.Response;
+import com.google.gson.Gson;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary layout of shim messages. Envelope fields are written with {@link DataOutputStream}.
+ * Bodies of notifications and commands use explicit binary layouts of {@link BodyLayouts}, all other bodies
+ * keep their JSON form (already encoded body of the response is copied as is), so every {@link Body}
+ * subtype is supported without a separate schema.
+ *
+ * Version 1 messages carry JSON bodies only. Messages with a binary body layout are written as version 2,
+ * so nodes which only read version 1 reject them instead of misreading the body.
+ *
+ * Every message starts with a version byte. JSON messages always start with '{', so version bytes are chosen
+ * below it and {@link #isBinary(byte[])} tells both formats apart, which lets mixed clusters roll over.
+ */
+public class BinaryCodec {
+
+    static final byte VERSION_1 = 1;
+    static final byte VERSION_2 = 2;
+
+    private static final byte MAX_VERSION = VERSION_2;
+
+    private final Gson gson;
+
+    public BinaryCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] > 0 && bytes[0] < '{';
+    }
+
+    public byte[] encode(Request request) {
+        try {
+            SerializationBuffer buffer = SerializationBuffer.get();
+            DataOutputStream out = new DataOutputStream(buffer.stream());
+            byte layout = layoutOf(request.getBody());
+            out.writeByte(versionOf(layout));
+            out.writeByte(request.getType().ordinal());
+            out.writeBoolean(request.isSingleReplyExpected());
+            writeString(out, request.getCorrelationId());
+            writeString(out, request.getPartitionKey());
+            writeString(out, request.getReplyTo());
+            writeBody(out, buffer, layout, request.getBody(), null);
+            out.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Request serialization failed", e);
+        }
+    }
+
+    public byte[] encode(Response response) {
+        try {
+            SerializationBuffer buffer = SerializationBuffer.get();
+            DataOutputStream out = new DataOutputStream(buffer.stream());
+            byte layout = layoutOf(response.getBody());
+            out.writeByte(versionOf(layout));
+            writeString(out, response.getCorrelationId());
+            List<String> correlationIds = response.getCorrelationIds();
+            out.writeInt(correlationIds != null ? correlationIds.size() : -1);
+            if (correlationIds != null) {
+                for (String correlationId : correlationIds) {
+                    writeString(out, correlationId);
+                }
+            }
+            out.writeBoolean(response.isLast());
+            out.writeBoolean(response.isFailed());
+            out.writeInt(response.getErrorCode());
+            writeBody(out, buffer, layout, response.getBody(), response.getEncodedBody());
+            out.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Response serialization failed", e);
+        }
+    }
+
+    public Request decodeRequest(byte[] bytes) {
+        try {
+            DataInputStream in = open(bytes);
+            RequestType type = readRequestType(in);
+            boolean singleReply = in.readBoolean();
+            String correlationId = readString(in);
+            String partitionKey = readString(in);
+            String replyTo = readString(in);
+            Request request = Request.newBuilder()
+                    .withBody(readBody(in))
+                    .withSingleReply(singleReply)
+                    .withCorrelationId(correlationId)
+                    .withPartitionKey(partitionKey)
+                    .build();
+            request.setType(type);
+            request.setReplyTo(replyTo);
+            return request;
+        } catch (IOException e) {
+            throw new SerializationException("Request deserialization failed", e);
+        }
+    }
+
+    public Response decodeResponse(byte[] bytes) {
+        try {
+            DataInputStream in = open(bytes);
+            String correlationId = readString(in);
+            int count = in.readInt();
+            List<String> correlationIds = null;
+            if (count >= 0) {
+                correlationIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    correlationIds.add(readString(in));
+                }
+            }
+            boolean last = in.readBoolean();
+            boolean failed = in.readBoolean();
+            int errorCode = in.readInt();
+            Response.Builder<Body> builder = Response.newBuilder()
+                    .withBody(readBody(in))
+                    .withCorrelationId(correlationId)
+                    .withLast(last);
+            if (correlationIds != null) {
+                builder.withCorrelationIds(correlationIds);
+            }
+            return failed ? builder.buildFailed(errorCode) : builder.buildSuccess();
+        } catch (IOException e) {
+            throw new SerializationException("Response deserialization failed", e);
+        }
+    }
+
+    private static RequestType readRequestType(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type < 0 || type >= RequestType.values().length) {
+            throw new SerializationException("Unknown request type " + type);
+        }
+        return RequestType.values()[type];
+    }
+
+    private DataInputStream open(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte version = in.readByte();
+        if (version < VERSION_1 || version > MAX_VERSION) {
+            throw new SerializationException("Unsupported binary message version " + version);
+        }
+        return in;
+    }
+
+    /**
+     * Body with a binary layout is written in that layout even if it has an encoded JSON form,
+     * since writing the layout is cheaper than copying the JSON.
+     */
+    private static byte layoutOf(Body body) {
+        return body != null ? BodyLayouts.layoutOf(body) : BodyLayouts.JSON;
+    }
+
+    private static byte versionOf(byte layout) {
+        return layout > BodyLayouts.JSON ? VERSION_2 : VERSION_1;
+    }
+
+    private void writeBody(DataOutputStream out, SerializationBuffer buffer, byte layout, Body body,
+                           String encodedBody) throws IOException {
+        if (body == null && encodedBody == null) {
+            out.writeByte(BodyLayouts.NONE);
+            return;
+        }
+        out.writeByte(layout);
+        if (layout != BodyLayouts.JSON) {
+            BodyLayouts.write(out, layout, body);
+            return;
+        }
+        out.flush();
+        // JSON body goes last and takes the rest of the message, so no length prefix is needed
+        Writer writer = buffer.writer();
+        if (encodedBody != null) {
+            writer.write(encodedBody);
+        } else {
+            gson.toJson(body, Body.class, writer);
+        }
+        writer.flush();
+    }
+
+    private Body readBody(DataInputStream in) throws IOException {
+        byte layout = in.readByte();
+        if (layout == BodyLayouts.NONE) {
+            return null;
+        }
+        if (layout == BodyLayouts.JSON) {
+            return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), Body.class);
+        }
+        return BodyLayouts.read(in, layout);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
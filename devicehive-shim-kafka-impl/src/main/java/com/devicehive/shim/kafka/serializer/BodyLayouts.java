@@ -0,0 +1,264 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.eventbus.events.CommandEvent;
+import com.devicehive.model.eventbus.events.CommandUpdateEvent;
+import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.CommandInsertRequest;
+import com.devicehive.model.rpc.CommandUpdateRequest;
+import com.devicehive.model.rpc.NotificationInsertRequest;
+import com.devicehive.shim.api.Body;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Explicit binary layouts of the bodies sent for every notification and command: inserts, updates and events.
+ * Fields are written in a fixed order with {@link DataOutputStream}, so neither JSON nor reflection is involved.
+ * Other bodies are written as JSON by {@link BinaryCodec}.
+ *
+ * The layout byte goes before the body. 0 and 1 keep their meaning of version 1 messages (no body and JSON body),
+ * so layouts may only be added with new numbers.
+ */
+final class BodyLayouts {
+
+    static final byte NONE = 0;
+    static final byte JSON = 1;
+    static final byte NOTIFICATION_INSERT_REQUEST = 2;
+    static final byte NOTIFICATION_EVENT = 3;
+    static final byte COMMAND_INSERT_REQUEST = 4;
+    static final byte COMMAND_UPDATE_REQUEST = 5;
+    static final byte COMMAND_EVENT = 6;
+    static final byte COMMAND_UPDATE_EVENT = 7;
+    static final byte COMMANDS_UPDATE_EVENT = 8;
+
+    private BodyLayouts() {
+    }
+
+    /**
+     * @return - binary layout of the body or {@link #JSON} if the body has no explicit layout
+     */
+    static byte layoutOf(Body body) {
+        Class<?> type = body.getClass();
+        if (type == NotificationInsertRequest.class) {
+            return NOTIFICATION_INSERT_REQUEST;
+        } else if (type == NotificationEvent.class) {
+            return NOTIFICATION_EVENT;
+        } else if (type == CommandInsertRequest.class) {
+            return COMMAND_INSERT_REQUEST;
+        } else if (type == CommandUpdateRequest.class) {
+            return COMMAND_UPDATE_REQUEST;
+        } else if (type == CommandEvent.class) {
+            return COMMAND_EVENT;
+        } else if (type == CommandUpdateEvent.class) {
+            return COMMAND_UPDATE_EVENT;
+        } else if (type == CommandsUpdateEvent.class) {
+            return COMMANDS_UPDATE_EVENT;
+        }
+        return JSON;
+    }
+
+    static void write(DataOutputStream out, byte layout, Body body) throws IOException {
+        switch (layout) {
+            case NOTIFICATION_INSERT_REQUEST:
+                writeNotification(out, ((NotificationInsertRequest) body).getDeviceNotification());
+                break;
+            case NOTIFICATION_EVENT:
+                writeNotification(out, ((NotificationEvent) body).getNotification());
+                break;
+            case COMMAND_INSERT_REQUEST:
+                writeCommand(out, ((CommandInsertRequest) body).getDeviceCommand());
+                break;
+            case COMMAND_UPDATE_REQUEST:
+                writeCommand(out, ((CommandUpdateRequest) body).getDeviceCommand());
+                break;
+            case COMMAND_EVENT:
+                writeCommand(out, ((CommandEvent) body).getCommand());
+                break;
+            case COMMAND_UPDATE_EVENT:
+                writeCommand(out, ((CommandUpdateEvent) body).getDeviceCommand());
+                break;
+            case COMMANDS_UPDATE_EVENT:
+                writeCommand(out, ((CommandsUpdateEvent) body).getDeviceCommand());
+                break;
+            default:
+                throw new IllegalArgumentException("No binary layout " + layout);
+        }
+    }
+
+    static Body read(DataInputStream in, byte layout) throws IOException {
+        switch (layout) {
+            case NOTIFICATION_INSERT_REQUEST:
+                return new NotificationInsertRequest(readNotification(in));
+            case NOTIFICATION_EVENT:
+                return new NotificationEvent(readNotification(in));
+            case COMMAND_INSERT_REQUEST:
+                return new CommandInsertRequest(readCommand(in));
+            case COMMAND_UPDATE_REQUEST:
+                return new CommandUpdateRequest(readCommand(in));
+            case COMMAND_EVENT:
+                return new CommandEvent(readCommand(in));
+            case COMMAND_UPDATE_EVENT:
+                return new CommandUpdateEvent(readCommand(in));
+            case COMMANDS_UPDATE_EVENT:
+                return new CommandsUpdateEvent(readCommand(in));
+            default:
+                throw new IOException("Unknown body layout " + layout);
+        }
+    }
+
+    private static void writeNotification(DataOutputStream out, DeviceNotification notification) throws IOException {
+        out.writeBoolean(notification != null);
+        if (notification == null) {
+            return;
+        }
+        writeLong(out, notification.getId());
+        writeString(out, notification.getNotification());
+        writeString(out, notification.getDeviceId());
+        writeLong(out, notification.getNetworkId());
+        writeDate(out, notification.getTimestamp());
+        writeJson(out, notification.getParameters());
+    }
+
+    private static DeviceNotification readNotification(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        DeviceNotification notification = new DeviceNotification();
+        Long id = readLong(in);
+        if (id != null) {
+            notification.setId(id);
+        }
+        notification.setNotification(readString(in));
+        notification.setDeviceId(readString(in));
+        notification.setNetworkId(readLong(in));
+        notification.setTimestamp(readDate(in));
+        notification.setParameters(readJson(in));
+        return notification;
+    }
+
+    private static void writeCommand(DataOutputStream out, DeviceCommand command) throws IOException {
+        out.writeBoolean(command != null);
+        if (command == null) {
+            return;
+        }
+        writeLong(out, command.getId());
+        writeString(out, command.getCommand());
+        writeDate(out, command.getTimestamp());
+        writeDate(out, command.getLastUpdated());
+        writeLong(out, command.getUserId());
+        writeString(out, command.getDeviceId());
+        writeLong(out, command.getNetworkId());
+        writeJson(out, command.getParameters());
+        out.writeBoolean(command.getLifetime() != null);
+        if (command.getLifetime() != null) {
+            out.writeInt(command.getLifetime());
+        }
+        writeString(out, command.getStatus());
+        writeJson(out, command.getResult());
+        out.writeByte(command.getIsUpdated() == null ? -1 : command.getIsUpdated() ? 1 : 0);
+    }
+
+    private static DeviceCommand readCommand(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        DeviceCommand command = new DeviceCommand();
+        Long id = readLong(in);
+        if (id != null) {
+            command.setId(id);
+        }
+        command.setCommand(readString(in));
+        command.setTimestamp(readDate(in));
+        command.setLastUpdated(readDate(in));
+        command.setUserId(readLong(in));
+        command.setDeviceId(readString(in));
+        command.setNetworkId(readLong(in));
+        command.setParameters(readJson(in));
+        command.setLifetime(in.readBoolean() ? in.readInt() : null);
+        command.setStatus(readString(in));
+        command.setResult(readJson(in));
+        byte isUpdated = in.readByte();
+        command.setIsUpdated(isUpdated < 0 ? null : isUpdated == 1);
+        return command;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeDate(DataOutputStream out, Date value) throws IOException {
+        writeLong(out, value != null ? value.getTime() : null);
+    }
+
+    private static Date readDate(DataInputStream in) throws IOException {
+        Long time = readLong(in);
+        return time != null ? new Date(time) : null;
+    }
+
+    private static void writeJson(DataOutputStream out, JsonStringWrapper value) throws IOException {
+        writeString(out, value != null ? value.getJsonString() : null);
+    }
+
+    private static JsonStringWrapper readJson(DataInputStream in) throws IOException {
+        String json = readString(in);
+        return json != null ? JsonStringWrapper.ofValidated(json) : null;
+    }
+
+    /**
+     * Strings are prefixed with their length in bytes, {@link DataOutputStream#writeUTF(String)} is not used
+     * since parameters of notifications and commands may exceed its limit of 64 KB.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
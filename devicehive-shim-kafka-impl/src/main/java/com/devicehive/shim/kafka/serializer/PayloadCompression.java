@@ -0,0 +1,109 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LZ4 compression of serialized messages which are larger than the threshold. Compressed message is framed as
+ * marker byte, codec byte, original length (int) and the compressed bytes. The marker is below '{' and differs
+ * from binary format versions, so compressed, binary and JSON messages can be told apart by the first byte,
+ * and readers always accept compressed messages no matter how the writer side is configured.
+ */
+public class PayloadCompression {
+
+    static final byte MARKER = 0x1F;
+    static final byte CODEC_LZ4 = 1;
+
+    private static final int HEADER_SIZE = 6;
+    private static final int MAX_ORIGINAL_SIZE = 64 * 1024 * 1024;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    public static final PayloadCompression DISABLED = new PayloadCompression(-1);
+
+    private final int threshold;
+
+    /**
+     * @param threshold - messages shorter than threshold are sent as is, negative value disables compression
+     */
+    public PayloadCompression(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length > HEADER_SIZE && bytes[0] == MARKER;
+    }
+
+    /**
+     * @return - compressed frame, or the same bytes if message is below threshold or does not shrink
+     */
+    public byte[] compress(byte[] bytes) {
+        if (threshold < 0 || bytes.length < threshold) {
+            return bytes;
+        }
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        byte[] frame = new byte[HEADER_SIZE + compressor.maxCompressedLength(bytes.length)];
+        int compressedLength = compressor.compress(bytes, 0, bytes.length, frame, HEADER_SIZE);
+        if (HEADER_SIZE + compressedLength >= bytes.length) {
+            return bytes;
+        }
+        ByteBuffer.wrap(frame).put(MARKER).put(CODEC_LZ4).putInt(bytes.length);
+        byte[] result = new byte[HEADER_SIZE + compressedLength];
+        System.arraycopy(frame, 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * @return - original message of compressed frame, other messages are returned as is
+     */
+    public static byte[] decompress(byte[] bytes) {
+        if (!isCompressed(bytes)) {
+            return bytes;
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes, 1, HEADER_SIZE - 1);
+        byte codec = header.get();
+        int originalLength = header.getInt();
+        if (codec != CODEC_LZ4) {
+            throw new SerializationException("Unsupported compression codec " + codec);
+        }
+        if (originalLength < 0 || originalLength > MAX_ORIGINAL_SIZE) {
+            throw new SerializationException("Invalid length of compressed message " + originalLength);
+        }
+        byte[] original = new byte[originalLength];
+        try {
+            LZ4SafeDecompressor decompressor = LZ4.safeDecompressor();
+            int length = decompressor.decompress(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE, original, 0, originalLength);
+            if (length != originalLength) {
+                throw new SerializationException("Compressed message is truncated");
+            }
+        } catch (LZ4Exception e) {
+            throw new SerializationException("Message decompression failed", e);
+        }
+        return original;
+    }
+}
@@ -22,21 +22,40 @@ package com.devicehive.shim.kafka.serializer;
 
 import com.devicehive.shim.api.Request;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class RequestSerializer implements Serializer<Request>, Deserializer<Request> {
     private static final Logger logger = LoggerFactory.getLogger(RequestSerializer.class);
 
     private Gson gson;
+    private WireFormat format;
+    private BinaryCodec binaryCodec;
+    private PayloadCompression compression;
 
     public RequestSerializer(Gson gson) {
+        this(gson, WireFormat.JSON);
+    }
+
+    public RequestSerializer(Gson gson, WireFormat format) {
+        this(gson, format, PayloadCompression.DISABLED);
+    }
+
+    public RequestSerializer(Gson gson, WireFormat format, PayloadCompression compression) {
         this.gson = gson;
+        this.format = format;
+        this.binaryCodec = new BinaryCodec(gson);
+        this.compression = compression;
     }
 
     @Override
@@ -44,17 +63,31 @@ public class RequestSerializer implements Serializer<Request>, Deserializer<Requ
 
     @Override
     public Request deserialize(String s, byte[] bytes) {
+        bytes = PayloadCompression.decompress(bytes);
+        if (BinaryCodec.isBinary(bytes)) {
+            return binaryCodec.decodeRequest(bytes);
+        }
         try {
-            return gson.fromJson(new String(bytes, "UTF-8"), Request.class);
-        } catch (UnsupportedEncodingException e) {
+            return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), Request.class);
+        } catch (JsonParseException e) {
             logger.error("Request deserialization failed", e);
-            throw new RuntimeException(e);
+            throw e;
         }
     }
 
     @Override
     public byte[] serialize(String s, Request request) {
-        return gson.toJson(request).getBytes();
+        if (format == WireFormat.BINARY) {
+            return compression.compress(binaryCodec.encode(request));
+        }
+        SerializationBuffer buffer = SerializationBuffer.get();
+        try {
+            gson.toJson(request, Request.class, buffer.writer());
+            buffer.writer().flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return compression.compress(buffer.toByteArray());
     }
 
     @Override
@@ -22,22 +22,41 @@ package com.devicehive.shim.kafka.serializer;
 
 import com.devicehive.shim.api.Response;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
 import com.google.gson.GsonBuilder;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class ResponseSerializer implements Serializer<Response>, Deserializer<Response> {
     private static final Logger logger = LoggerFactory.getLogger(ResponseSerializer.class);
 
     private Gson gson;
+    private WireFormat format;
+    private BinaryCodec binaryCodec;
+    private PayloadCompression compression;
 
     public ResponseSerializer(Gson gson) {
+        this(gson, WireFormat.JSON);
+    }
+
+    public ResponseSerializer(Gson gson, WireFormat format) {
+        this(gson, format, PayloadCompression.DISABLED);
+    }
+
+    public ResponseSerializer(Gson gson, WireFormat format, PayloadCompression compression) {
         this.gson = gson;
+        this.format = format;
+        this.binaryCodec = new BinaryCodec(gson);
+        this.compression = compression;
     }
 
     @Override
@@ -45,17 +64,31 @@ public class ResponseSerializer implements Serializer<Response>, Deserializer<Re
 
     @Override
     public Response deserialize(String s, byte[] bytes) {
+        bytes = PayloadCompression.decompress(bytes);
+        if (BinaryCodec.isBinary(bytes)) {
+            return binaryCodec.decodeResponse(bytes);
+        }
         try {
-            return gson.fromJson(new String(bytes, "UTF-8"), Response.class);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Request deserialization failed");
-            throw new RuntimeException(e);
+            return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), Response.class);
+        } catch (JsonParseException e) {
+            logger.error("Response deserialization failed", e);
+            throw e;
         }
     }
 
     @Override
     public byte[] serialize(String s, Response response) {
-        return gson.toJson(response).getBytes();
+        if (format == WireFormat.BINARY) {
+            return compression.compress(binaryCodec.encode(response));
+        }
+        SerializationBuffer buffer = SerializationBuffer.get();
+        try {
+            gson.toJson(response, Response.class, buffer.writer());
+            buffer.writer().flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return compression.compress(buffer.toByteArray());
     }
 
     @Override
@@ -0,0 +1,91 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Per-thread reusable output buffer for serializers, with UTF-8 writer on top of it.
+ * Buffers grown above {@link #MAX_RETAINED_SIZE} by unusually large messages are dropped instead of being reused.
+ * Buffers whose content was never read by {@link #toByteArray()}, i.e. serialization failed midway, are dropped
+ * as well, since their writer may still hold unflushed chars which would end up in the next message.
+ */
+class SerializationBuffer {
+
+    private static final int INITIAL_SIZE = 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<SerializationBuffer> BUFFER = ThreadLocal.withInitial(SerializationBuffer::new);
+
+    private final Bytes bytes = new Bytes();
+    private final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+    private boolean completed = true;
+
+    private SerializationBuffer() {
+    }
+
+    /**
+     * @return - empty buffer of the current thread
+     */
+    static SerializationBuffer get() {
+        SerializationBuffer buffer = BUFFER.get();
+        if (!buffer.completed || buffer.bytes.capacity() > MAX_RETAINED_SIZE) {
+            buffer = new SerializationBuffer();
+            BUFFER.set(buffer);
+        }
+        buffer.bytes.reset();
+        buffer.completed = false;
+        return buffer;
+    }
+
+    ByteArrayOutputStream stream() {
+        return bytes;
+    }
+
+    /**
+     * Writer must be flushed before the content of the buffer is read
+     */
+    Writer writer() {
+        return writer;
+    }
+
+    /**
+     * Completes the use of the buffer, so that it may be reused by the next {@link #get()} of the thread
+     */
+    byte[] toByteArray() {
+        completed = true;
+        return bytes.toByteArray();
+    }
+
+    private static class Bytes extends ByteArrayOutputStream {
+
+        Bytes() {
+            super(INITIAL_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Wire format of shim {@link com.devicehive.shim.api.Request} and {@link com.devicehive.shim.api.Response} messages.
+ * Deserializers accept both formats regardless of this setting, so the format can be switched node by node.
+ */
+public enum WireFormat {
+    JSON, BINARY
+}
@@ -34,6 +34,7 @@ public class KafkaRpcServer implements RpcServer {
     private static final Logger logger = LoggerFactory.getLogger(KafkaRpcServer.class);
 
     private WorkerPool<ServerEvent> workerPool;
+    private PartitionedWorkerPool partitionedWorkerPool;
     private RequestConsumer requestConsumer;
     private ServerEventHandler eventHandler;
     private int workerThreads;
@@ -46,10 +47,20 @@ public class KafkaRpcServer implements RpcServer {
         this.workerThreads = workerThreads;
     }
 
+    public KafkaRpcServer(PartitionedWorkerPool partitionedWorkerPool, RequestConsumer requestConsumer,
+                          ServerEventHandler eventHandler, int workerThreads) {
+        this.partitionedWorkerPool = partitionedWorkerPool;
+        this.requestConsumer = requestConsumer;
+        this.eventHandler = eventHandler;
+        this.workerThreads = workerThreads;
+    }
+
     @Override
     public void start() {
         final ExecutorService execService = Executors.newFixedThreadPool(workerThreads);
-        RingBuffer<ServerEvent> ringBuffer = workerPool.start(execService);
+        RingBuffer<ServerEvent> ringBuffer = workerPool != null
+                ? workerPool.start(execService)
+                : partitionedWorkerPool.start(execService);
         logger.info("LMAX Disruptor started. Buffer size: {}", ringBuffer.getBufferSize());
         requestConsumer.startConsumers(ringBuffer);
     }
@@ -57,7 +68,11 @@ public class KafkaRpcServer implements RpcServer {
     @Override
     public void shutdown() {
         requestConsumer.shutdownConsumers();
-        workerPool.drainAndHalt();
+        if (workerPool != null) {
+            workerPool.drainAndHalt();
+        } else {
+            partitionedWorkerPool.drainAndHalt();
+        }
     }
 
     @Override
@@ -0,0 +1,93 @@
+package com.devicehive.shim.kafka.server;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Request;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SequenceBarrier;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Alternative to {@link com.lmax.disruptor.WorkerPool} which routes every request to the worker chosen by hash
+ * of {@link Request#getPartitionKey()}. All requests with the same partition key (device) are handled by the same
+ * worker thread in order of consumption, so handlers don't have to synchronize on per-device state.
+ */
+public class PartitionedWorkerPool {
+
+    private final RingBuffer<ServerEvent> ringBuffer;
+    private final BatchEventProcessor<ServerEvent>[] processors;
+
+    @SuppressWarnings("unchecked")
+    public PartitionedWorkerPool(RingBuffer<ServerEvent> ringBuffer, ServerEventHandler[] workHandlers) {
+        this.ringBuffer = ringBuffer;
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+        this.processors = new BatchEventProcessor[workHandlers.length];
+        for (int i = 0; i < workHandlers.length; i++) {
+            processors[i] = new BatchEventProcessor<>(ringBuffer, barrier,
+                    new PartitionHandler(workHandlers[i], i, workHandlers.length));
+            ringBuffer.addGatingSequences(processors[i].getSequence());
+        }
+    }
+
+    public RingBuffer<ServerEvent> start(Executor executor) {
+        Arrays.stream(processors).forEach(executor::execute);
+        return ringBuffer;
+    }
+
+    /**
+     * Waits until all published requests are handled and halts the workers.
+     */
+    public void drainAndHalt() {
+        while (ringBuffer.getMinimumGatingSequence() < ringBuffer.getCursor()) {
+            LockSupport.parkNanos(1000);
+        }
+        Arrays.stream(processors).forEach(BatchEventProcessor::halt);
+    }
+
+    static int partition(Request request, int partitions) {
+        return Math.floorMod(Objects.hashCode(request.getPartitionKey()), partitions);
+    }
+
+    private static class PartitionHandler implements EventHandler<ServerEvent> {
+        private final ServerEventHandler delegate;
+        private final int partition;
+        private final int partitions;
+
+        PartitionHandler(ServerEventHandler delegate, int partition, int partitions) {
+            this.delegate = delegate;
+            this.partition = partition;
+            this.partitions = partitions;
+        }
+
+        @Override
+        public void onEvent(ServerEvent event, long sequence, boolean endOfBatch) throws Exception {
+            if (partition(event.get(), partitions) == partition) {
+                delegate.onEvent(event);
+            }
+        }
+    }
+}
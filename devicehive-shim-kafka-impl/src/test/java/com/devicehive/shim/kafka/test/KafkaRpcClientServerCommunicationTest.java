@@ -31,6 +31,7 @@ import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.shim.api.server.RpcServer;
 import com.devicehive.shim.kafka.builder.ClientBuilder;
 import com.devicehive.shim.kafka.builder.ServerBuilder;
+import com.devicehive.shim.kafka.client.KafkaRpcClient;
 import com.devicehive.shim.kafka.fixture.RequestHandlerWrapper;
 import com.devicehive.shim.kafka.fixture.TestRequestBody;
 import com.devicehive.shim.kafka.fixture.TestResponseBody;
@@ -97,6 +98,7 @@ public class KafkaRpcClientServerCommunicationTest {
                 .withConsumerThreads(1)
                 .build();
         client.start();
+        ((KafkaRpcClient) client).connected().get(30, TimeUnit.SECONDS);
     }
 
     @AfterClass
@@ -0,0 +1,199 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.client.RequestResponseMatcher;
+import com.devicehive.shim.kafka.client.SerialLaneExecutor;
+import com.devicehive.shim.kafka.client.SerialLaneExecutor.OverflowPolicy;
+import com.devicehive.shim.kafka.fixture.TestResponseBody;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestResponseMatcherTest {
+
+    private RequestResponseMatcher matcher = new RequestResponseMatcher(200);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        matcher.shutdown();
+    }
+
+    @Test
+    public void shouldExpireCallbackWithoutResponse() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("lost", future::complete);
+
+        Response response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isFailed());
+        assertEquals(RequestResponseMatcher.TIMEOUT_ERROR_CODE, response.getErrorCode());
+        assertEquals(0, matcher.getCallbackCount());
+        assertEquals(1, matcher.getExpiredCount());
+    }
+
+    @Test
+    public void shouldKeepStreamingCallbackAfterFirstResponse() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("stream", future::complete);
+        matcher.offerResponse(Response.newBuilder()
+                .withBody(new TestResponseBody("first"))
+                .withCorrelationId("stream")
+                .withLast(false)
+                .buildSuccess());
+
+        assertFalse(future.get(5, TimeUnit.SECONDS).isFailed());
+        TimeUnit.MILLISECONDS.sleep(600);
+        assertEquals(1, matcher.getCallbackCount());
+        assertEquals(0, matcher.getExpiredCount());
+
+        matcher.addSubscription(1L, "stream");
+        matcher.removeSubscription(1L);
+        assertEquals(0, matcher.getCallbackCount());
+    }
+
+    @Test
+    public void shouldDeliverResponsesOfOneRequestInOrder() throws Exception {
+        int count = 1000;
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(count);
+        matcher.addRequestCallback("ordered", response -> {
+            received.add(((TestResponseBody) response.getBody()).getResponseBody());
+            latch.countDown();
+        });
+        for (int i = 0; i < count; i++) {
+            matcher.offerResponse(Response.newBuilder()
+                    .withBody(new TestResponseBody(String.valueOf(i)))
+                    .withCorrelationId("ordered")
+                    .withLast(false)
+                    .buildSuccess());
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.valueOf(i), received.get(i));
+        }
+    }
+
+    @Test
+    public void shouldFailRequestWhenLastResponseIsDropped() throws Exception {
+        matcher = new RequestResponseMatcher(0, new SerialLaneExecutor(1, 1, OverflowPolicy.DROP));
+        fillLane();
+
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("dropped", future::complete);
+        matcher.offerResponse(response("dropped", true));
+
+        Response response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isFailed());
+        assertEquals(RequestResponseMatcher.DROPPED_ERROR_CODE, response.getErrorCode());
+        assertEquals(1, matcher.getCallbackCount());
+    }
+
+    @Test
+    public void shouldNotStopConsumerWhenCallbackWaitsForResponseOnSameLane() throws Exception {
+        matcher = new RequestResponseMatcher(0, new SerialLaneExecutor(1, 1, OverflowPolicy.BLOCK, 100));
+        CompletableFuture<Response> inner = new CompletableFuture<>();
+        CompletableFuture<Response> outer = new CompletableFuture<>();
+        matcher.addRequestCallback("inner", inner::complete);
+        matcher.addRequestCallback("outer", response -> {
+            try {
+                outer.complete(inner.get(5, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                outer.completeExceptionally(e);
+            }
+        });
+        matcher.addRequestCallback("filler", response -> {});
+
+        // outer callback occupies the only lane and waits for the response of inner request queued behind it
+        matcher.offerResponse(response("outer", true));
+        matcher.offerResponse(response("filler", true));
+        matcher.offerResponse(response("inner", true));
+
+        Response response = outer.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isFailed());
+        assertEquals(RequestResponseMatcher.DROPPED_ERROR_CODE, response.getErrorCode());
+        assertEquals(0, matcher.getCallbackCount());
+    }
+
+    @Test
+    public void shouldExpireRequestsWhileLaneIsFull() throws Exception {
+        matcher = new RequestResponseMatcher(200, new SerialLaneExecutor(1, 1, OverflowPolicy.BLOCK, 10000));
+        fillLane();
+
+        List<Response> responses = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 3; i++) {
+            matcher.addRequestCallback("expiring-" + i, responses::add);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (matcher.getExpiredCount() < 3 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(3, matcher.getExpiredCount());
+        assertEquals(1, matcher.getCallbackCount());
+
+        release.countDown();
+        deadline = System.currentTimeMillis() + 5000;
+        while (responses.size() < 3 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(3, responses.size());
+        responses.forEach(response -> assertEquals(RequestResponseMatcher.TIMEOUT_ERROR_CODE, response.getErrorCode()));
+    }
+
+    /**
+     * Occupies the only lane of the matcher with a streaming callback waiting for {@link #release}
+     * and fills its queue with one more response.
+     */
+    private void fillLane() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        matcher.addRequestCallback("blocking", response -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        matcher.offerResponse(response("blocking", false));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        matcher.offerResponse(response("blocking", false));
+    }
+
+    private static Response response(String correlationId, boolean last) {
+        return Response.newBuilder()
+                .withBody(new TestResponseBody(correlationId))
+                .withCorrelationId(correlationId)
+                .withLast(last)
+                .buildSuccess();
+    }
+}
@@ -0,0 +1,289 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.json.adapters.RuntimeTypeAdapterFactory;
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.eventbus.events.CommandEvent;
+import com.devicehive.model.eventbus.events.CommandUpdateEvent;
+import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.CommandBatchUpdateRequest;
+import com.devicehive.model.rpc.CommandInsertRequest;
+import com.devicehive.model.rpc.CommandUpdateRequest;
+import com.devicehive.model.rpc.CommandsUpdateRequest;
+import com.devicehive.model.rpc.NotificationInsertRequest;
+import com.devicehive.shim.api.Action;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.fixture.TestRequestBody;
+import com.devicehive.shim.kafka.fixture.TestResponseBody;
+import com.devicehive.shim.kafka.serializer.PayloadCompression;
+import com.devicehive.shim.kafka.serializer.RequestSerializer;
+import com.devicehive.shim.kafka.serializer.ResponseSerializer;
+import com.devicehive.shim.kafka.serializer.WireFormat;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WireFormatTest {
+
+    private static Gson requestGson;
+    private static Gson responseGson;
+
+    @BeforeClass
+    public static void setUp() {
+        // both test bodies share the same action, so each message direction gets its own mapping
+        requestGson = new GsonBuilder()
+                .registerTypeAdapterFactory(RuntimeTypeAdapterFactory.of(Body.class, "a")
+                        .registerSubtype(TestRequestBody.class, Action.EMPTY.ordinal()))
+                .create();
+        responseGson = new GsonBuilder()
+                .registerTypeAdapterFactory(RuntimeTypeAdapterFactory.of(Body.class, "a")
+                        .registerSubtype(TestResponseBody.class, Action.EMPTY.ordinal()))
+                .create();
+    }
+
+    @Test
+    public void shouldReadRequestInBothFormats() {
+        Request request = Request.newBuilder()
+                .withBody(new TestRequestBody("binary"))
+                .withPartitionKey("device")
+                .withSingleReply(false)
+                .build();
+        request.setReplyTo("reply_topic");
+        request.setType(RequestType.ping);
+
+        RequestSerializer json = new RequestSerializer(requestGson, WireFormat.JSON);
+        RequestSerializer binary = new RequestSerializer(requestGson, WireFormat.BINARY);
+
+        for (RequestSerializer writer : Arrays.asList(json, binary)) {
+            for (RequestSerializer reader : Arrays.asList(json, binary)) {
+                Request result = reader.deserialize(null, writer.serialize(null, request));
+                assertEquals(request.getCorrelationId(), result.getCorrelationId());
+                assertEquals("device", result.getPartitionKey());
+                assertEquals("reply_topic", result.getReplyTo());
+                assertEquals(RequestType.ping, result.getType());
+                assertFalse(result.isSingleReplyExpected());
+                assertEquals("binary", ((TestRequestBody) result.getBody()).getBody());
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadResponseInBothFormats() {
+        Response response = Response.newBuilder()
+                .withBody(new TestResponseBody("binary"))
+                .withCorrelationIds(Arrays.asList("a", "b"))
+                .withLast(false)
+                .buildFailed(404);
+
+        ResponseSerializer json = new ResponseSerializer(responseGson, WireFormat.JSON);
+        ResponseSerializer binary = new ResponseSerializer(responseGson, WireFormat.BINARY);
+
+        for (ResponseSerializer writer : Arrays.asList(json, binary)) {
+            for (ResponseSerializer reader : Arrays.asList(json, binary)) {
+                Response result = reader.deserialize(null, writer.serialize(null, response));
+                assertEquals(Arrays.asList("a", "b"), result.getCorrelationIds());
+                assertFalse(result.isLast());
+                assertTrue(result.isFailed());
+                assertEquals(404, result.getErrorCode());
+                assertEquals("binary", ((TestResponseBody) result.getBody()).getResponseBody());
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadNotificationAndCommandBodiesInBothFormats() {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(1L);
+        notification.setNotification("temperature");
+        notification.setDeviceId("device");
+        notification.setNetworkId(2L);
+        notification.setTimestamp(new Date());
+        notification.setParameters(new JsonStringWrapper("{\"value\":\"\u00b0C \\\"quoted\\\"\"}"));
+
+        DeviceCommand command = new DeviceCommand();
+        command.setId(3L);
+        command.setCommand("reboot");
+        command.setDeviceId("device");
+        command.setTimestamp(new Date());
+        command.setLastUpdated(new Date());
+        command.setUserId(4L);
+        command.setLifetime(60);
+        command.setStatus("done");
+        command.setResult(new JsonStringWrapper("{\"ok\":true}"));
+        command.setIsUpdated(true);
+
+        DeviceCommand emptyCommand = new DeviceCommand();
+        emptyCommand.setCommand("no optional fields");
+
+        List<Body> bodies = Arrays.asList(
+                new NotificationInsertRequest(notification), new NotificationEvent(notification),
+                new CommandInsertRequest(command), new CommandUpdateRequest(command), new CommandEvent(emptyCommand),
+                new CommandUpdateEvent(command), new CommandsUpdateEvent(command), new CommandsUpdateRequest(command),
+                new CommandBatchUpdateRequest(Arrays.asList(command, emptyCommand)));
+
+        Gson gson = GsonFactory.createGson();
+        RequestSerializer jsonRequests = new RequestSerializer(gson, WireFormat.JSON);
+        RequestSerializer binaryRequests = new RequestSerializer(gson, WireFormat.BINARY);
+        ResponseSerializer jsonResponses = new ResponseSerializer(gson, WireFormat.JSON);
+        ResponseSerializer binaryResponses = new ResponseSerializer(gson, WireFormat.BINARY);
+
+        for (Body body : bodies) {
+            Request request = Request.newBuilder().withBody(body).build();
+            Response response = Response.newBuilder().withBody(body).buildSuccess();
+
+            byte[] binaryRequest = binaryRequests.serialize(null, request);
+            byte[] binaryResponse = binaryResponses.serialize(null, response);
+            assertTrue(binaryRequest.length < jsonRequests.serialize(null, request).length);
+
+            // bodies of requests do not implement equals, so all fields are compared through their JSON form
+            String expected = gson.toJson(body, Body.class);
+            for (RequestSerializer reader : Arrays.asList(jsonRequests, binaryRequests)) {
+                assertEquals(expected, gson.toJson(reader.deserialize(null, binaryRequest).getBody(), Body.class));
+            }
+            for (ResponseSerializer reader : Arrays.asList(jsonResponses, binaryResponses)) {
+                assertEquals(expected, gson.toJson(reader.deserialize(null, binaryResponse).getBody(), Body.class));
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepActionOrdinalsOfEarlierReleases() {
+        // body type labels are action ordinals, so backends and frontends of different releases must agree on them
+        List<String> released = Arrays.asList("EMPTY", "ERROR_RESPONSE",
+                "NOTIFICATION_SEARCH_REQUEST", "NOTIFICATION_SEARCH_RESPONSE", "NOTIFICATION_INSERT_REQUEST",
+                "NOTIFICATION_INSERT_RESPONSE", "NOTIFICATION_SUBSCRIBE_REQUEST", "NOTIFICATION_SUBSCRIBE_RESPONSE",
+                "NOTIFICATION_UNSUBSCRIBE_REQUEST", "NOTIFICATION_UNSUBSCRIBE_RESPONSE", "NOTIFICATION_EVENT",
+                "COMMAND_SEARCH_REQUEST", "COMMAND_SEARCH_RESPONSE", "COMMAND_INSERT_REQUEST", "COMMAND_INSERT_RESPONSE",
+                "COMMAND_UPDATE_REQUEST", "COMMANDS_UPDATE_REQUEST", "COMMAND_SUBSCRIBE_REQUEST",
+                "COMMAND_SUBSCRIBE_RESPONSE", "COMMAND_UNSUBSCRIBE_REQUEST", "COMMAND_UNSUBSCRIBE_RESPONSE",
+                "COMMAND_EVENT", "COMMAND_UPDATE_EVENT", "COMMANDS_UPDATE_EVENT", "COMMAND_UPDATE_SUBSCRIBE_REQUEST",
+                "COMMAND_UPDATE_SUBSCRIBE_RESPONSE", "COMMAND_GET_SUBSCRIPTION_REQUEST", "COMMAND_GET_SUBSCRIPTION_RESPONSE",
+                "PLUGIN_SUBSCRIBE_REQUEST", "PLUGIN_SUBSCRIBE_RESPONSE", "PLUGIN_UNSUBSCRIBE_REQUEST",
+                "PLUGIN_UNSUBSCRIBE_RESPONSE", "LIST_USER_REQUEST", "LIST_USER_RESPONSE", "LIST_NETWORK_REQUEST",
+                "LIST_NETWORK_RESPONSE", "LIST_DEVICE_REQUEST", "LIST_DEVICE_RESPONSE", "LIST_SUBSCRIBE_REQUEST",
+                "LIST_SUBSCRIBE_RESPONSE", "DEVICE_CREATE_REQUEST", "DEVICE_CREATE_RESPONSE");
+        for (int i = 0; i < released.size(); i++) {
+            assertEquals(released.get(i), Action.values()[i].name());
+        }
+        assertTrue(Action.NOTIFICATION_BATCH_INSERT_REQUEST.ordinal() >= released.size());
+        assertTrue(Action.COMMAND_BATCH_UPDATE_REQUEST.ordinal() >= released.size());
+    }
+
+    @Test
+    public void shouldRejectUnknownRequestType() {
+        RequestSerializer binary = new RequestSerializer(requestGson, WireFormat.BINARY);
+        byte[] bytes = binary.serialize(null, Request.newBuilder().withBody(new TestRequestBody("type")).build());
+        // the request type follows the version byte
+        bytes[1] = (byte) RequestType.values().length;
+        try {
+            binary.deserialize(null, bytes);
+            fail("Request with unknown type should not be read");
+        } catch (SerializationException e) {
+            assertEquals("Unknown request type " + RequestType.values().length, e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldNotLeakFailedSerializationIntoNextMessage() {
+        // body type is not registered in the type adapter factory, so serialization fails after the envelope is written
+        Request failing = Request.newBuilder()
+                .withBody(new UnregisteredBody())
+                .withPartitionKey("failing")
+                .build();
+        Request request = Request.newBuilder()
+                .withBody(new TestRequestBody("next"))
+                .withPartitionKey("device")
+                .build();
+
+        for (WireFormat format : WireFormat.values()) {
+            RequestSerializer serializer = new RequestSerializer(requestGson, format);
+            try {
+                serializer.serialize(null, failing);
+                fail("Serialization of unregistered body type should fail");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            Request result = serializer.deserialize(null, serializer.serialize(null, request));
+            assertEquals("device", result.getPartitionKey());
+            assertEquals("next", ((TestRequestBody) result.getBody()).getBody());
+        }
+    }
+
+    @Test
+    public void shouldWriteSmallerBinaryMessages() {
+        Request request = Request.newBuilder()
+                .withBody(new TestRequestBody("size"))
+                .build();
+        byte[] json = new RequestSerializer(requestGson, WireFormat.JSON).serialize(null, request);
+        byte[] binary = new RequestSerializer(requestGson, WireFormat.BINARY).serialize(null, request);
+        assertTrue(binary.length < json.length);
+    }
+
+    @Test
+    public void shouldCompressLargeMessagesOnly() {
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            payload.append("{\"temperature\":").append(i % 10).append('}');
+        }
+        Request large = Request.newBuilder()
+                .withBody(new TestRequestBody(payload.toString()))
+                .build();
+        Request small = Request.newBuilder()
+                .withBody(new TestRequestBody("small"))
+                .build();
+
+        RequestSerializer plain = new RequestSerializer(requestGson, WireFormat.JSON);
+        for (WireFormat format : WireFormat.values()) {
+            RequestSerializer compressing = new RequestSerializer(requestGson, format, new PayloadCompression(1024));
+
+            byte[] compressed = compressing.serialize(null, large);
+            assertTrue(PayloadCompression.isCompressed(compressed));
+            assertTrue(compressed.length < plain.serialize(null, large).length);
+            assertEquals(payload.toString(), ((TestRequestBody) plain.deserialize(null, compressed).getBody()).getBody());
+
+            byte[] uncompressed = compressing.serialize(null, small);
+            assertFalse(PayloadCompression.isCompressed(uncompressed));
+            assertEquals("small", ((TestRequestBody) plain.deserialize(null, uncompressed).getBody()).getBody());
+        }
+    }
+
+    private static class UnregisteredBody extends Body {
+        UnregisteredBody() {
+            super(Action.EMPTY);
+        }
+    }
+}